@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение и лайки фильмов. Для проверки того, что топ не дорожает с ростом likes,
+ * запускать с разным likesPerFilm: -p likesPerFilm=10,100,1000.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmServiceBenchmark {
+
+    @Benchmark
+    public Collection<Film> findAll(FilmorateState state) {
+        return state.filmStorage.findAll();
+    }
+
+    @Benchmark
+    public Optional<Film> findById(FilmorateState state) {
+        return state.filmStorage.findById(state.randomFilmId());
+    }
+
+    @Benchmark
+    public List<Film> getTopFilms(FilmorateState state) {
+        return state.filmService.getTopFilms(10, null, null);
+    }
+
+    /**
+     * Топ по жанру и году должен стоить примерно столько же, сколько общий {@link #getTopFilms}.
+     */
+    @Benchmark
+    public List<Film> getTopFilmsByGenre(FilmorateState state) {
+        return state.filmService.getTopFilms(10, 3, null);
+    }
+
+    @Benchmark
+    public List<Film> getTopFilmsByYear(FilmorateState state) {
+        return state.filmService.getTopFilms(10, null, 1960);
+    }
+
+    @Benchmark
+    public List<Film> getTopFilmsByGenreAndYear(FilmorateState state) {
+        return state.filmService.getTopFilms(10, 3, 1960);
+    }
+
+    /**
+     * Лайк вместе с отменой, чтобы набор данных не менялся от итерации к итерации.
+     */
+    @Benchmark
+    public void addLike(FilmorateState state) {
+        long filmId = state.randomFilmId();
+        long userId = state.spareUserId();
+        state.filmService.addLike(filmId, userId);
+        state.filmService.removeLike(filmId, userId);
+    }
+}
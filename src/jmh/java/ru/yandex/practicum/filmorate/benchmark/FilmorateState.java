@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Приложение без веб-слоя поверх H2 в памяти, заполненной синтетическими данными.
+ * Данные заливаются первым контекстом, после чего поднимается второй контекст на той же базе
+ * без пересоздания схемы — так все in-memory индексы строятся так же, как при обычном старте.
+ */
+@State(Scope.Benchmark)
+public class FilmorateState {
+    /**
+     * Количество фильмов и пользователей.
+     */
+    @Param({"1000", "10000"})
+    public int size;
+
+    @Param({"10"})
+    public int likesPerFilm;
+
+    @Param({"20"})
+    public int friendsPerUser;
+
+    public ConfigurableApplicationContext context;
+    public FilmService filmService;
+    public UserService userService;
+    public FilmStorage filmStorage;
+    public UserStorage userStorage;
+
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        url = "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (ConfigurableApplicationContext loader = start(WebApplicationType.NONE, "always", loaderArgs())) {
+            SyntheticData.fill(loader.getBean(JdbcTemplate.class), size, likesPerFilm, friendsPerUser);
+            afterFill(loader);
+        }
+        context = start(webApplicationType(), "never", extraArgs());
+        filmService = context.getBean(FilmService.class);
+        userService = context.getBean(UserService.class);
+        filmStorage = context.getBean(FilmStorage.class);
+        userStorage = context.getBean(UserStorage.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.getBean(JdbcTemplate.class).execute("SHUTDOWN");
+        context.close();
+    }
+
+    public long randomFilmId() {
+        return ThreadLocalRandom.current().nextLong(1, size + 1);
+    }
+
+    public long randomUserId() {
+        return ThreadLocalRandom.current().nextLong(1, size + 1);
+    }
+
+    /**
+     * Пользователь без лайков: на нём можно ставить и снимать лайк, не задевая данные набора.
+     */
+    public long spareUserId() {
+        return size + ThreadLocalRandom.current().nextLong(1, SyntheticData.SPARE_USERS + 1);
+    }
+
+    /**
+     * Дополнительные аргументы для контекста, на котором идут замеры.
+     */
+    protected String[] extraArgs() {
+        return new String[0];
+    }
+
+    /**
+     * Дополнительные аргументы для контекста, который заливает данные.
+     */
+    protected String[] loaderArgs() {
+        return new String[0];
+    }
+
+    /**
+     * Вызывается после заливки данных, пока контекст заливки ещё открыт.
+     */
+    protected void afterFill(ConfigurableApplicationContext loader) {
+    }
+
+    protected WebApplicationType webApplicationType() {
+        return WebApplicationType.NONE;
+    }
+
+    private ConfigurableApplicationContext start(WebApplicationType type, String sqlInitMode, String... extraArgs) {
+        String[] args = new String[extraArgs.length + 5];
+        args[0] = "--spring.datasource.url=" + url;
+        args[1] = "--spring.sql.init.mode=" + sqlInitMode;
+        args[2] = "--logging.level.root=WARN";
+        args[3] = "--logging.level.org.zalando.logbook=WARN";
+        args[4] = "--spring.main.banner-mode=off";
+        System.arraycopy(extraArgs, 0, args, 5, extraArgs.length);
+        return new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(type)
+                .bannerMode(Banner.Mode.OFF)
+                .run(args);
+    }
+}
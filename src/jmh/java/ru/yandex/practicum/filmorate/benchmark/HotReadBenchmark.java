@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Много читателей одного «горячего» фильма и одного топа одновременно, с объединением
+ * загрузок (single-flight) и без него. После каждой итерации печатается число SQL-запросов
+ * на одно чтение: с объединением оно падает с ростом числа читателей (-t), и нагрузка на базу
+ * остаётся почти постоянной.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(64)
+@Fork(1)
+public class HotReadBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class HotState extends FilmorateState {
+        @Param({"false", "true"})
+        public boolean singleFlight;
+
+        public long hotFilmId;
+        private final LongAdder reads = new LongAdder();
+        private MeterRegistry registry;
+        private long statementsBefore;
+
+        @Override
+        protected String[] extraArgs() {
+            return new String[]{"--filmorate.single-flight.enabled=" + singleFlight};
+        }
+
+        @Setup(Level.Trial)
+        public void pickHotFilm() {
+            registry = context.getBean(MeterRegistry.class);
+            hotFilmId = randomFilmId();
+        }
+
+        @Setup(Level.Iteration)
+        public void resetCounters() {
+            reads.reset();
+            statementsBefore = statements();
+        }
+
+        @TearDown(Level.Iteration)
+        public void printStatementsPerRead() {
+            long statements = statements() - statementsBefore;
+            System.out.printf("%nSQL-запросов: %d, чтений: %d, запросов на чтение: %.3f%n",
+                    statements, reads.sum(), (double) statements / Math.max(reads.sum(), 1));
+        }
+
+        private long statements() {
+            return registry.find("filmorate.sql.statement").timers().stream().mapToLong(Timer::count).sum();
+        }
+    }
+
+    @Benchmark
+    public Film hotFilm(HotState state) {
+        state.reads.increment();
+        return state.filmService.findById(state.hotFilmId);
+    }
+
+    @Benchmark
+    public List<Film> hotPopular(HotState state) {
+        state.reads.increment();
+        return state.filmService.getTopFilms(10, null, null);
+    }
+}
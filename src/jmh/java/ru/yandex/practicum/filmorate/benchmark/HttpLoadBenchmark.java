@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузка по HTTP на запущенное приложение: пропускная способность и перцентили задержки
+ * (режим SampleTime даёт p0.99) при обработке запросов платформенными и виртуальными потоками.
+ * Число клиентов задаётся через -t, по умолчанию оно больше пула потоков Tomcat.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(400)
+@Fork(1)
+public class HttpLoadBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ServerState extends FilmorateState {
+        @Param({"false", "true"})
+        public boolean virtualThreads;
+
+        public HttpClient client;
+        public String baseUrl;
+        private final Map<String, String> eTags = new ConcurrentHashMap<>();
+
+        @Override
+        protected WebApplicationType webApplicationType() {
+            return WebApplicationType.SERVLET;
+        }
+
+        @Override
+        protected String[] extraArgs() {
+            return new String[]{
+                    "--server.port=0",
+                    "--spring.threads.virtual.enabled=" + virtualThreads
+            };
+        }
+
+        @Setup(Level.Trial)
+        public void connect() {
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        }
+
+        public int get(String path) throws IOException, InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        }
+
+        /**
+         * GET как у клиента с кэшем: запоминает ETag ответа и отправляет его в If-None-Match.
+         */
+        public int getConditional(String path) throws IOException, InterruptedException {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+            String eTag = eTags.get(path);
+            if (eTag != null) {
+                builder.header("If-None-Match", eTag);
+            }
+            HttpResponse<Void> response = client.send(builder.build(), HttpResponse.BodyHandlers.discarding());
+            response.headers().firstValue("ETag").ifPresent(value -> eTags.put(path, value));
+            return response.statusCode();
+        }
+    }
+
+    @Benchmark
+    public int filmById(ServerState state) throws IOException, InterruptedException {
+        return state.get("/films/" + state.randomFilmId());
+    }
+
+    /**
+     * То же, что {@link #filmById}, но с If-None-Match: неизменившийся фильм отдаётся ответом 304
+     * без запроса в базу и без JSON.
+     */
+    @Benchmark
+    public int filmByIdConditional(ServerState state) throws IOException, InterruptedException {
+        return state.getConditional("/films/" + state.randomFilmId());
+    }
+
+    @Benchmark
+    public int genresConditional(ServerState state) throws IOException, InterruptedException {
+        return state.getConditional("/genres");
+    }
+
+    @Benchmark
+    public int popular(ServerState state) throws IOException, InterruptedException {
+        return state.get("/films/popular?count=10");
+    }
+
+    @Benchmark
+    public int friends(ServerState state) throws IOException, InterruptedException {
+        return state.get("/users/" + state.randomUserId() + "/friends");
+    }
+}
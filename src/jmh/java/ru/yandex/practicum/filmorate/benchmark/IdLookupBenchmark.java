@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск пользователей по набору id случайного размера: список IN (?, ?, ...) переменной длины
+ * против запроса постоянной формы с параметром-массивом и UNNEST.
+ * Счётчики statements и cacheMisses показывают, как часто текст запроса не находится в кэше
+ * разобранных запросов сессии H2 (LRU на QUERY_CACHE_SIZE запросов, по умолчанию 8):
+ * промах означает повторный разбор и построение плана. Планы обоих запросов печатаются при старте.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdLookupBenchmark {
+    private static final String ARRAY_SQL = "SELECT u.id, u.email, u.login, u.name, u.birthday " +
+            "FROM UNNEST(?) AS ids(id) JOIN users AS u ON u.id = ids.id";
+    private static final String IN_LIST_SQL = "SELECT id, email, login, name, birthday FROM users WHERE id IN (%s)";
+
+    @State(Scope.Benchmark)
+    public static class LookupState extends FilmorateState {
+        /**
+         * Наибольший размер набора id; размер каждого запроса выбирается случайно от 1 до него.
+         */
+        @Param({"20", "200"})
+        public int maxBatch;
+
+        public JdbcTemplate jdbcTemplate;
+
+        @Setup(Level.Trial)
+        public void explain() {
+            jdbcTemplate = context.getBean(JdbcTemplate.class);
+            System.out.println("IN (?, ?, ?): " + jdbcTemplate.queryForObject(
+                    "EXPLAIN " + IN_LIST_SQL.formatted("1, 2, 3"), String.class));
+            System.out.println("UNNEST(?): " + jdbcTemplate.queryForObject(
+                    "EXPLAIN " + ARRAY_SQL.replace("?", "ARRAY[1, 2, 3]"), String.class));
+        }
+
+        Long[] randomIds() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Long[] ids = new Long[random.nextInt(1, maxBatch + 1)];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = randomUserId();
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Модель кэша разобранных запросов сессии H2.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class StatementCache {
+        private static final int QUERY_CACHE_SIZE = 8;
+
+        public long statements;
+        public long cacheMisses;
+
+        private final Map<String, Boolean> cached = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > QUERY_CACHE_SIZE;
+            }
+        };
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            cacheMisses = 0;
+        }
+
+        void record(String sql) {
+            statements++;
+            if (cached.put(sql, Boolean.TRUE) == null) {
+                cacheMisses++;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> inList(LookupState state, StatementCache cache) {
+        Long[] ids = state.randomIds();
+        String sql = IN_LIST_SQL.formatted(String.join(", ", Collections.nCopies(ids.length, "?")));
+        cache.record(sql);
+        return state.jdbcTemplate.queryForList(sql, (Object[]) ids);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> arrayParameter(LookupState state, StatementCache cache) {
+        Long[] ids = state.randomIds();
+        cache.record(ARRAY_SQL);
+        return state.jdbcTemplate.query(ARRAY_SQL,
+                stmt -> stmt.setArray(1, stmt.getConnection().createArrayOf("BIGINT", ids)), new ColumnMapRowMapper());
+    }
+}
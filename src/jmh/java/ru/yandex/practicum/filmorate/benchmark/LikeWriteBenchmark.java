@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Запись лайков в хранилище в базе: сразу в likes (direct), через буфер отложенной записи (write-behind)
+ * и через журнал лайков с фоновым уплотнением (event-log). В журнале лайк и его отмена — две вставки
+ * в like_events без поиска по индексу likes; в likes их переносит уплотнение.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class LikeWriteBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class LikeState extends FilmorateState {
+        @Param({"direct", "write-behind", "event-log"})
+        public String likeWrites;
+
+        @Override
+        protected String[] extraArgs() {
+            return new String[]{
+                    "--filmorate.likes.write-behind.enabled=" + "write-behind".equals(likeWrites),
+                    "--filmorate.likes.event-log.enabled=" + "event-log".equals(likeWrites)};
+        }
+    }
+
+    /**
+     * У каждого потока свой пользователь без лайков: потоки не снимают лайки друг друга.
+     */
+    @State(Scope.Thread)
+    public static class Liker {
+        private static final AtomicInteger NEXT = new AtomicInteger();
+
+        public long userId;
+
+        @Setup(Level.Trial)
+        public void pickUser(LikeState state) {
+            userId = state.size + 1 + NEXT.getAndIncrement() % SyntheticData.SPARE_USERS;
+        }
+    }
+
+    /**
+     * Лайк и его отмена: данные набора не меняются.
+     */
+    @Benchmark
+    public void addRemoveLike(LikeState state, Liker liker) {
+        long filmId = state.randomFilmId();
+        state.filmStorage.addLike(filmId, liker.userId);
+        state.filmStorage.removeLike(filmId, liker.userId);
+    }
+}
@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+import ru.yandex.practicum.filmorate.dao.dto.GenreDto;
+import ru.yandex.practicum.filmorate.dao.dto.MpaDto;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Хранилище в базе против хранилища в памяти с журналом (filmorate.storage) на одних и тех же данных.
+ * Для memory синтетические данные переносятся из базы в хранилище в памяти через его API в контексте
+ * заливки (без fsync), а контекст замеров поднимает хранилище из журнала, как при перезапуске.
+ * Лайк в памяти ждёт fsync журнала, поэтому с ростом числа потоков (-t) записи объединяются в группы.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class StorageBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class StorageState extends FilmorateState {
+        @Param({"db", "memory"})
+        public String storage;
+
+        @Param({"true"})
+        public boolean fsync;
+
+        private Path journalDir;
+
+        @Override
+        protected String[] loaderArgs() {
+            return storageArgs(false);
+        }
+
+        @Override
+        protected String[] extraArgs() {
+            return storageArgs(fsync);
+        }
+
+        @Override
+        protected void afterFill(ConfigurableApplicationContext loader) {
+            if ("memory".equals(storage)) {
+                copyToMemory(loader.getBean(JdbcTemplate.class),
+                        loader.getBean(FilmStorage.class), loader.getBean(UserStorage.class));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteJournal() throws IOException {
+            if (journalDir != null) {
+                FileSystemUtils.deleteRecursively(journalDir);
+            }
+        }
+
+        private String[] storageArgs(boolean fsync) {
+            if (!"memory".equals(storage)) {
+                return new String[0];
+            }
+            try {
+                if (journalDir == null) {
+                    journalDir = Files.createTempDirectory("filmorate-journal");
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new String[]{
+                    "--filmorate.storage=memory",
+                    "--filmorate.memory.journal-dir=" + journalDir,
+                    "--filmorate.memory.fsync=" + fsync};
+        }
+
+        /**
+         * Id выдаются подряд, как и в синтетических данных, поэтому совпадают с id в базе.
+         */
+        private static void copyToMemory(JdbcTemplate jdbcTemplate, FilmStorage films, UserStorage users) {
+            jdbcTemplate.query("SELECT * FROM users ORDER BY id", rs -> {
+                users.create(User.builder()
+                        .login(rs.getString("login"))
+                        .name(rs.getString("name"))
+                        .email(rs.getString("email"))
+                        .birthday(rs.getDate("birthday").toLocalDate())
+                        .build());
+            });
+            Map<Long, List<GenreDto>> genres = new HashMap<>();
+            jdbcTemplate.query("SELECT film_id, genre_id FROM film_genre", rs -> {
+                genres.computeIfAbsent(rs.getLong("film_id"), id -> new ArrayList<>())
+                        .add(new GenreDto(rs.getInt("genre_id"), null));
+            });
+            List<Film> batch = jdbcTemplate.query("SELECT * FROM films ORDER BY id", (rs, rowNum) -> Film.builder()
+                    .name(rs.getString("name"))
+                    .description(rs.getString("description"))
+                    .releaseDate(rs.getDate("release_date").toLocalDate())
+                    .duration(rs.getLong("duration"))
+                    .mpa(new MpaDto(rs.getInt("rating_id"), null))
+                    .genres(genres.get(rs.getLong("id")))
+                    .build());
+            films.createAll(batch);
+            jdbcTemplate.query("SELECT film_id, user_id FROM likes", rs -> {
+                films.addLike(rs.getLong("film_id"), rs.getLong("user_id"));
+            });
+            jdbcTemplate.query("SELECT user_id, friend_id FROM friendship", rs -> {
+                users.addFriendRequest(rs.getLong("user_id"), rs.getLong("friend_id"));
+            });
+        }
+    }
+
+    /**
+     * У каждого потока свой пользователь без лайков: потоки не снимают лайки друг друга.
+     */
+    @State(Scope.Thread)
+    public static class Liker {
+        private static final AtomicInteger NEXT = new AtomicInteger();
+
+        public long userId;
+
+        @Setup(Level.Trial)
+        public void pickUser(StorageState state) {
+            userId = state.size + 1 + NEXT.getAndIncrement() % SyntheticData.SPARE_USERS;
+        }
+    }
+
+    /**
+     * Лайк и его отмена: данные набора не меняются.
+     */
+    @Benchmark
+    public void addRemoveLike(StorageState state, Liker liker) {
+        long filmId = state.randomFilmId();
+        state.filmStorage.addLike(filmId, liker.userId);
+        state.filmStorage.removeLike(filmId, liker.userId);
+    }
+
+    @Benchmark
+    public Optional<Film> findById(StorageState state) {
+        return state.filmStorage.findById(state.randomFilmId());
+    }
+
+    @Benchmark
+    public List<Film> getTopFilms(StorageState state) {
+        return state.filmStorage.getTopFilms(10, null, null);
+    }
+
+    @Benchmark
+    public List<User> getFriends(StorageState state) {
+        return state.userStorage.getFriends(state.randomUserId());
+    }
+}
@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Детерминированные синтетические данные для бенчмарков.
+ * Лайки распределены неравномерно: у первых фильмов их примерно вдвое больше среднего,
+ * у последних — почти нет, как у реального каталога с хитами и «длинным хвостом».
+ */
+final class SyntheticData {
+    /**
+     * Пользователи без лайков и друзей — для бенчмарков, которые ставят и снимают лайки.
+     */
+    static final int SPARE_USERS = 1000;
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final LocalDate FIRST_RELEASE = LocalDate.of(1950, 1, 1);
+    private static final LocalDate FIRST_BIRTHDAY = LocalDate.of(1960, 1, 1);
+
+    private SyntheticData() {
+    }
+
+    static void fill(JdbcTemplate jdbcTemplate, int size, int likesPerFilm, int friendsPerUser) {
+        int users = size + SPARE_USERS;
+
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        String filmSql = "INSERT INTO films (id, name, description, release_date, duration, rating_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+        for (int id = 1; id <= size; id++) {
+            rows.add(new Object[]{id, "Film " + id, "Synthetic film number " + id,
+                    Date.valueOf(FIRST_RELEASE.plusDays(id % 25_000)), 90 + id % 60, 1 + id % 5});
+            flushIfFull(jdbcTemplate, rows, filmSql);
+        }
+        flush(jdbcTemplate, rows, filmSql);
+
+        String filmGenreSql = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
+        for (int id = 1; id <= size; id++) {
+            int first = 1 + id % 6;
+            int second = 1 + (id * 7 + 3) % 6;
+            rows.add(new Object[]{id, first});
+            if (second != first) {
+                rows.add(new Object[]{id, second});
+            }
+            flushIfFull(jdbcTemplate, rows, filmGenreSql);
+        }
+        flush(jdbcTemplate, rows, filmGenreSql);
+
+        String userSql = "INSERT INTO users (id, login, name, email, birthday) VALUES (?, ?, ?, ?, ?)";
+        for (int id = 1; id <= users; id++) {
+            rows.add(new Object[]{id, "user" + id, "User " + id, "user" + id + "@example.com",
+                    Date.valueOf(FIRST_BIRTHDAY.plusDays(id % 15_000))});
+            flushIfFull(jdbcTemplate, rows, userSql);
+        }
+        flush(jdbcTemplate, rows, userSql);
+
+        String likeSql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
+        for (int film = 1; film <= size; film++) {
+            double skew = 2.0 * (size - film + 1) / size;
+            int likes = (int) Math.min(size, Math.max(1, Math.round(likesPerFilm * skew)));
+            for (int j = 0; j < likes; j++) {
+                int user = (int) (((long) film * 7919 + j) % size) + 1;
+                rows.add(new Object[]{film, user});
+                flushIfFull(jdbcTemplate, rows, likeSql);
+            }
+        }
+        flush(jdbcTemplate, rows, likeSql);
+
+        String friendSql = "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)";
+        for (int user = 1; user <= size; user++) {
+            Set<Integer> friends = new LinkedHashSet<>();
+            for (int i = 1; i <= friendsPerUser; i++) {
+                int friend = (int) ((user + (long) i * 13) % size) + 1;
+                if (friend != user) {
+                    friends.add(friend);
+                }
+            }
+            for (int friend : friends) {
+                rows.add(new Object[]{user, friend});
+                flushIfFull(jdbcTemplate, rows, friendSql);
+            }
+        }
+        flush(jdbcTemplate, rows, friendSql);
+
+        jdbcTemplate.execute("ALTER TABLE films ALTER COLUMN id RESTART WITH " + (size + 1));
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (users + 1));
+    }
+
+    private static void flushIfFull(JdbcTemplate jdbcTemplate, List<Object[]> rows, String sql) {
+        if (rows.size() >= BATCH_SIZE) {
+            flush(jdbcTemplate, rows, sql);
+        }
+    }
+
+    private static void flush(JdbcTemplate jdbcTemplate, List<Object[]> rows, String sql) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+            rows.clear();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    @Benchmark
+    public List<User> findAll(FilmorateState state) {
+        return state.userStorage.findAll();
+    }
+
+    @Benchmark
+    public Optional<User> findById(FilmorateState state) {
+        return state.userStorage.findById(state.randomUserId());
+    }
+
+    @Benchmark
+    public List<User> getFriends(FilmorateState state) {
+        return state.userService.getFriends(state.randomUserId());
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends(FilmorateState state) {
+        return state.userService.getCommonFriends(state.randomUserId(), state.randomUserId());
+    }
+}
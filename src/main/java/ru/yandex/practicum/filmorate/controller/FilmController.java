@@ -1,33 +1,64 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
-import java.util.Collection;
 import java.util.List;
 
 @RestController
 @RequestMapping("/films")
 @RequiredArgsConstructor
 @Slf4j
+@Validated
 public class FilmController {
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public Collection<Film> findAll() {
-        log.debug("Получен запрос на получение всех фильмов");
-        Collection<Film> films = filmService.findAll();
-        log.debug("Количество фильмов: {}", films.size());
+    public ResponseEntity<StreamingResponseBody> findAll(@RequestParam(required = false) Long after,
+                                                         WebRequest request) {
+        log.debug("Получен запрос на получение всех фильмов после id {}", after);
+        FilmService.FilmStream stream = filmService.openFilmStream(after);
+        JsonArrayStream.releaseAfterRequest(request, stream::release);
+        return JsonArrayStream.ofItems(objectMapper, stream);
+    }
+
+    @GetMapping(params = "limit")
+    public List<Film> findPage(@RequestParam(required = false) Long after, @RequestParam int limit) {
+        log.debug("Получен запрос на страницу фильмов после id {}, размер: {}", after, limit);
+        List<Film> films = filmService.findPage(after, limit);
+        log.debug("Количество фильмов на странице: {}", films.size());
+        return films;
+    }
+
+    @GetMapping("/search")
+    public List<Film> search(@RequestParam String q,
+                             @RequestParam(defaultValue = "0") int offset,
+                             @RequestParam(defaultValue = "20") int limit) {
+        log.debug("Получен запрос на поиск фильмов: '{}', смещение: {}, размер: {}", q, offset, limit);
+        List<Film> films = filmService.searchFilms(q, offset, limit);
+        log.debug("Найдено фильмов: {}", films.size());
         return films;
     }
 
     @GetMapping("/{id}")
-    public Film findById(@PathVariable Long id) {
+    public Film findById(@PathVariable Long id, WebRequest request) {
         log.debug("Получен запрос на фильм с id: {}", id);
+        if (request.checkNotModified(filmService.getETag(id))) {
+            log.debug("Фильм {} не изменился", id);
+            return null;
+        }
         Film film = filmService.findById(id);
         log.debug("Найден фильм: {}", film);
         return film;
@@ -41,6 +72,14 @@ public class FilmController {
         return createdFilm;
     }
 
+    @PostMapping("/batch")
+    public List<Long> createAll(@RequestBody List<@Valid Film> films) {
+        log.debug("Получен запрос на массовое создание фильмов: {}", films.size());
+        List<Long> ids = filmService.createAll(films);
+        log.debug("Создано фильмов: {}", ids.size());
+        return ids;
+    }
+
     @PutMapping
     public Film update(@RequestBody Film film) {
         log.debug("Получен запрос на обновление фильма: {}", film);
@@ -64,10 +103,26 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public List<Film> getPopular(@RequestParam(defaultValue = "10") int count) {
-        log.debug("Запрос на получение популярных фильмов. Количество: {}", count);
-        List<Film> popularFilms = filmService.getTopFilms(count);
+    public List<Film> getPopular(@RequestParam(defaultValue = "10") int count,
+                                 @RequestParam(required = false) Integer genreId,
+                                 @RequestParam(required = false) Integer year) {
+        log.debug("Запрос на получение популярных фильмов. Количество: {}, жанр: {}, год: {}", count, genreId, year);
+        List<Film> popularFilms = filmService.getTopFilms(count, genreId, year);
         log.debug("Получено популярных фильмов: {}", popularFilms.size());
         return popularFilms;
     }
+
+    @GetMapping(value = "/popular/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPopular() {
+        log.debug("Запрос на поток изменений популярных фильмов");
+        return filmService.streamPopular();
+    }
+
+    @GetMapping("/{id}/similar")
+    public List<Film> getSimilar(@PathVariable Long id, @RequestParam(defaultValue = "10") int count) {
+        log.debug("Запрос похожих фильмов для фильма {}. Количество: {}", id, count);
+        List<Film> similarFilms = filmService.getSimilarFilms(id, count);
+        log.debug("Получено похожих фильмов: {}", similarFilms.size());
+        return similarFilms;
+    }
 }
@@ -5,6 +5,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.dao.dto.GenreDto;
 import ru.yandex.practicum.filmorate.service.GenreService;
 
@@ -17,12 +18,18 @@ public class GenreController {
     private final GenreService genreService;
 
     @GetMapping
-    public List<GenreDto> getAllGenres() {
+    public List<GenreDto> getAllGenres(WebRequest request) {
+        if (request.checkNotModified(genreService.getETag())) {
+            return null;
+        }
         return genreService.getAllGenres();
     }
 
     @GetMapping("/{id}")
-    public GenreDto getGenreById(@PathVariable int id) {
+    public GenreDto getGenreById(@PathVariable int id, WebRequest request) {
+        if (request.checkNotModified(genreService.getETag(id))) {
+            return null;
+        }
         return genreService.getGenreById(id);
     }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * Пишет JSON-массив в ответ по мере получения порций или отдельных элементов,
+ * не собирая весь список в памяти.
+ */
+final class JsonArrayStream {
+
+    private JsonArrayStream() {
+    }
+
+    static <T> ResponseEntity<StreamingResponseBody> of(ObjectMapper objectMapper,
+                                                         Consumer<Consumer<List<T>>> source) {
+        return array(objectMapper, generator -> source.accept(chunk -> writeChunk(generator, chunk)));
+    }
+
+    /**
+     * Элементы пишутся по одному без сброса после каждого: в сеть уходят по мере заполнения буфера генератора.
+     */
+    static <T> ResponseEntity<StreamingResponseBody> ofItems(ObjectMapper objectMapper,
+                                                              Consumer<Consumer<T>> source) {
+        return array(objectMapper, generator -> source.accept(item -> writeItem(generator, item)));
+    }
+
+    /**
+     * Вызывает release, когда запрос закончится, даже если тело ответа так и не запустилось:
+     * по завершении асинхронной обработки (в том числе по таймауту, ошибке или отключению клиента)
+     * или в конце запроса, если до асинхронной обработки дело не дошло. release может вызываться повторно.
+     */
+    static void releaseAfterRequest(WebRequest request, Runnable release) {
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.registerCallableInterceptor(release, new CallableProcessingInterceptor() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                release.run();
+            }
+        });
+        RequestContextHolder.currentRequestAttributes().registerDestructionCallback(
+                JsonArrayStream.class.getName() + "." + System.identityHashCode(release), () -> {
+                    if (!asyncManager.isConcurrentHandlingStarted()) {
+                        release.run();
+                    }
+                }, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> array(ObjectMapper objectMapper,
+                                                               Consumer<JsonGenerator> writer) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                try {
+                    writer.accept(generator);
+                } catch (RuntimeException e) {
+                    // оборванный ответ не должен выглядеть как полный массив
+                    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                    throw e;
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    private static <T> void writeItem(JsonGenerator generator, T item) {
+        try {
+            // writeValue сбрасывал бы генератор после каждого элемента (FLUSH_AFTER_WRITE_VALUE)
+            generator.writeObject(item);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> void writeChunk(JsonGenerator generator, List<T> chunk) {
+        try {
+            for (T item : chunk) {
+                generator.writeObject(item);
+            }
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
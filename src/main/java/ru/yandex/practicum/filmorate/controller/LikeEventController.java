@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.service.LikeEventService;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Журнал лайков. Границы промежутка — моменты времени в ISO-8601 (2024-05-01T00:00:00Z), конец не включается.
+ */
+@RestController
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+@RequestMapping("/likes")
+@RequiredArgsConstructor
+@Slf4j
+public class LikeEventController {
+    private final LikeEventService likeEventService;
+
+    @GetMapping("/events")
+    public List<LikeEvent> findEvents(@RequestParam(required = false) Instant from,
+                                      @RequestParam(required = false) Instant to,
+                                      @RequestParam(required = false) Long after,
+                                      @RequestParam(defaultValue = "1000") int limit) {
+        log.debug("Получен запрос событий журнала лайков с {} по {} после id {}", from, to, after);
+        List<LikeEvent> events = likeEventService.findEvents(from, to, after, limit);
+        log.debug("Получено событий: {}", events.size());
+        return events;
+    }
+
+    /**
+     * Изменение числа лайков каждого фильма за промежуток; без from — число лайков на момент to.
+     */
+    @GetMapping("/counts")
+    public Map<Long, Long> replayCounts(@RequestParam(required = false) Instant from,
+                                        @RequestParam(required = false) Instant to) {
+        log.debug("Получен запрос пересчёта лайков по журналу с {} по {}", from, to);
+        return likeEventService.replayCounts(from, to);
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.dao.dto.MpaDto;
 import ru.yandex.practicum.filmorate.service.MpaService;
 
@@ -17,12 +18,18 @@ public class MpaController {
     private final MpaService mpaService;
 
     @GetMapping
-    public List<MpaDto> getAllMpa() {
+    public List<MpaDto> getAllMpa(WebRequest request) {
+        if (request.checkNotModified(mpaService.getETag())) {
+            return null;
+        }
         return mpaService.getAllMpa();
     }
 
     @GetMapping("/{id}")
-    public MpaDto getMpaById(@PathVariable int id) {
+    public MpaDto getMpaById(@PathVariable int id, WebRequest request) {
+        if (request.checkNotModified(mpaService.getETag(id))) {
+            return null;
+        }
         return mpaService.getMpaById(id);
     }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.service.SnapshotService;
+
+/**
+ * Выгрузка отдаёт всю базу, включая email и дни рождения пользователей, поэтому эндпоинт
+ * есть только при filmorate.snapshot.export-enabled=true и должен быть закрыт от внешнего доступа.
+ * Сервиса снимков нет при filmorate.storage=memory: данные лежат в журналах, а не в таблицах,
+ * и выгрузка отклоняется до начала ответа — после первого байта снимка статус ошибки уже не отдать.
+ */
+@RestController
+@ConditionalOnProperty(name = "filmorate.snapshot.export-enabled", havingValue = "true")
+@RequestMapping("/snapshot")
+@RequiredArgsConstructor
+public class SnapshotController {
+    private final ObjectProvider<SnapshotService> snapshotService;
+
+    /**
+     * Двоичный снимок базы; загружается на другом узле через filmorate.snapshot.import-on-startup.
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> export() {
+        SnapshotService service = snapshotService.getIfAvailable();
+        if (service == null) {
+            throw new ValidationException("Снимки поддерживаются только хранилищем в базе (filmorate.storage=db): "
+                    + "при filmorate.storage=memory данные лежат в журналах, а не в таблицах");
+        }
+        StreamingResponseBody body = service::exportSnapshot;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"filmorate.snapshot\"")
+                .body(body);
+    }
+}
@@ -1,13 +1,18 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
-import java.util.Collection;
 import java.util.List;
 
 @RestController
@@ -16,18 +21,30 @@ import java.util.List;
 @Slf4j
 public class UserController {
     private final UserService userService;
+    private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public Collection<User> findAll() {
-        log.debug("Получен запрос на получение всех пользователей");
-        Collection<User> users = userService.findAll();
-        log.debug("Количество пользователей: {}", users.size());
+    public ResponseEntity<StreamingResponseBody> findAll(@RequestParam(required = false) Long after) {
+        log.debug("Получен запрос на получение всех пользователей после id {}", after);
+        return JsonArrayStream.<User>of(objectMapper, consumer -> userService.forEachChunk(after, consumer));
+    }
+
+    @GetMapping(params = "limit")
+    public List<User> findPage(@RequestParam(required = false) Long after, @RequestParam int limit) {
+        log.debug("Получен запрос на страницу пользователей после id {}, размер: {}", after, limit);
+        List<User> users = userService.findPage(after, limit);
+        log.debug("Количество пользователей на странице: {}", users.size());
         return users;
     }
 
     @GetMapping("/{id}")
-    public User findById(@PathVariable Long id) {
+    public User findById(@PathVariable Long id, WebRequest request) {
         log.debug("Получен запрос на пользователя с id: {}", id);
+        if (request.checkNotModified(userService.getETag(id))) {
+            log.debug("Пользователь {} не изменился", id);
+            return null;
+        }
         User user = userService.findById(id);
         log.debug("Найден пользователь: {}", user);
         return user;
@@ -81,4 +98,20 @@ public class UserController {
         log.debug("Количество общих друзей: {}", commonFriends.size());
         return commonFriends;
     }
+
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable Long id, @RequestParam(defaultValue = "10") int count) {
+        log.debug("Запрос рекомендаций друзей для пользователя {}, количество: {}", id, count);
+        List<User> suggestions = userService.getFriendSuggestions(id, count);
+        log.debug("Количество рекомендаций: {}", suggestions.size());
+        return suggestions;
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable Long id, @RequestParam(defaultValue = "10") int count) {
+        log.debug("Запрос рекомендаций фильмов для пользователя {}, количество: {}", id, count);
+        List<Film> recommendations = filmService.getRecommendations(id, count);
+        log.debug("Количество рекомендованных фильмов: {}", recommendations.size());
+        return recommendations;
+    }
 }
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.dao.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.index.TransactionCallbacks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Номера версий фильмов и пользователей для строгих ETag.
+ * Версия увеличивается после коммита каждой записи, меняющей сущность, поэтому ETag, прочитанный
+ * до загрузки сущности, никогда не окажется новее отданных данных. Номер запуска в ETag
+ * отличает версии разных запусков приложения (и замены данных через {@link #reset()}),
+ * версия справочников — перечитанные жанры и MPA.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityVersions {
+    private static final String BOOT = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private final ReferenceDataCache referenceDataCache;
+
+    private final Map<Long, Long> filmVersions = new ConcurrentHashMap<>();
+    private final Map<Long, Long> userVersions = new ConcurrentHashMap<>();
+    private final AtomicLong filmsVersion = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+    private volatile String epoch = BOOT;
+
+    public String filmETag(long filmId) {
+        // в фильме есть названия жанров и рейтинга, поэтому учитывается и версия справочников
+        return eTag("film", filmId, filmVersions.getOrDefault(filmId, 0L) + "." + referenceDataCache.getVersion());
+    }
+
+    public String userETag(long userId) {
+        return eTag("user", userId, userVersions.getOrDefault(userId, 0L).toString());
+    }
+
+    public String referenceDataETag(String name) {
+        return "\"" + name + "-" + epoch + "-" + referenceDataCache.getVersion() + "\"";
+    }
+
+    /**
+     * Общая версия всех фильмов: растёт после коммита любого изменения фильмов, включая создание.
+     */
+    public long filmsVersion() {
+        return filmsVersion.get();
+    }
+
+    public void filmChanged(long filmId) {
+        TransactionCallbacks.afterCommit(() -> {
+            filmVersions.merge(filmId, 1L, Long::sum);
+            filmsVersion.incrementAndGet();
+        });
+    }
+
+    public void filmsCreated() {
+        TransactionCallbacks.afterCommit(filmsVersion::incrementAndGet);
+    }
+
+    public void userChanged(long userId) {
+        TransactionCallbacks.afterCommit(() -> userVersions.merge(userId, 1L, Long::sum));
+    }
+
+    /**
+     * Данные заменены целиком (загрузка снимка): все выданные ETag устаревают. Номера версий
+     * начинаются заново, поэтому меняется и номер запуска в ETag, иначе старые ETag могли бы совпасть.
+     */
+    public void reset() {
+        epoch = BOOT + "." + resets.incrementAndGet();
+        filmVersions.clear();
+        userVersions.clear();
+        filmsVersion.incrementAndGet();
+    }
+
+    private String eTag(String kind, long id, String version) {
+        return "\"" + kind + "-" + id + "-" + epoch + "-" + version + "\"";
+    }
+}
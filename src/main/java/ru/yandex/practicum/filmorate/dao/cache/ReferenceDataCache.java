@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.dao.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.dto.GenreDto;
+import ru.yandex.practicum.filmorate.dao.dto.MpaDto;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.storage.film.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.film.MpaStorage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш справочников жанров и MPA-рейтингов.
+ * Таблицы маленькие и почти не меняются, поэтому загружаются целиком при старте.
+ * После изменения справочников в базе нужно вызвать {@link #invalidate()},
+ * и при следующем обращении кэш перечитается.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReferenceDataCache {
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+
+    private final AtomicLong loads = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    public void preload() {
+        current();
+    }
+
+    public void invalidate() {
+        snapshot = null;
+        log.info("Кэш справочников жанров и MPA сброшен");
+    }
+
+    public List<GenreDto> getGenres() {
+        return List.copyOf(current().genres().values());
+    }
+
+    public Optional<GenreDto> findGenre(int id) {
+        return Optional.ofNullable(current().genres().get(id));
+    }
+
+    public List<MpaDto> getMpaRatings() {
+        return List.copyOf(current().mpaRatings().values());
+    }
+
+    public Optional<MpaDto> findMpa(int id) {
+        return Optional.ofNullable(current().mpaRatings().get(id));
+    }
+
+    /**
+     * MPA-рейтинг по id; неизвестный id — {@link NotFoundException}.
+     */
+    public MpaDto requireMpa(int mpaId) {
+        return findMpa(mpaId)
+                .orElseThrow(() -> new NotFoundException("MPA-рейтинг с ID " + mpaId + " не найден"));
+    }
+
+    /**
+     * Проверяет жанры фильма до любых изменений и приводит список к виду, в котором его
+     * отдаёт чтение из хранилища: без дублей, по возрастанию id, с названиями; без жанров — null.
+     */
+    public List<GenreDto> requireGenres(List<GenreDto> genres) {
+        if (genres == null) return null;
+
+        Map<Integer, GenreDto> distinct = new TreeMap<>();
+        for (GenreDto genre : genres) {
+            if (genre == null) continue;
+            GenreDto cached = findGenre(genre.getId())
+                    .orElseThrow(() -> new NotFoundException("Жанр с ID " + genre.getId() + " не найден"));
+            distinct.putIfAbsent(cached.getId(), new GenreDto(cached.getId(), cached.getName()));
+        }
+        return distinct.isEmpty() ? null : new ArrayList<>(distinct.values());
+    }
+
+    /**
+     * Номер загрузки справочников: меняется после каждого перечитывания, годится для ETag.
+     */
+    public long getVersion() {
+        return current().version();
+    }
+
+    private Snapshot current() {
+        Snapshot loaded = snapshot;
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = snapshot;
+                if (loaded == null) {
+                    loaded = load();
+                    snapshot = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private Snapshot load() {
+        Map<Integer, GenreDto> genres = new LinkedHashMap<>();
+        genreStorage.findAll().forEach(genre -> genres.put(genre.getId(), genre));
+        Map<Integer, MpaDto> mpaRatings = new LinkedHashMap<>();
+        mpaStorage.findAll().forEach(mpa -> mpaRatings.put(mpa.getId(), mpa));
+        log.info("Загружены справочники: жанров {}, MPA-рейтингов {}", genres.size(), mpaRatings.size());
+        return new Snapshot(genres, mpaRatings, loads.incrementAndGet());
+    }
+
+    private record Snapshot(Map<Integer, GenreDto> genres, Map<Integer, MpaDto> mpaRatings, long version) {
+    }
+}
@@ -1,36 +1,82 @@
 package ru.yandex.practicum.filmorate.dao.dbStorages;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.context.annotation.Primary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.dao.dto.GenreDto;
-import ru.yandex.practicum.filmorate.dao.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.dao.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dao.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.dao.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.dao.index.KnownIds;
+import ru.yandex.practicum.filmorate.dao.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.dao.likes.LikeEventLog;
+import ru.yandex.practicum.filmorate.dao.likes.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.dao.mapper.FilmAggregateExtractor;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
-import java.util.function.Function;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository("filmDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
 @RequiredArgsConstructor
-@Primary
 public class FilmDbStorage implements FilmStorage {
+    /**
+     * Фильм целиком за один запрос: рейтинг, количество лайков и жанры (по строке на жанр).
+     * Первый параметр шаблона — источник строк films, второй — условие WHERE.
+     */
+    private static final String FILM_AGGREGATE_SQL = """
+            SELECT
+              f.id, f.name, f.description, f.release_date, f.duration,
+              r.id   AS mpa_id,
+              r.name AS mpa_name,
+              (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.id) AS like_count,
+              g.id   AS genre_id,
+              g.name AS genre_name
+            FROM %s AS f
+            JOIN ratings AS r ON f.rating_id = r.id
+            LEFT JOIN film_genre AS fg ON fg.film_id = f.id
+            LEFT JOIN genres AS g ON fg.genre_id = g.id
+            %s
+            ORDER BY f.id, g.id
+            """;
+
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
-    private final FilmMapper filmMapper;
+    private final FilmAggregateExtractor filmExtractor;
+    private final PopularityLeaderboard leaderboard;
+    private final ReferenceDataCache referenceDataCache;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final LikeEventLog likeEventLog;
+    private final CoLikeIndex coLikeIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final EntityVersions entityVersions;
+    private final KnownIds knownIds;
 
     public Film create(Film film) {
-        checkMpaExists(film.getMpa().getId());
+        MpaDto mpa = referenceDataCache.requireMpa(film.getMpa().getId());
+        List<GenreDto> genres = referenceDataCache.requireGenres(film.getGenres());
 
         String sql = "INSERT INTO films (name, description, release_date, duration, rating_id) " +
                 "VALUES (?, ?, ?, ?, ?)";
@@ -42,25 +88,108 @@ public class FilmDbStorage implements FilmStorage {
             stmt.setString(2, film.getDescription());
             stmt.setDate(3, java.sql.Date.valueOf(film.getReleaseDate()));
             stmt.setLong(4, film.getDuration());
-            stmt.setInt(5, film.getMpa().getId());
+            stmt.setInt(5, mpa.getId());
             return stmt;
         }, keyHolder);
 
         film.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
-        saveGenresForFilm(film.getId(), film.getGenres());
-        return findById(film.getId()).orElseThrow();
+        knownIds.filmCreated(film.getId());
+        entityVersions.filmsCreated();
+        saveGenresForFilm(film.getId(), genres);
+        leaderboard.register(film.getId(), film.getReleaseDate().getYear(), genreIds(genres));
+        filmSearchIndex.index(film.getId(), film.getName(), film.getDescription());
+
+        // всё, что вернул бы повторный findById, уже известно — не перечитываем
+        film.setMpa(mpa);
+        film.setGenres(genres);
+        film.setCountLikes(0L);
+        return film;
     }
 
+    /**
+     * Массовая вставка фильмов одной транзакцией: все фильмы проверяются до первой вставки,
+     * затем films и film_genre пишутся JDBC-пакетами. Возвращает id в порядке входного списка.
+     */
     @Override
     @Transactional
-    public Film update(Film film) {
-        Film existing = findById(film.getId())
-                .orElseThrow(() -> new NotFoundException("Фильм с ID " + film.getId() + " не найден"));
+    public List<Long> createAll(List<Film> films) {
+        List<MpaDto> mpas = new ArrayList<>(films.size());
+        List<List<GenreDto>> genres = new ArrayList<>(films.size());
+        for (Film film : films) {
+            mpas.add(referenceDataCache.requireMpa(film.getMpa().getId()));
+            genres.add(referenceDataCache.requireGenres(film.getGenres()));
+        }
+
+        List<Long> ids = new ArrayList<>(films.size());
+        for (int from = 0; from < films.size(); from += IMPORT_BATCH_SIZE) {
+            List<Film> chunk = films.subList(from, Math.min(from + IMPORT_BATCH_SIZE, films.size()));
+            ids.addAll(insertFilmsBatch(chunk));
+        }
+
+        List<Map.Entry<Long, Integer>> filmGenres = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(ids.get(i));
+            film.setMpa(mpas.get(i));
+            film.setGenres(genres.get(i));
+            film.setCountLikes(0L);
+            knownIds.filmCreated(film.getId());
+            filmSearchIndex.index(film.getId(), film.getName(), film.getDescription());
+            if (film.getGenres() != null) {
+                film.getGenres().forEach(genre -> filmGenres.add(Map.entry(film.getId(), genre.getId())));
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", filmGenres,
+                IMPORT_BATCH_SIZE, (ps, row) -> {
+                    ps.setLong(1, row.getKey());
+                    ps.setInt(2, row.getValue());
+                });
+
+        for (Film film : films) {
+            leaderboard.register(film.getId(), film.getReleaseDate().getYear(), genreIds(film.getGenres()));
+        }
+        entityVersions.filmsCreated();
+        return ids;
+    }
 
+    private List<Long> insertFilmsBatch(List<Film> films) {
+        String sql = "INSERT INTO films (name, description, release_date, duration, rating_id) " +
+                "VALUES (?, ?, ?, ?, ?)";
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (Film film : films) {
+                    stmt.setString(1, film.getName());
+                    stmt.setString(2, film.getDescription());
+                    stmt.setDate(3, java.sql.Date.valueOf(film.getReleaseDate()));
+                    stmt.setLong(4, film.getDuration());
+                    stmt.setInt(5, film.getMpa().getId());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+
+                List<Long> ids = new ArrayList<>(films.size());
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getLong(1));
+                    }
+                }
+                if (ids.size() != films.size()) {
+                    throw new IllegalStateException("Драйвер вернул " + ids.size() +
+                            " ключей на " + films.size() + " вставленных фильмов");
+                }
+                return ids;
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public Film update(Film film) {
         if (film.getMpa() == null) {
             throw new ValidationException("MPA rating is required");
         }
-        checkMpaExists(film.getMpa().getId());
+        MpaDto mpa = referenceDataCache.requireMpa(film.getMpa().getId());
+        List<GenreDto> genres = referenceDataCache.requireGenres(film.getGenres());
 
         String sql = "UPDATE films SET " +
                 "name = ?, description = ?, release_date = ?, duration = ?, rating_id = ? " +
@@ -71,61 +200,48 @@ public class FilmDbStorage implements FilmStorage {
                 film.getDescription(),
                 java.sql.Date.valueOf(film.getReleaseDate()),
                 film.getDuration(),
-                film.getMpa().getId(),
+                mpa.getId(),
                 film.getId());
 
         if (updated == 0) {
-            throw new NotFoundException("Фильм не был обновлен");
+            throw new NotFoundException("Фильм с ID " + film.getId() + " не найден");
         }
 
-        updateGenresForFilm(film.getId(), film.getGenres());
-        return findById(film.getId()).orElseThrow();
+        updateGenresForFilm(film.getId(), genres);
+        leaderboard.reclassify(film.getId(), film.getReleaseDate().getYear(), genreIds(genres));
+        filmSearchIndex.index(film.getId(), film.getName(), film.getDescription());
+        entityVersions.filmChanged(film.getId());
+
+        film.setMpa(mpa);
+        film.setGenres(genres);
+        film.setCountLikes(leaderboard.getLikeCount(film.getId()));
+        return film;
     }
 
 
     private void saveGenresForFilm(Long filmId, List<GenreDto> genres) {
         if (genres == null || genres.isEmpty()) return;
 
-        // убираем дубли по id
-        List<GenreDto> distinct = genres.stream()
-                .filter(Objects::nonNull)
-                .collect(Collectors.toMap(GenreDto::getId, Function.identity(), (g1, g2) -> g1))
-                .values()
-                .stream().toList();
-
         String sql = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
         jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
-                GenreDto genre = distinct.get(i);
-                // проверяем, что жанр существует
-                Integer cnt = jdbcTemplate.queryForObject(
-                        "SELECT COUNT(*) FROM genres WHERE id = ?", Integer.class, genre.getId());
-                if (cnt == null || cnt == 0) {
-                    throw new NotFoundException("Жанр с ID " + genre.getId() + " не найден");
-                }
+                GenreDto genre = genres.get(i);
                 ps.setLong(1, filmId);
                 ps.setInt(2, genre.getId());
             }
 
             @Override
             public int getBatchSize() {
-                return distinct.size();
+                return genres.size();
             }
         });
     }
 
     // В updateGenresForFilm не лезем — он просто пересохраняет, переиспользует saveGenresForFilm
 
-    /**
-     * Проверяет, что в таблице ratings есть запись с таким id.
-     */
-    private void checkMpaExists(int mpaId) {
-        Integer cnt = jdbcTemplate.queryForObject(
-                "SELECT COUNT(*) FROM ratings WHERE id = ?", Integer.class, mpaId);
-        if (cnt == null || cnt == 0) {
-            throw new NotFoundException("MPA-рейтинг с ID " + mpaId + " не найден");
-        }
+    private static int[] genreIds(List<GenreDto> genres) {
+        return genres == null ? new int[0] : genres.stream().mapToInt(GenreDto::getId).toArray();
     }
 
     private void updateGenresForFilm(Long filmId, List<GenreDto> genres) {
@@ -135,167 +251,273 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Film> findAll() {
-        String sql = """
-                SELECT
-                  f.id, f.name, f.description, f.release_date, f.duration,
-                  r.id   AS mpa_id,
-                  r.name AS mpa_name
-                FROM films AS f
-                JOIN ratings AS r ON f.rating_id = r.id
-                """;
-        List<Film> films = jdbcTemplate.query(sql, filmMapper);
-        loadAdditionalData(films);
-        return films;
+        return withPendingLikes(jdbcTemplate.query(filmAggregateSql("films", ""), filmExtractor));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Film> findById(Long id) {
-        String sql = """
-                SELECT
-                  f.id, f.name, f.description, f.release_date, f.duration,
-                  r.id   AS mpa_id,
-                  r.name AS mpa_name
-                FROM films AS f
-                JOIN ratings AS r ON f.rating_id = r.id
-                WHERE f.id = ?
-                """;
-        List<Film> list = jdbcTemplate.query(sql, filmMapper, id);
+        if (!knownIds.filmMayExist(id)) {
+            return Optional.empty();
+        }
+        List<Film> list = jdbcTemplate.query(filmAggregateSql("films", "WHERE f.id = ?"), filmExtractor, id);
         if (list.isEmpty()) {
             return Optional.empty();
         }
-        Film film = list.get(0);
-        loadAdditionalData(Collections.singletonList(film));
-        return Optional.of(film);
+        return Optional.of(withPendingLikes(list).get(0));
     }
 
-    private void loadAdditionalData(List<Film> films) {
-        if (films.isEmpty()) return;
-
-        // Очистка существующих данных перед загрузкой
-        for (Film film : films) {
-            if (film.getGenres() != null) {
-                film.getGenres().clear();
-            }
+    @Override
+    public boolean exists(Long id) {
+        if (!knownIds.filmMayExist(id)) {
+            return false;
         }
-
-        loadLikes(films);
-        loadGenres(films);
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM films WHERE id = ?)", Boolean.class, id));
     }
 
+    /**
+     * Страница фильмов по ключу: фильмы с id больше afterId в порядке возрастания id.
+     * LIMIT применяется к фильмам во вложенном запросе, а не к строкам с жанрами.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> findPage(Long afterId, int limit) {
+        String page = "(SELECT * FROM films WHERE id > ? ORDER BY id LIMIT ?)";
+        return withPendingLikes(jdbcTemplate.query(filmAggregateSql(page, ""), filmExtractor,
+                afterId == null ? 0L : afterId, limit));
+    }
 
-    private void loadLikes(List<Film> films) {
-        if (films.isEmpty()) {
-            return;
-        }
-
-        // Собираем map для быстрого поиска по ид
-        Map<Long, Film> filmMap = films.stream()
-                .collect(Collectors.toMap(Film::getId, Function.identity()));
-
-        // Формируем SQL с группировкой и подсчётом лайков
-        String sql = "SELECT film_id, COUNT(user_id) AS like_count " +
-                "FROM likes " +
-                "WHERE film_id IN (" + getPlaceholders(filmMap.size()) + ") " +
-                "GROUP BY film_id";
-
-        // Параметры для IN‑списка
-        Object[] params = filmMap.keySet().toArray();
-
-        // Выполняем запрос и проставляем countLikes
-        jdbcTemplate.query(sql, rs -> {
-            long filmId = rs.getLong("film_id");
-            long likeCount = rs.getLong("like_count");
-
-            Film film = filmMap.get(filmId);
-            if (film != null) {
-                film.setCountLikes(likeCount);
-            }
-        }, params);
-
-        // Для фильмов без записей в likes установим 0
-        filmMap.values().forEach(f -> {
-            if (f.getCountLikes() == null) {
-                f.setCountLikes(0L);
-            }
+    /**
+     * Все фильмы с id больше afterId одним запросом через курсор: драйвер читает строки порциями
+     * по {@link #STREAM_FETCH_SIZE}, а каждый фильм с жанрами и лайками отдаётся потребителю,
+     * как только закончились его строки. Список фильмов в памяти не собирается.
+     * Транзакция нужна драйверам, которые держат курсор только при выключенном autocommit.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(Long afterId, Consumer<Film> consumer) {
+        String sql = filmAggregateSql("(SELECT * FROM films WHERE id > ?)", "");
+        jdbcTemplate.query(connection -> {
+            PreparedStatement stmt = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            stmt.setLong(1, afterId == null ? 0L : afterId);
+            return stmt;
+        }, (ResultSetExtractor<Void>) rs -> {
+            filmExtractor.fold(rs, film -> consumer.accept(withPendingLikes(film)));
+            return null;
         });
     }
 
+    /**
+     * При отложенной записи лайков и при журнале лайков таблица likes отстаёт от принятых операций,
+     * поэтому количество лайков берётся из рейтинга в памяти, который обновляется сразу.
+     */
+    private List<Film> withPendingLikes(List<Film> films) {
+        films.forEach(this::withPendingLikes);
+        return films;
+    }
 
-    private void loadGenres(List<Film> films) {
-        Map<Long, Film> filmMap = films.stream()
-                .collect(Collectors.toMap(Film::getId, Function.identity()));
-
-        String sql = "SELECT fg.film_id, g.id, g.name " +
-                "FROM film_genre fg JOIN genres g ON fg.genre_id = g.id " +
-                "WHERE fg.film_id IN (" + getPlaceholders(filmMap.size()) + ") " +
-                "ORDER BY g.id";
-
-        jdbcTemplate.query(sql, rs -> {
-            Film film = filmMap.get(rs.getLong("film_id"));
-            if (film != null) {
-                if (film.getGenres() == null) {
-                    film.setGenres(new ArrayList<>());
-                }
-                film.getGenres().add(new GenreDto(
-                        rs.getInt("id"),
-                        rs.getString("name")
-                ));
-            }
-        }, filmMap.keySet().toArray());
+    private Film withPendingLikes(Film film) {
+        if (likeWriteBuffer.isEnabled() || likeEventLog.isEnabled()) {
+            film.setCountLikes(leaderboard.getLikeCount(film.getId()));
+        }
+        return film;
     }
 
-    private String getPlaceholders(int count) {
-        return String.join(",", Collections.nCopies(count, "?"));
+    private String filmAggregateSql(String source, String where) {
+        return FILM_AGGREGATE_SQL.formatted(source, where);
     }
 
+    /**
+     * Лайк — один INSERT: отсутствие фильма или пользователя ловят внешние ключи likes,
+     * и только тогда уточняющий запрос выясняет, кого именно нет. Повторный лайк ничего не меняет.
+     * Буфер отложенной записи в базу сразу не пишет, поэтому там фильм и пользователь проверяются заранее —
+     * по множествам id в памяти, а сам буфер сверяется с индексом совместных лайков и тоже не читает базу.
+     * При включённом журнале лайк — вставка события в like_events, а в likes он попадёт при уплотнении.
+     */
     @Override
     public void addLike(Long filmId, Long userId) {
+        if (likeEventLog.isEnabled()) {
+            try {
+                if (!likeEventLog.addLike(filmId, userId)) {
+                    return;
+                }
+            } catch (DataIntegrityViolationException e) {
+                requireFilmAndUser(filmId, userId);
+                throw e;
+            }
+            leaderboard.increment(filmId);
+            entityVersions.filmChanged(filmId);
+            return;
+        }
+        if (likeWriteBuffer.isEnabled()) {
+            requireKnownFilmAndUser(filmId, userId);
+            if (likeWriteBuffer.addLike(filmId, userId)) {
+                leaderboard.increment(filmId);
+                entityVersions.filmChanged(filmId);
+            }
+            return;
+        }
         String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, filmId, userId);
+        try {
+            jdbcTemplate.update(sql, filmId, userId);
+        } catch (DuplicateKeyException e) {
+            return;
+        } catch (DataIntegrityViolationException e) {
+            requireFilmAndUser(filmId, userId);
+            throw e;
+        }
+        leaderboard.increment(filmId);
+        coLikeIndex.addLike(filmId, userId);
+        entityVersions.filmChanged(filmId);
     }
 
     @Override
     public void removeLike(Long filmId, Long userId) {
+        if (likeEventLog.isEnabled()) {
+            if (!likeEventLog.removeLike(filmId, userId)) {
+                requireFilmAndUser(filmId, userId);
+                throw new NotFoundException("Лайк не найден");
+            }
+            leaderboard.decrement(filmId);
+            entityVersions.filmChanged(filmId);
+            return;
+        }
+        if (likeWriteBuffer.isEnabled()) {
+            requireKnownFilmAndUser(filmId, userId);
+            likeWriteBuffer.removeLike(filmId, userId);
+            leaderboard.decrement(filmId);
+            entityVersions.filmChanged(filmId);
+            return;
+        }
         String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
         int deleted = jdbcTemplate.update(sql, filmId, userId);
         if (deleted == 0) {
+            requireFilmAndUser(filmId, userId);
             throw new NotFoundException("Лайк не найден");
         }
+        leaderboard.decrement(filmId);
+        coLikeIndex.removeLike(filmId, userId);
+        entityVersions.filmChanged(filmId);
     }
 
+    /**
+     * Проверяет фильм и пользователя по множествам id в памяти. Записи удаляет только загрузка снимка,
+     * после которой множества перестраиваются, поэтому «возможно» для id в пределах карт значит «есть».
+     * Базу спрашивает, только если id вышел за пределы карт.
+     */
+    private void requireKnownFilmAndUser(Long filmId, Long userId) {
+        if (!knownIds.isExact(filmId) || !knownIds.isExact(userId)) {
+            requireFilmAndUser(filmId, userId);
+            return;
+        }
+        if (!knownIds.filmMayExist(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+        if (!knownIds.userMayExist(userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
+    }
+
+    /**
+     * Проверяет фильм и пользователя одним запросом по первичным ключам;
+     * заведомо несуществующие id отклоняются без запроса.
+     */
+    private void requireFilmAndUser(Long filmId, Long userId) {
+        if (!knownIds.filmMayExist(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+        if (!knownIds.userMayExist(userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
+        String sql = "SELECT EXISTS (SELECT 1 FROM films WHERE id = ?) AS film_exists, " +
+                "EXISTS (SELECT 1 FROM users WHERE id = ?) AS user_exists";
+        jdbcTemplate.query(sql, rs -> {
+            if (!rs.getBoolean("film_exists")) {
+                throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+            }
+            if (!rs.getBoolean("user_exists")) {
+                throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+            }
+        }, filmId, userId);
+    }
+
+    /**
+     * Порядок берётся из рейтинга в памяти (общего, жанра или года), из базы читаются только сами фильмы топа.
+     */
     @Override
-    public List<Film> getTopFilms(int count) {
-        String sql = """
-                SELECT
-                  f.id,
-                  f.name,
-                  f.description,
-                  f.release_date,
-                  f.duration,
-                  r.id   AS mpa_id,
-                  r.name AS mpa_name
-                FROM films AS f
-                JOIN ratings AS r
-                  ON f.rating_id = r.id
-                LEFT JOIN likes AS l
-                  ON f.id = l.film_id
-                GROUP BY
-                  f.id,
-                  f.name,
-                  f.description,
-                  f.release_date,
-                  f.duration,
-                  r.id,
-                  r.name
-                ORDER BY COUNT(l.user_id) DESC
-                LIMIT ?
-                """;
-
-        List<Film> films = jdbcTemplate.query(sql, filmMapper, count);
-        loadAdditionalData(films);
+    @Transactional(readOnly = true)
+    public List<Film> getTopFilms(int count, Integer genreId, Integer year) {
+        List<Long> topIds = leaderboard.getTopFilmIds(count, genreId, year);
+        List<Film> films = findAllByIds(topIds);
+        films.forEach(film -> film.setCountLikes(leaderboard.getLikeCount(film.getId())));
         return films;
     }
 
+    @Override
+    public List<Long> getTopFilmIds(int count) {
+        return leaderboard.getTopFilmIds(count);
+    }
+
+    /**
+     * Счётчики берутся из рейтинга в памяти: в нём уже учтены лайки из буфера отложенной записи.
+     */
+    @Override
+    public Map<Long, Long> getLikeCounts(Collection<Long> filmIds) {
+        Map<Long, Long> counts = new HashMap<>();
+        filmIds.forEach(filmId -> counts.put(filmId, leaderboard.getLikeCount(filmId)));
+        return counts;
+    }
+
+    /**
+     * Фильмы, которые чаще всего лайкают вместе с данным; порядок берётся из индекса совместных лайков.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> getSimilarFilms(Long filmId, int count) {
+        return withPendingLikes(findAllByIds(boxed(coLikeIndex.similarTo(filmId, count))));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> getRecommendations(Long userId, int count) {
+        return withPendingLikes(findAllByIds(boxed(coLikeIndex.recommendFor(userId, count))));
+    }
 
-}
\ No newline at end of file
+    /**
+     * Полнотекстовый поиск: порядок и страница берутся из поискового индекса, из базы читаются только найденные фильмы.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> searchFilms(String query, int offset, int limit) {
+        return withPendingLikes(findAllByIds(filmSearchIndex.search(query, offset, limit)));
+    }
+
+    private static List<Long> boxed(long[] ids) {
+        return Arrays.stream(ids).boxed().toList();
+    }
+
+    private List<Film> findAllByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // фильмы выбираются соединением с массивом id: форма запроса не зависит от их числа
+        String source = "(SELECT films.* FROM UNNEST(?) AS ids(id) JOIN films ON films.id = ids.id)";
+        String sql = filmAggregateSql(source, "");
+        Map<Long, Film> byId = new HashMap<>();
+        for (Long[] chunk : IdArrays.chunks(ids)) {
+            jdbcTemplate.query(sql, IdArrays.parameter(chunk), filmExtractor)
+                    .forEach(film -> byId.put(film.getId(), film));
+        }
+
+        // сохраняем порядок, в котором пришли id
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+}
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.dao.dbStorages;
+
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Поиск по набору id запросом постоянной формы: id передаются одним параметром-массивом
+ * и соединяются с таблицей через UNNEST(?), поэтому текст запроса не зависит от числа id
+ * и план переиспользуется, а не разбирается заново для каждого размера списка IN (?, ?, ...).
+ * Большие наборы режутся на части: у H2 ограничена длина массива.
+ */
+final class IdArrays {
+    static final int CHUNK_SIZE = 10_000;
+
+    private IdArrays() {
+    }
+
+    static List<Long[]> chunks(long[] ids) {
+        List<Long[]> chunks = new ArrayList<>(ids.length / CHUNK_SIZE + 1);
+        for (int from = 0; from < ids.length; from += CHUNK_SIZE) {
+            Long[] chunk = new Long[Math.min(CHUNK_SIZE, ids.length - from)];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = ids[from + i];
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    static List<Long[]> chunks(Collection<Long> ids) {
+        return chunks(ids.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    /**
+     * Устанавливает часть id первым параметром запроса.
+     */
+    static PreparedStatementSetter parameter(Long[] chunk) {
+        return stmt -> stmt.setArray(1, stmt.getConnection().createArrayOf("BIGINT", chunk));
+    }
+}
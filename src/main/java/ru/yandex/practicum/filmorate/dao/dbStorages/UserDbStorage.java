@@ -1,11 +1,15 @@
 package ru.yandex.practicum.filmorate.dao.dbStorages;
 
-import org.springframework.context.annotation.Primary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.index.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.dao.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.dao.index.KnownIds;
 import ru.yandex.practicum.filmorate.dao.mapper.UserMapper;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
@@ -16,14 +20,24 @@ import java.sql.PreparedStatement;
 import java.util.*;
 
 @Repository("userDbStorage")
-@Primary
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
 public class UserDbStorage implements UserStorage {
     private final JdbcTemplate jdbcTemplate;
     private final UserMapper userMapper;
-
-    public UserDbStorage(JdbcTemplate jdbcTemplate, UserMapper userMapper) {
+    private final FriendshipGraph friendshipGraph;
+    private final FriendSuggestionEngine friendSuggestionEngine;
+    private final EntityVersions entityVersions;
+    private final KnownIds knownIds;
+
+    public UserDbStorage(JdbcTemplate jdbcTemplate, UserMapper userMapper, FriendshipGraph friendshipGraph,
+                         FriendSuggestionEngine friendSuggestionEngine, EntityVersions entityVersions,
+                         KnownIds knownIds) {
         this.jdbcTemplate = jdbcTemplate;
         this.userMapper = userMapper;
+        this.friendshipGraph = friendshipGraph;
+        this.friendSuggestionEngine = friendSuggestionEngine;
+        this.entityVersions = entityVersions;
+        this.knownIds = knownIds;
     }
 
     @Override
@@ -41,6 +55,7 @@ public class UserDbStorage implements UserStorage {
         }, keyHolder);
 
         user.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
+        knownIds.userCreated(user.getId());
         return user;
     }
 
@@ -57,10 +72,12 @@ public class UserDbStorage implements UserStorage {
         if (updatedRows == 0) {
             throw new NotFoundException("Пользователь с id=" + user.getId() + " не найден");
         }
+        entityVersions.userChanged(user.getId());
         return user;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<User> findAll() {
         String sql = "SELECT * FROM users";
         List<User> users = jdbcTemplate.query(sql, userMapper);
@@ -69,7 +86,11 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<User> findById(Long id) {
+        if (!knownIds.userMayExist(id)) {
+            return Optional.empty();
+        }
         String sql = "SELECT * FROM users WHERE id = ?";
         List<User> users = jdbcTemplate.query(sql, userMapper, id);
         if (users.isEmpty()) {
@@ -81,22 +102,46 @@ public class UserDbStorage implements UserStorage {
         return Optional.of(user);
     }
 
+    /**
+     * Страница пользователей по ключу: пользователи с id больше afterId в порядке возрастания id.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> findPage(Long afterId, int limit) {
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        List<User> users = jdbcTemplate.query(sql, userMapper, afterId == null ? 0L : afterId, limit);
+        loadFriendsAndRequests(users);
+        return users;
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        if (!knownIds.userMayExist(id)) {
+            return false;
+        }
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM users WHERE id = ?)", Boolean.class, id));
+    }
+
     @Override
     @Transactional
     public void addFriendRequest(Long userId, Long friendId) {
-        getUserOrThrow(userId);
-        getUserOrThrow(friendId);
+        requireUsersExist(userId, friendId);
+        if (friendshipGraph.isFriend(userId, friendId)) {
+            return;
+        }
 
         // Добавляем одностороннюю дружбу без запроса
         String sql = "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)";
         jdbcTemplate.update(sql, userId, friendId);
+        friendshipGraph.addFriend(userId, friendId);
+        entityVersions.userChanged(userId);
     }
 
     @Transactional
     @Override
     public void confirmFriendship(Long userId, Long friendId) {
-        getUserOrThrow(userId);
-        getUserOrThrow(friendId);
+        requireUsersExist(userId, friendId);
 
         String deleteRequestSql = "DELETE FROM friend_requests WHERE requester_id = ? AND target_id = ?";
         int deletedRows = jdbcTemplate.update(deleteRequestSql, friendId, userId);
@@ -108,25 +153,90 @@ public class UserDbStorage implements UserStorage {
         String insertFriendshipSql = "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)";
         jdbcTemplate.update(insertFriendshipSql, userId, friendId);
         jdbcTemplate.update(insertFriendshipSql, friendId, userId);
+        friendshipGraph.addFriend(userId, friendId);
+        friendshipGraph.addFriend(friendId, userId);
+        entityVersions.userChanged(userId);
+        entityVersions.userChanged(friendId);
     }
 
     @Override
     @Transactional
     public void removeFriendship(Long userId, Long friendId) {
         // Проверяем, что оба пользователя существуют
-        getUserOrThrow(userId);
-        getUserOrThrow(friendId);
+        requireUsersExist(userId, friendId);
 
         // Удаляем только одну сторону дружбы, идемпотентно
         String sql = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
-        jdbcTemplate.update(sql, userId, friendId);
+        if (jdbcTemplate.update(sql, userId, friendId) > 0) {
+            friendshipGraph.removeFriend(userId, friendId);
+            entityVersions.userChanged(userId);
+        }
         // Не бросаем исключений, если ничего не удалилось
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> getFriends(Long userId) {
+        requireUserExists(userId);
+        return findAllByIds(friendshipGraph.friendsOf(userId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> getCommonFriends(Long userId, Long otherId) {
+        requireUserExists(userId);
+        requireUserExists(otherId);
+        return findAllByIds(friendshipGraph.commonFriends(userId, otherId));
+    }
+
+
+    /**
+     * Рекомендации «друзья друзей» в порядке убывания числа общих друзей.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> getFriendSuggestions(Long userId, int count) {
+        requireUserExists(userId);
+        long[] ranked = friendSuggestionEngine.suggest(userId, count);
+        long[] sorted = ranked.clone();
+        Arrays.sort(sorted);
+        Map<Long, User> byId = new HashMap<>();
+        findAllByIds(sorted).forEach(user -> byId.put(user.getId(), user));
+
+        // граф может знать пользователя, которого в таблице уже (или ещё) нет
+        List<User> suggestions = new ArrayList<>(ranked.length);
+        for (long id : ranked) {
+            User user = byId.get(id);
+            if (user != null) {
+                suggestions.add(user);
+            }
+        }
+        return suggestions;
+    }
+
+    private void requireUserExists(Long id) {
+        if (!exists(id)) {
+            throw new NotFoundException("Пользователь с ID " + id + " не найден");
+        }
+    }
 
-    private User getUserOrThrow(Long id) {
-        return findById(id).orElseThrow(() ->
-                new NotFoundException("Пользователь с ID " + id + " не найден"));
+    /**
+     * Проверяет двух пользователей одним запросом по первичному ключу, без загрузки друзей;
+     * заведомо несуществующие id отклоняются без запроса.
+     */
+    private void requireUsersExist(Long userId, Long otherId) {
+        for (Long id : Arrays.asList(userId, otherId)) {
+            if (!knownIds.userMayExist(id)) {
+                throw new NotFoundException("Пользователь с ID " + id + " не найден");
+            }
+        }
+        List<Long> found = jdbcTemplate.queryForList("SELECT id FROM users WHERE id IN (?, ?)",
+                Long.class, userId, otherId);
+        for (Long id : List.of(userId, otherId)) {
+            if (!found.contains(id)) {
+                throw new NotFoundException("Пользователь с ID " + id + " не найден");
+            }
+        }
     }
 
     private void loadFriendsAndRequests(List<User> users) {
@@ -140,47 +250,54 @@ public class UserDbStorage implements UserStorage {
     }
 
     private void loadFriends(Map<Long, User> userMap) {
-        if (userMap.isEmpty()) return;
-
-        String sql = "SELECT user_id, friend_id FROM friendship WHERE user_id IN (" +
-                String.join(",", Collections.nCopies(userMap.size(), "?")) + ")";
-
-        jdbcTemplate.query(sql, rs -> {
-            Long userId = rs.getLong("user_id");
-            Long friendId = rs.getLong("friend_id");
-            userMap.get(userId).getFriends().add(friendId);
-        }, userMap.keySet().toArray());
+        userMap.forEach((userId, user) -> {
+            for (long friendId : friendshipGraph.friendsOf(userId)) {
+                user.getFriends().add(friendId);
+            }
+        });
     }
 
     private void loadFriendRequests(Map<Long, User> userMap) {
         if (userMap.isEmpty()) return;
 
-        String sql = "SELECT target_id, requester_id FROM friend_requests WHERE target_id IN (" +
-                String.join(",", Collections.nCopies(userMap.size(), "?")) + ")";
+        String sql = "SELECT fr.target_id, fr.requester_id " +
+                "FROM UNNEST(?) AS ids(id) " +
+                "JOIN friend_requests AS fr ON fr.target_id = ids.id";
 
-        jdbcTemplate.query(sql, rs -> {
-            Long targetId = rs.getLong("target_id");
-            Long requesterId = rs.getLong("requester_id");
-            userMap.get(targetId).getRequestedFriends().add(requesterId);
-        }, userMap.keySet().toArray());
+        for (Long[] chunk : IdArrays.chunks(userMap.keySet())) {
+            jdbcTemplate.query(sql, IdArrays.parameter(chunk), rs -> {
+                Long targetId = rs.getLong("target_id");
+                Long requesterId = rs.getLong("requester_id");
+                userMap.get(targetId).getRequestedFriends().add(requesterId);
+            });
+        }
     }
 
     public List<User> findAllByIds(Collection<Long> ids) {
         if (ids == null || ids.isEmpty()) {
             return Collections.emptyList();
         }
-        String sql = "SELECT id, email, login, name, birthday " +
-                "FROM users " +
-                "WHERE id IN (" + getPlaceholders(ids.size()) + ")";
-        return jdbcTemplate.query(
-                sql,
-                userMapper,
-                ids.toArray()
-        );
-    }
-
-    private String getPlaceholders(int count) {
-        return String.join(",", Collections.nCopies(count, "?"));
+        return findAllByIds(ids.stream().mapToLong(Long::longValue).distinct().sorted().toArray());
+    }
+
+    /**
+     * Пользователи по отсортированному массиву id запросами постоянной формы (см. {@link IdArrays}).
+     * Результат упорядочен по id.
+     */
+    private List<User> findAllByIds(long[] ids) {
+        if (ids.length == 0) {
+            return Collections.emptyList();
+        }
+        // соединение с UNNEST, а не id = ANY(?): так H2 ищет каждый id по индексу, а не сканирует таблицу
+        String sql = "SELECT u.id, u.email, u.login, u.name, u.birthday " +
+                "FROM UNNEST(?) AS ids(id) " +
+                "JOIN users AS u ON u.id = ids.id " +
+                "ORDER BY u.id";
+        List<User> users = new ArrayList<>(ids.length);
+        for (Long[] chunk : IdArrays.chunks(ids)) {
+            users.addAll(jdbcTemplate.query(sql, IdArrays.parameter(chunk), userMapper));
+        }
+        return users;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,213 @@
+package ru.yandex.practicum.filmorate.dao.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс совместных лайков «кто лайкнул этот фильм, лайкнул и...».
+ * Для каждого фильма хранятся не больше neighbours соседей с наибольшим числом общих лайкнувших,
+ * поэтому память ограничена. При старте индекс строится параллельно в общем fork-join пуле,
+ * дальше обновляется инкрементально при каждом лайке и его отмене.
+ * Пара, выпавшая из соседей, при последующих лайках не возвращается: её счёт после обрезки
+ * неизвестен. Точные значения восстанавливает следующее построение при старте.
+ * Лайки каждого пользователя хранятся целиком: по ним отвечает hasLike, на который опираются журнал
+ * и буфер отложенной записи лайков. Поэтому и построение считает общих лайкнувших точно, без выборки, —
+ * так же, как инкрементальные обновления; по работе это столько же, сколько проиграть все лайки по одному.
+ * Выборкой до maxFanout лайкнутых фильмов ограничен только расчёт рекомендаций при запросе.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+@Slf4j
+public class CoLikeIndex {
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxNeighbours;
+    private final int maxFanout;
+
+    private final Map<Long, long[]> filmsByUser = new ConcurrentHashMap<>();
+    private final Map<Long, TopK.Ranked> neighbours = new ConcurrentHashMap<>();
+
+    public CoLikeIndex(JdbcTemplate jdbcTemplate,
+                       @Value("${filmorate.similar.neighbours:50}") int maxNeighbours,
+                       @Value("${filmorate.similar.max-fanout:1000}") int maxFanout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxNeighbours = maxNeighbours;
+        this.maxFanout = maxFanout;
+    }
+
+    /**
+     * Индекс без базы, например для хранилища в памяти: заполняется только через addLike и removeLike.
+     */
+    public static CoLikeIndex inMemory(int maxNeighbours, int maxFanout) {
+        return new CoLikeIndex(null, maxNeighbours, maxFanout);
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        if (jdbcTemplate == null) {
+            throw new IllegalStateException("Индекс совместных лайков без базы нельзя перестроить из таблиц");
+        }
+        long started = System.nanoTime();
+        Map<Long, long[]> userFilms = SortedLongArrays.loadGrouped(jdbcTemplate,
+                "SELECT user_id, film_id FROM likes ORDER BY user_id, film_id");
+        Map<Long, long[]> filmUsers = SortedLongArrays.loadGrouped(jdbcTemplate,
+                "SELECT film_id, user_id FROM likes ORDER BY film_id, user_id");
+
+        Map<Long, TopK.Ranked> built = new ConcurrentHashMap<>();
+        filmUsers.entrySet().parallelStream().forEach(entry -> {
+            TopK.Ranked ranked = computeNeighbours(entry.getKey(), entry.getValue(), userFilms);
+            if (ranked.ids().length > 0) {
+                built.put(entry.getKey(), ranked);
+            }
+        });
+
+        filmsByUser.clear();
+        filmsByUser.putAll(userFilms);
+        neighbours.clear();
+        neighbours.putAll(built);
+        log.info("Индекс совместных лайков построен: фильмов {}, за {} мс",
+                built.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * До count фильмов, чаще всего лайкнутых вместе с данным, по убыванию числа общих лайкнувших.
+     */
+    public long[] similarTo(long filmId, int count) {
+        TopK.Ranked ranked = neighbours.get(filmId);
+        if (ranked == null) {
+            return SortedLongArrays.EMPTY;
+        }
+        return Arrays.copyOf(ranked.ids(), Math.min(count, ranked.ids().length));
+    }
+
+    /**
+     * Рекомендации пользователю: соседи его лайкнутых фильмов, взвешенные числом общих лайкнувших,
+     * без уже лайкнутых им фильмов.
+     */
+    public long[] recommendFor(long userId, int count) {
+        long[] liked = filmsByUser.getOrDefault(userId, SortedLongArrays.EMPTY);
+        if (liked.length == 0) {
+            return SortedLongArrays.EMPTY;
+        }
+        LongIntCounter scores = new LongIntCounter(4096);
+        int step = SortedLongArrays.sampleStep(liked.length, maxFanout);
+        for (int i = 0; i < liked.length; i += step) {
+            TopK.Ranked ranked = neighbours.get(liked[i]);
+            if (ranked == null) {
+                continue;
+            }
+            for (int j = 0; j < ranked.ids().length; j++) {
+                if (Arrays.binarySearch(liked, ranked.ids()[j]) < 0) {
+                    scores.add(ranked.ids()[j], ranked.counts()[j]);
+                }
+            }
+        }
+        TopK top = new TopK(count);
+        scores.forEach(top::offer);
+        return top.drain().ids();
+    }
+
+    /**
+     * Стоит ли лайк сейчас, включая лайки, ещё не перенесённые в таблицу likes.
+     */
+    public boolean hasLike(long filmId, long userId) {
+        return Arrays.binarySearch(filmsByUser.getOrDefault(userId, SortedLongArrays.EMPTY), filmId) >= 0;
+    }
+
+    public void addLike(long filmId, long userId) {
+        if (applyLike(filmId, userId, 1)) {
+            TransactionCallbacks.onRollback(() -> applyLike(filmId, userId, -1));
+        }
+    }
+
+    public void removeLike(long filmId, long userId) {
+        if (applyLike(filmId, userId, -1)) {
+            TransactionCallbacks.onRollback(() -> applyLike(filmId, userId, 1));
+        }
+    }
+
+    private TopK.Ranked computeNeighbours(long filmId, long[] users, Map<Long, long[]> userFilms) {
+        LongIntCounter coLikes = new LongIntCounter(Math.min(users.length, maxFanout) * 8);
+        for (long userId : users) {
+            for (long other : userFilms.getOrDefault(userId, SortedLongArrays.EMPTY)) {
+                if (other != filmId) {
+                    coLikes.add(other, 1);
+                }
+            }
+        }
+        TopK top = new TopK(maxNeighbours);
+        coLikes.forEach(top::offer);
+        return top.drain();
+    }
+
+    /**
+     * Применяет лайк (delta = 1) или его отмену (delta = -1). Возвращает false, если состояние не изменилось.
+     */
+    private boolean applyLike(long filmId, long userId, int delta) {
+        long[][] before = new long[1][];
+        filmsByUser.compute(userId, (id, films) -> {
+            long[] current = films == null ? SortedLongArrays.EMPTY : films;
+            before[0] = current;
+            long[] updated = delta > 0
+                    ? SortedLongArrays.insert(current, filmId)
+                    : SortedLongArrays.remove(current, filmId);
+            return updated.length == 0 ? null : updated;
+        });
+        long[] otherFilms = before[0];
+        boolean changed = delta > 0
+                ? Arrays.binarySearch(otherFilms, filmId) < 0
+                : Arrays.binarySearch(otherFilms, filmId) >= 0;
+        if (!changed) {
+            return false;
+        }
+        for (long other : otherFilms) {
+            if (other != filmId) {
+                bump(filmId, other, delta);
+                bump(other, filmId, delta);
+            }
+        }
+        return true;
+    }
+
+    private void bump(long filmId, long neighbourId, int delta) {
+        neighbours.compute(filmId, (id, ranked) -> {
+            TopK.Ranked current = ranked == null ? new TopK.Ranked(SortedLongArrays.EMPTY, new int[0]) : ranked;
+            TopK.Ranked updated = adjust(current, neighbourId, delta);
+            return updated.ids().length == 0 ? null : updated;
+        });
+    }
+
+    private TopK.Ranked adjust(TopK.Ranked ranked, long neighbourId, int delta) {
+        long[] ids = ranked.ids();
+        int[] counts = ranked.counts();
+        int index = -1;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == neighbourId) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0 && (delta < 0 || ids.length >= maxNeighbours)) {
+            return ranked;
+        }
+
+        TopK top = new TopK(maxNeighbours);
+        for (int i = 0; i < ids.length; i++) {
+            int count = i == index ? counts[i] + delta : counts[i];
+            if (count > 0) {
+                top.offer(ids[i], count);
+            }
+        }
+        if (index < 0) {
+            top.offer(neighbourId, delta);
+        }
+        return top.drain();
+    }
+}
@@ -0,0 +1,191 @@
+package ru.yandex.practicum.filmorate.dao.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Полнотекстовый поиск по названиям и описаниям фильмов в памяти.
+ * Инвертированный индекс «слово → фильмы» хранится в отсортированной карте, поэтому
+ * поиск по префиксу — это обход диапазона ключей. Слова приводятся к нижнему регистру,
+ * «ё» заменяется на «е», кириллица и латиница разбиваются одинаково.
+ * Каждое слово запроса должно найтись в фильме (как слово целиком или как префикс),
+ * релевантность учитывает поле (название весит больше описания), редкость слова и точность совпадения.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class FilmSearchIndex {
+    private static final int NAME = 1;
+    private static final int DESCRIPTION = 2;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final double PREFIX_PENALTY = 0.7;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NavigableMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final Map<Long, Map<String, Integer>> termsByFilm = new ConcurrentHashMap<>();
+
+    /**
+     * Индекс без базы, например для хранилища в памяти: заполняется только через index.
+     */
+    public static FilmSearchIndex inMemory() {
+        return new FilmSearchIndex(null);
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        if (jdbcTemplate == null) {
+            throw new IllegalStateException("Поисковый индекс без базы нельзя перестроить из таблиц");
+        }
+        synchronized (this) {
+            postings.clear();
+            termsByFilm.clear();
+            jdbcTemplate.query("SELECT id, name, description FROM films", rs -> {
+                apply(rs.getLong("id"), terms(rs.getString("name"), rs.getString("description")));
+            });
+        }
+        log.info("Поисковый индекс построен: фильмов {}, слов {}", termsByFilm.size(), postings.size());
+    }
+
+    /**
+     * Индексирует фильм заново; при откате транзакции возвращается прежнее состояние.
+     */
+    public void index(long filmId, String name, String description) {
+        Map<String, Integer> previous;
+        synchronized (this) {
+            previous = apply(filmId, terms(name, description));
+        }
+        TransactionCallbacks.onRollback(() -> {
+            synchronized (this) {
+                apply(filmId, previous);
+            }
+        });
+    }
+
+    /**
+     * Id найденных фильмов по убыванию релевантности (при равенстве — по возрастанию id),
+     * страница начинается с позиции offset.
+     */
+    public List<Long> search(String query, int offset, int limit) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return List.of();
+        }
+        int filmCount = Math.max(termsByFilm.size(), 1);
+
+        Map<Long, Double> scores = null;
+        for (String token : queryTokens) {
+            Map<Long, Double> tokenScores = new HashMap<>();
+            for (Map.Entry<String, Map<Long, Integer>> entry : matchingTerms(token).entrySet()) {
+                Map<Long, Integer> films = entry.getValue();
+                double idf = Math.log(1 + (double) filmCount / Math.max(films.size(), 1));
+                double exactness = entry.getKey().equals(token) ? 1.0 : PREFIX_PENALTY;
+                films.forEach((filmId, fields) -> {
+                    double score = fieldWeight(fields) * idf * exactness;
+                    tokenScores.merge(filmId, score, Math::max);
+                });
+            }
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                // все слова запроса обязательны
+                Map<Long, Double> previous = scores;
+                tokenScores.keySet().retainAll(previous.keySet());
+                tokenScores.replaceAll((filmId, score) -> score + previous.get(filmId));
+                scores = tokenScores;
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Double>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()));
+        return ranked.stream()
+                .skip(offset)
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Разбивает текст на слова из букв и цифр в нижнем регистре.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private NavigableMap<String, Map<Long, Integer>> matchingTerms(String token) {
+        if (token.length() < MIN_PREFIX_LENGTH) {
+            Map<Long, Integer> exact = postings.get(token);
+            NavigableMap<String, Map<Long, Integer>> single = new TreeMap<>();
+            if (exact != null) {
+                single.put(token, exact);
+            }
+            return single;
+        }
+        return postings.subMap(token, true, token + Character.MAX_VALUE, false);
+    }
+
+    private static double fieldWeight(int fields) {
+        return ((fields & NAME) != 0 ? 2.0 : 0) + ((fields & DESCRIPTION) != 0 ? 1.0 : 0);
+    }
+
+    private static Map<String, Integer> terms(String name, String description) {
+        Map<String, Integer> terms = new HashMap<>();
+        tokenize(name).forEach(term -> terms.merge(term, NAME, (a, b) -> a | b));
+        tokenize(description).forEach(term -> terms.merge(term, DESCRIPTION, (a, b) -> a | b));
+        return terms;
+    }
+
+    /**
+     * Заменяет слова фильма на новые и возвращает прежние. Вызывается под блокировкой индекса.
+     */
+    private Map<String, Integer> apply(long filmId, Map<String, Integer> terms) {
+        Map<String, Integer> previous = termsByFilm.getOrDefault(filmId, Map.of());
+        previous.keySet().forEach(term -> postings.computeIfPresent(term, (key, films) -> {
+            films.remove(filmId);
+            return films.isEmpty() ? null : films;
+        }));
+        terms.forEach((term, fields) ->
+                postings.computeIfAbsent(term, key -> new ConcurrentHashMap<>()).put(filmId, fields));
+        if (terms.isEmpty()) {
+            termsByFilm.remove(filmId);
+        } else {
+            termsByFilm.put(filmId, terms);
+        }
+        return previous;
+    }
+}
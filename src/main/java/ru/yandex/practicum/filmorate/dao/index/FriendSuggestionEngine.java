@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.dao.index;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Рекомендации «друзья друзей» по графу дружбы в памяти.
+ * Обходит граф на два шага от пользователя, считает общих друзей примитивными счётчиками
+ * и держит лучших кандидатов в ограниченной куче. У пользователей с очень большим числом друзей
+ * обход ограничен равномерной выборкой из max-fanout друзей на каждом шаге.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+public class FriendSuggestionEngine {
+    private final FriendshipGraph friendshipGraph;
+    private final int maxFanout;
+
+    public FriendSuggestionEngine(FriendshipGraph friendshipGraph,
+                                  @Value("${filmorate.friends.suggestions.max-fanout:1000}") int maxFanout) {
+        this.friendshipGraph = friendshipGraph;
+        this.maxFanout = maxFanout;
+    }
+
+    /**
+     * До count id кандидатов в порядке убывания числа общих друзей, при равенстве — по возрастанию id.
+     */
+    public long[] suggest(long userId, int count) {
+        long[] friends = friendshipGraph.friendsOf(userId);
+        if (friends.length == 0 || count <= 0) {
+            return new long[0];
+        }
+
+        LongIntCounter mutualCounts = new LongIntCounter(Math.min(friends.length, maxFanout) * 16);
+        int friendStep = SortedLongArrays.sampleStep(friends.length, maxFanout);
+        for (int i = 0; i < friends.length; i += friendStep) {
+            long[] candidates = friendshipGraph.friendsOf(friends[i]);
+            int candidateStep = SortedLongArrays.sampleStep(candidates.length, maxFanout);
+            for (int j = 0; j < candidates.length; j += candidateStep) {
+                long candidate = candidates[j];
+                if (candidate != userId && Arrays.binarySearch(friends, candidate) < 0) {
+                    mutualCounts.add(candidate, 1);
+                }
+            }
+        }
+
+        TopK top = new TopK(count);
+        mutualCounts.forEach(top::offer);
+        return top.drain().ids();
+    }
+}
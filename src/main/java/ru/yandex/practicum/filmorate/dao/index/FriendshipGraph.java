@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.dao.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Граф дружбы в памяти: для каждого пользователя — отсортированный массив id его друзей.
+ * Массивы неизменяемые и заменяются целиком при каждом изменении, поэтому читаются без блокировок,
+ * а общие друзья считаются слиянием двух отсортированных массивов без упаковки в Long.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class FriendshipGraph {
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, long[]> adjacency = new ConcurrentHashMap<>();
+
+    /**
+     * Граф без базы, например для хранилища в памяти: заполняется только изменениями дружбы.
+     */
+    public static FriendshipGraph inMemory() {
+        return new FriendshipGraph(null);
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        if (jdbcTemplate == null) {
+            throw new IllegalStateException("Граф дружбы без базы нельзя перестроить из таблиц");
+        }
+        Map<Long, long[]> loaded = SortedLongArrays.loadGrouped(jdbcTemplate,
+                "SELECT user_id, friend_id FROM friendship ORDER BY user_id, friend_id");
+        adjacency.clear();
+        adjacency.putAll(loaded);
+        log.info("Граф дружбы построен, пользователей с друзьями: {}", loaded.size());
+    }
+
+    /**
+     * Отсортированные id друзей пользователя. Массив общий для всех читателей — изменять его нельзя.
+     */
+    public long[] friendsOf(long userId) {
+        return adjacency.getOrDefault(userId, SortedLongArrays.EMPTY);
+    }
+
+    public boolean isFriend(long userId, long friendId) {
+        return Arrays.binarySearch(friendsOf(userId), friendId) >= 0;
+    }
+
+    /**
+     * Общие друзья двух пользователей в порядке возрастания id.
+     */
+    public long[] commonFriends(long userId, long otherId) {
+        long[] first = friendsOf(userId);
+        long[] second = friendsOf(otherId);
+        long[] common = new long[Math.min(first.length, second.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return size == common.length ? common : Arrays.copyOf(common, size);
+    }
+
+    public void addFriend(long userId, long friendId) {
+        if (insert(userId, friendId)) {
+            TransactionCallbacks.onRollback(() -> delete(userId, friendId));
+        }
+    }
+
+    public void removeFriend(long userId, long friendId) {
+        if (delete(userId, friendId)) {
+            TransactionCallbacks.onRollback(() -> insert(userId, friendId));
+        }
+    }
+
+    private boolean insert(long userId, long friendId) {
+        boolean[] changed = {false};
+        adjacency.compute(userId, (id, friends) -> {
+            long[] updated = SortedLongArrays.insert(friends == null ? SortedLongArrays.EMPTY : friends, friendId);
+            changed[0] = updated != friends;
+            return updated;
+        });
+        return changed[0];
+    }
+
+    private boolean delete(long userId, long friendId) {
+        boolean[] changed = {false};
+        adjacency.computeIfPresent(userId, (id, friends) -> {
+            long[] updated = SortedLongArrays.remove(friends, friendId);
+            changed[0] = updated != friends;
+            return updated.length == 0 ? null : updated;
+        });
+        return changed[0];
+    }
+}
@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.dao.index;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Битовая карта id от 1 до maxId: по биту на id, массив растёт вместе с наибольшим добавленным id.
+ * Чтение идёт без блокировок, запись и рост массива — под блокировкой, чтобы при копировании
+ * не потерялся бит, установленный параллельно. Про id больше maxId карта ничего не утверждает.
+ */
+final class IdBitmap {
+    private static final int INITIAL_WORDS = 16;
+
+    private final long maxId;
+    private volatile AtomicLongArray words = new AtomicLongArray(INITIAL_WORDS);
+
+    IdBitmap(long maxId) {
+        this.maxId = maxId;
+    }
+
+    /**
+     * false — id точно не добавлялся; true — добавлялся или лежит за пределами карты.
+     */
+    boolean mightContain(long id) {
+        if (id > maxId) {
+            return true;
+        }
+        if (id <= 0) {
+            return false;
+        }
+        AtomicLongArray current = words;
+        int index = (int) (id >>> 6);
+        return index < current.length() && (current.get(index) & (1L << id)) != 0;
+    }
+
+    synchronized void add(long id) {
+        if (id <= 0 || id > maxId) {
+            return;
+        }
+        int index = (int) (id >>> 6);
+        AtomicLongArray current = words;
+        if (index >= current.length()) {
+            int length = current.length();
+            while (length <= index) {
+                length = length * 2;
+            }
+            AtomicLongArray grown = new AtomicLongArray(length);
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            words = grown;
+            current = grown;
+        }
+        current.set(index, current.get(index) | (1L << id));
+    }
+
+    synchronized void remove(long id) {
+        if (id <= 0 || id > maxId) {
+            return;
+        }
+        int index = (int) (id >>> 6);
+        AtomicLongArray current = words;
+        if (index < current.length()) {
+            current.set(index, current.get(index) & ~(1L << id));
+        }
+    }
+
+    /**
+     * Подменяет содержимое целиком: читатели видят либо прежнюю карту, либо новую, но не частичную.
+     */
+    synchronized void replaceWith(IdBitmap source) {
+        words = source.words;
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.dao.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Множества существующих id фильмов и пользователей в памяти: запрос к заведомо несуществующему
+ * id отклоняется без обращения к базе. Карты заполняются при старте и пополняются при создании,
+ * поэтому ответ «нет» точный, а «возможно» всё равно проверяется базой.
+ * Как и остальные индексы, рассчитано на то, что базу меняет только этот экземпляр приложения.
+ * Число отсечённых запросов считает счётчик filmorate.ids.rejected с тегом entity.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+@Slf4j
+public class KnownIds {
+    public static final String REJECTED_COUNTER = "filmorate.ids.rejected";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long maxId;
+    private final IdBitmap films;
+    private final IdBitmap users;
+    private final Counter rejectedFilms;
+    private final Counter rejectedUsers;
+
+    public KnownIds(JdbcTemplate jdbcTemplate, MeterRegistry registry,
+                    @Value("${filmorate.known-ids.max-id:67108864}") long maxId) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxId = maxId;
+        this.films = new IdBitmap(maxId);
+        this.users = new IdBitmap(maxId);
+        this.rejectedFilms = Counter.builder(REJECTED_COUNTER).tag("entity", "film").register(registry);
+        this.rejectedUsers = Counter.builder(REJECTED_COUNTER).tag("entity", "user").register(registry);
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        load(films, "SELECT id FROM films");
+        load(users, "SELECT id FROM users");
+        log.info("Множества id построены");
+    }
+
+    /**
+     * false, если фильма с таким id точно нет (в том числе если id не задан); отказ учитывается в счётчике.
+     */
+    public boolean filmMayExist(Long id) {
+        return check(films, id, rejectedFilms);
+    }
+
+    public boolean userMayExist(Long id) {
+        return check(users, id, rejectedUsers);
+    }
+
+    /**
+     * true, если про этот id карты знают всё: ответ «возможно» для него означает, что запись есть
+     * (или создаётся в ещё не закоммиченной транзакции). Для id больше max-id это может проверить только база.
+     */
+    public boolean isExact(Long id) {
+        return id == null || id <= maxId;
+    }
+
+    /**
+     * Добавляет id созданного фильма; при откате транзакции id убирается.
+     */
+    public void filmCreated(long id) {
+        add(films, id);
+    }
+
+    public void userCreated(long id) {
+        add(users, id);
+    }
+
+    private void load(IdBitmap bitmap, String sql) {
+        IdBitmap loaded = new IdBitmap(maxId);
+        jdbcTemplate.query(sql, rs -> {
+            loaded.add(rs.getLong(1));
+        });
+        bitmap.replaceWith(loaded);
+    }
+
+    private static boolean check(IdBitmap bitmap, Long id, Counter rejected) {
+        if (id != null && bitmap.mightContain(id)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    private static void add(IdBitmap bitmap, long id) {
+        bitmap.add(id);
+        TransactionCallbacks.onRollback(() -> bitmap.remove(id));
+    }
+}
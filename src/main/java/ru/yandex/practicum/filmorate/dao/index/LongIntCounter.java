@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.dao.index;
+
+/**
+ * Счётчики long → int с открытой адресацией для обходов индексов без упаковки в Long.
+ * 0 служит пустым ключом: id всегда положительны.
+ */
+final class LongIntCounter {
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIntCounter(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected) * 2 - 1);
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    void add(long key, int delta) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            values[slot] = delta;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return;
+        }
+        values[slot] += delta;
+    }
+
+    void forEach(Consumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @FunctionalInterface
+    interface Consumer {
+        void accept(long key, int value);
+    }
+}
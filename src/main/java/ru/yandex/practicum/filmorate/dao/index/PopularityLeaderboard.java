@@ -0,0 +1,228 @@
+package ru.yandex.practicum.filmorate.dao.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+/**
+ * Рейтинг популярности фильмов в памяти.
+ * Строится из таблицы likes при старте и дальше обновляется инкрементально
+ * при добавлении/удалении лайков, поэтому чтение топа не ходит в базу.
+ * Кроме общего рейтинга ведутся отдельные рейтинги по каждому жанру, году выпуска и паре (жанр, год),
+ * так что топ с любым фильтром читается так же, как общий, — первые элементы отсортированного множества.
+ * Топ читается без блокировок, пока лайки меняют рейтинги: при изменении счёта запись фильма
+ * переставляется (удаляется старая и добавляется новая), поэтому обход может встретить фильм дважды —
+ * повтор отбрасывается — или не встретить его вовсе, если фильм сменил место за спиной обхода.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class PopularityLeaderboard {
+    private static final Comparator<Entry> BY_LIKES_DESC = Comparator
+            .comparingLong(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, Long> likeCounts = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(BY_LIKES_DESC);
+    private final Map<Long, Classification> classifications = new ConcurrentHashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> rankingByGenre = new ConcurrentHashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> rankingByYear = new ConcurrentHashMap<>();
+    private final Map<GenreYear, NavigableSet<Entry>> rankingByGenreYear = new ConcurrentHashMap<>();
+
+    /**
+     * Рейтинг без базы, например для хранилища в памяти: заполняется только через register и increment.
+     */
+    public static PopularityLeaderboard inMemory() {
+        return new PopularityLeaderboard(null);
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        if (jdbcTemplate == null) {
+            throw new IllegalStateException("Рейтинг без базы нельзя перестроить из таблиц");
+        }
+        String sql = """
+                SELECT f.id, EXTRACT(YEAR FROM f.release_date) AS release_year, COUNT(l.user_id) AS like_count
+                FROM films AS f
+                LEFT JOIN likes AS l ON f.id = l.film_id
+                GROUP BY f.id, f.release_date
+                """;
+        Map<Long, Long> loaded = new HashMap<>();
+        Map<Long, Integer> years = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            loaded.put(rs.getLong("id"), rs.getLong("like_count"));
+            years.put(rs.getLong("id"), rs.getInt("release_year"));
+        });
+        Map<Long, List<Integer>> genres = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genre", rs -> {
+            genres.computeIfAbsent(rs.getLong("film_id"), id -> new ArrayList<>()).add(rs.getInt("genre_id"));
+        });
+
+        likeCounts.clear();
+        ranking.clear();
+        classifications.clear();
+        rankingByGenre.clear();
+        rankingByYear.clear();
+        rankingByGenreYear.clear();
+        loaded.forEach((filmId, likes) -> {
+            Classification classification = new Classification(years.get(filmId),
+                    genres.getOrDefault(filmId, List.of()).stream().mapToInt(Integer::intValue).toArray());
+            likeCounts.put(filmId, likes);
+            classifications.put(filmId, classification);
+            forEachRanking(classification, set -> set.add(new Entry(filmId, likes)));
+        });
+        log.info("Рейтинг популярности построен, фильмов: {}, жанров: {}, лет: {}",
+                loaded.size(), rankingByGenre.size(), rankingByYear.size());
+    }
+
+    public void register(long filmId, int releaseYear, int[] genreIds) {
+        Classification classification = new Classification(releaseYear, genreIds);
+        likeCounts.computeIfAbsent(filmId, id -> {
+            classifications.put(id, classification);
+            forEachRanking(classification, set -> set.add(new Entry(id, 0)));
+            return 0L;
+        });
+        TransactionCallbacks.onRollback(() -> unregister(filmId));
+    }
+
+    /**
+     * Переносит фильм в рейтинги нового года выпуска и жанров после изменения фильма.
+     */
+    public void reclassify(long filmId, int releaseYear, int[] genreIds) {
+        Classification previous = classify(filmId, new Classification(releaseYear, genreIds));
+        if (previous != null) {
+            TransactionCallbacks.onRollback(() -> classify(filmId, previous));
+        }
+    }
+
+    public void increment(long filmId) {
+        change(filmId, 1);
+        TransactionCallbacks.onRollback(() -> change(filmId, -1));
+    }
+
+    public void decrement(long filmId) {
+        change(filmId, -1);
+        TransactionCallbacks.onRollback(() -> change(filmId, 1));
+    }
+
+    public long getLikeCount(long filmId) {
+        return likeCounts.getOrDefault(filmId, 0L);
+    }
+
+    public List<Long> getTopFilmIds(int count) {
+        return getTopFilmIds(count, null, null);
+    }
+
+    /**
+     * Топ с необязательными фильтрами по жанру и году выпуска.
+     */
+    public List<Long> getTopFilmIds(int count, Integer genreId, Integer year) {
+        NavigableSet<Entry> source;
+        if (year != null && genreId != null) {
+            source = rankingByGenreYear.get(new GenreYear(genreId, year));
+        } else if (year != null) {
+            source = rankingByYear.get(year);
+        } else if (genreId != null) {
+            source = rankingByGenre.get(genreId);
+        } else {
+            source = ranking;
+        }
+        List<Long> top = new ArrayList<>(Math.max(0, Math.min(count, likeCounts.size())));
+        if (source == null) {
+            return top;
+        }
+        Set<Long> seen = new HashSet<>();
+        Iterator<Entry> iterator = source.iterator();
+        while (top.size() < count && iterator.hasNext()) {
+            long filmId = iterator.next().filmId();
+            if (seen.add(filmId)) {
+                top.add(filmId);
+            }
+        }
+        return top;
+    }
+
+    private void change(long filmId, long delta) {
+        likeCounts.compute(filmId, (id, old) -> {
+            long current = old == null ? 0 : old;
+            long updated = Math.max(0, current + delta);
+            Classification classification = classifications.get(id);
+            if (old != null) {
+                forEachRanking(classification, set -> set.remove(new Entry(id, current)));
+            }
+            forEachRanking(classification, set -> set.add(new Entry(id, updated)));
+            return updated;
+        });
+    }
+
+    /**
+     * Меняет классификацию фильма и возвращает прежнюю (null, если фильм неизвестен рейтингу).
+     */
+    private Classification classify(long filmId, Classification classification) {
+        Classification[] previous = new Classification[1];
+        likeCounts.computeIfPresent(filmId, (id, likes) -> {
+            Entry entry = new Entry(id, likes);
+            previous[0] = classifications.put(id, classification);
+            forEachFilterRanking(previous[0], set -> set.remove(entry));
+            forEachFilterRanking(classification, set -> set.add(entry));
+            return likes;
+        });
+        return previous[0];
+    }
+
+    private void unregister(long filmId) {
+        likeCounts.computeIfPresent(filmId, (id, old) -> {
+            forEachRanking(classifications.remove(id), set -> set.remove(new Entry(id, old)));
+            return null;
+        });
+    }
+
+    private void forEachRanking(Classification classification, Consumer<NavigableSet<Entry>> action) {
+        action.accept(ranking);
+        forEachFilterRanking(classification, action);
+    }
+
+    private void forEachFilterRanking(Classification classification, Consumer<NavigableSet<Entry>> action) {
+        if (classification == null) {
+            return;
+        }
+        action.accept(rankingByYear.computeIfAbsent(classification.year(), year -> newRanking()));
+        for (int genreId : classification.genreIds()) {
+            action.accept(rankingByGenre.computeIfAbsent(genreId, genre -> newRanking()));
+            action.accept(rankingByGenreYear.computeIfAbsent(
+                    new GenreYear(genreId, classification.year()), key -> newRanking()));
+        }
+    }
+
+    private static NavigableSet<Entry> newRanking() {
+        return new ConcurrentSkipListSet<>(BY_LIKES_DESC);
+    }
+
+    private record Entry(long filmId, long likes) {
+    }
+
+    private record Classification(int year, int[] genreIds) {
+    }
+
+    private record GenreYear(int genreId, int year) {
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.dao.index;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Операции над неизменяемыми отсортированными массивами id, из которых состоят индексы в памяти.
+ * Изменение всегда возвращает новый массив, исходный остаётся нетронутым.
+ */
+final class SortedLongArrays {
+    static final long[] EMPTY = new long[0];
+
+    private SortedLongArrays() {
+    }
+
+    /**
+     * Массив с добавленным значением или тот же массив, если значение уже есть.
+     */
+    static long[] insert(long[] sorted, long value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position >= 0) {
+            return sorted;
+        }
+        int insertAt = -position - 1;
+        long[] updated = new long[sorted.length + 1];
+        System.arraycopy(sorted, 0, updated, 0, insertAt);
+        updated[insertAt] = value;
+        System.arraycopy(sorted, insertAt, updated, insertAt + 1, sorted.length - insertAt);
+        return updated;
+    }
+
+    /**
+     * Массив без значения или тот же массив, если значения нет.
+     */
+    static long[] remove(long[] sorted, long value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position < 0) {
+            return sorted;
+        }
+        long[] updated = new long[sorted.length - 1];
+        System.arraycopy(sorted, 0, updated, 0, position);
+        System.arraycopy(sorted, position + 1, updated, position, sorted.length - position - 1);
+        return updated;
+    }
+
+    /**
+     * Шаг равномерной выборки, при котором из degree элементов берётся не больше maxFanout.
+     */
+    static int sampleStep(int degree, int maxFanout) {
+        return degree <= maxFanout ? 1 : (degree + maxFanout - 1) / maxFanout;
+    }
+
+    /**
+     * Читает пары (ключ, значение), упорядоченные по ключу и значению, и собирает
+     * для каждого ключа отсортированный массив значений.
+     */
+    static Map<Long, long[]> loadGrouped(JdbcTemplate jdbcTemplate, String sql) {
+        Map<Long, long[]> loaded = new HashMap<>();
+        long[] currentKey = {-1};
+        long[][] buffer = {new long[16]};
+        int[] size = {0};
+        jdbcTemplate.query(sql, rs -> {
+            long key = rs.getLong(1);
+            if (key != currentKey[0]) {
+                if (size[0] > 0) {
+                    loaded.put(currentKey[0], Arrays.copyOf(buffer[0], size[0]));
+                }
+                currentKey[0] = key;
+                size[0] = 0;
+            }
+            if (size[0] == buffer[0].length) {
+                buffer[0] = Arrays.copyOf(buffer[0], size[0] * 2);
+            }
+            buffer[0][size[0]++] = rs.getLong(2);
+        });
+        if (size[0] > 0) {
+            loaded.put(currentKey[0], Arrays.copyOf(buffer[0], size[0]));
+        }
+        return loaded;
+    }
+}
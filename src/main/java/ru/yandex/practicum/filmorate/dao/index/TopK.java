@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.dao.index;
+
+/**
+ * Ограниченная min-куча лучших по счёту id: в корне худший из отобранных
+ * (меньший счёт, при равенстве больший id), поэтому вытеснение стоит O(log k).
+ */
+final class TopK {
+    private final long[] ids;
+    private final int[] counts;
+    private int size;
+
+    TopK(int capacity) {
+        ids = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    void offer(long id, int count) {
+        if (ids.length == 0) {
+            return;
+        }
+        if (size < ids.length) {
+            ids[size] = id;
+            counts[size] = count;
+            siftUp(size++);
+        } else if (better(id, count, ids[0], counts[0])) {
+            ids[0] = id;
+            counts[0] = count;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Отобранные id по убыванию счёта, при равенстве — по возрастанию id. Куча после этого пуста.
+     */
+    Ranked drain() {
+        long[] sortedIds = new long[size];
+        int[] sortedCounts = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            sortedIds[i] = ids[0];
+            sortedCounts[i] = counts[0];
+            size--;
+            ids[0] = ids[size];
+            counts[0] = counts[size];
+            siftDown(0);
+        }
+        return new Ranked(sortedIds, sortedCounts);
+    }
+
+    private static boolean better(long id, int count, long otherId, int otherCount) {
+        return count != otherCount ? count > otherCount : id < otherId;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!better(ids[parent], counts[parent], ids[index], counts[index])) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = index * 2 + 1;
+            int worst = index;
+            if (left < size && better(ids[worst], counts[worst], ids[left], counts[left])) {
+                worst = left;
+            }
+            if (left + 1 < size && better(ids[worst], counts[worst], ids[left + 1], counts[left + 1])) {
+                worst = left + 1;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        int count = counts[i];
+        counts[i] = counts[j];
+        counts[j] = count;
+    }
+
+    record Ranked(long[] ids, int[] counts) {
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.dao.index;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Связывает изменения in-memory индексов с текущей транзакцией.
+ * Индекс меняется сразу (чтобы внутри транзакции были видны свои записи),
+ * а при откате транзакции изменения отменяются в обратном порядке.
+ * То, что должно стать видно только вместе с данными в базе, откладывается до коммита.
+ */
+public final class TransactionCallbacks {
+    private static final Object UNDO_LOG_KEY = new Object();
+
+    private TransactionCallbacks() {
+    }
+
+    /**
+     * Выполняет действие после коммита текущей транзакции или сразу, если транзакции нет.
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Выполняет действие после завершения текущей транзакции — коммитом или откатом — или сразу, если транзакции нет.
+     */
+    public static void afterCompletion(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+
+    public static void onRollback(Runnable undo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Deque<Runnable> undoLog = (Deque<Runnable>) TransactionSynchronizationManager.getResource(UNDO_LOG_KEY);
+        if (undoLog == null) {
+            Deque<Runnable> newLog = new ArrayDeque<>();
+            TransactionSynchronizationManager.bindResource(UNDO_LOG_KEY, newLog);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(UNDO_LOG_KEY);
+                    if (status == STATUS_ROLLED_BACK) {
+                        newLog.forEach(Runnable::run);
+                    }
+                }
+            });
+            undoLog = newLog;
+        }
+        undoLog.addFirst(undo);
+    }
+
+    /**
+     * Выполняет действие так, будто транзакции нет: изменения индексов внутри не отменяются при её откате,
+     * а отложенные до коммита действия выполняются сразу. Нужно хранилищам, чьи данные не откатываются
+     * вместе с базой: иначе откат транзакции вызывающего кода разведёт индексы и данные.
+     */
+    public static <T> T detached(Supplier<T> action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return action.get();
+        }
+        List<TransactionSynchronization> suspended = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        try {
+            return action.get();
+        } finally {
+            TransactionSynchronizationManager.initSynchronization();
+            suspended.forEach(TransactionSynchronizationManager::registerSynchronization);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package ru.yandex.practicum.filmorate.dao.likes;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dao.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.dao.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.dao.index.TransactionCallbacks;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Журнал лайков (event sourcing).
+ * Каждый лайк и каждая отмена — одна вставка в like_events с последовательным id и временем;
+ * таблица likes обновляется не сразу, а фоновым уплотнением: события пакетами сворачиваются
+ * в итоговое состояние пар (фильм, пользователь). Счётчики лайков живут в рейтинге в памяти
+ * и меняются в момент записи события. Журнал не удаляется и служит для пересчёта
+ * лайков за любой промежуток времени.
+ * Уплотнение до конца журнала выполняется при каждом старте, даже если журнал выключен,
+ * поэтому его можно выключить без потери принятых лайков.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+@Slf4j
+public class LikeEventLog implements SmartInitializingSingleton {
+    private static final int STRIPES = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PopularityLeaderboard leaderboard;
+    private final CoLikeIndex coLikeIndex;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration compactInterval;
+
+    private final Object[] stripes = new Object[STRIPES];
+    private final Object sequenceLock = new Object();
+    private final Object compactLock = new Object();
+    /**
+     * Id событий, выданных, но ещё не закоммиченных. Транзакции завершаются не в порядке id,
+     * поэтому уплотнение не заходит дальше первого из них, иначе пропустило бы событие навсегда.
+     */
+    private final NavigableSet<Long> inFlight = new ConcurrentSkipListSet<>();
+    private long lastEventId;
+    private long compactedId;
+    private ScheduledExecutorService compactor;
+
+    public LikeEventLog(JdbcTemplate jdbcTemplate,
+                        PlatformTransactionManager transactionManager,
+                        PopularityLeaderboard leaderboard,
+                        CoLikeIndex coLikeIndex,
+                        @Value("${filmorate.likes.event-log.enabled:false}") boolean enabled,
+                        @Value("${filmorate.likes.event-log.batch-size:5000}") int batchSize,
+                        @Value("${filmorate.likes.event-log.compact-interval:1s}") Duration compactInterval,
+                        @Value("${filmorate.likes.write-behind.enabled:false}") boolean writeBehindEnabled) {
+        if (enabled && writeBehindEnabled) {
+            throw new IllegalStateException(
+                    "Журнал лайков и отложенная запись лайков не могут быть включены одновременно");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaderboard = leaderboard;
+        this.coLikeIndex = coLikeIndex;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.compactInterval = compactInterval;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Дописывает в likes события, оставшиеся с прошлого запуска, и запускает фоновое уплотнение.
+     * Рейтинг и индекс совместных лайков строятся по likes раньше, поэтому после догоняющего
+     * уплотнения они перестраиваются.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        Long saved = jdbcTemplate.query("SELECT compacted_id FROM like_log_state WHERE id = 1",
+                rs -> rs.next() ? rs.getLong(1) : 0L);
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM like_events", Long.class);
+        synchronized (sequenceLock) {
+            compactedId = saved;
+            lastEventId = Math.max(saved, maxId);
+        }
+        int folded = compact();
+        if (folded > 0) {
+            leaderboard.rebuild();
+            coLikeIndex.rebuild();
+            log.info("Из журнала лайков при старте перенесено событий: {}", folded);
+        }
+        if (!enabled) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactQuietly,
+                compactInterval.toMillis(), compactInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Журнал лайков включён: пакет уплотнения {}, интервал {}", batchSize, compactInterval);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (compactor == null) {
+            return;
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(compactInterval.toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactQuietly();
+        log.info("Журнал лайков уплотнён при остановке");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Начинает журнал заново после того, как like_events и like_log_state очищены (загрузка снимка).
+     * Вызывается, пока лайки не принимаются: события незавершённых транзакций не учитываются.
+     */
+    public void reset() {
+        synchronized (compactLock) {
+            synchronized (sequenceLock) {
+                inFlight.clear();
+                compactedId = 0;
+                lastEventId = 0;
+            }
+        }
+        log.info("Журнал лайков начат заново");
+    }
+
+    /**
+     * Записывает лайк в журнал. Возвращает false, если лайк уже стоит: такой лайк в журнал не попадает.
+     * Событие пишется в транзакции вызывающего кода, если она есть.
+     */
+    public boolean addLike(long filmId, long userId) {
+        synchronized (stripeOf(filmId, userId)) {
+            if (coLikeIndex.hasLike(filmId, userId)) {
+                return false;
+            }
+            append(filmId, userId, true);
+            coLikeIndex.addLike(filmId, userId);
+            return true;
+        }
+    }
+
+    /**
+     * Записывает отмену лайка в журнал. Возвращает false, если лайка нет.
+     */
+    public boolean removeLike(long filmId, long userId) {
+        synchronized (stripeOf(filmId, userId)) {
+            if (!coLikeIndex.hasLike(filmId, userId)) {
+                return false;
+            }
+            append(filmId, userId, false);
+            coLikeIndex.removeLike(filmId, userId);
+            return true;
+        }
+    }
+
+    /**
+     * Переносит в likes все закоммиченные события после последнего уплотнения, пакетами по batchSize.
+     * Каждый пакет и отметка о нём в like_log_state пишутся одной транзакцией,
+     * так что после сбоя уплотнение продолжается с первого не перенесённого события.
+     * Возвращает число перенесённых событий.
+     */
+    public int compact() {
+        synchronized (compactLock) {
+            long horizon = safeHorizon();
+            int total = 0;
+            while (compactedId < horizon) {
+                List<LikeEvent> events = findEvents(compactedId, horizon, batchSize);
+                if (events.isEmpty()) {
+                    compactedId = horizon;
+                    saveCompactedId(horizon);
+                    break;
+                }
+                long batchEnd = events.size() < batchSize ? horizon : events.get(events.size() - 1).id();
+                applyBatch(events, batchEnd);
+                compactedId = batchEnd;
+                total += events.size();
+            }
+            if (total > 0) {
+                log.debug("Уплотнено событий журнала лайков: {}, до id {}", total, compactedId);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * События журнала в порядке id: с id больше afterId и временем в промежутке [from, to).
+     * Пустые границы промежутка не ограничивают выборку.
+     */
+    public List<LikeEvent> findEvents(Instant from, Instant to, long afterId, int limit) {
+        return jdbcTemplate.query("""
+                        SELECT id, film_id, user_id, liked, created_at FROM like_events
+                        WHERE id > ? AND (CAST(? AS TIMESTAMP WITH TIME ZONE) IS NULL OR created_at >= ?)
+                          AND (CAST(? AS TIMESTAMP WITH TIME ZONE) IS NULL OR created_at < ?)
+                        ORDER BY id
+                        LIMIT ?
+                        """,
+                (rs, rowNum) -> mapEvent(rs),
+                afterId, utc(from), utc(from), utc(to), utc(to), limit);
+    }
+
+    /**
+     * Пересчёт лайков по журналу: изменение числа лайков каждого фильма за промежуток [from, to).
+     * Без from это число лайков на момент to, набранных с начала журнала.
+     */
+    public Map<Long, Long> replayCounts(Instant from, Instant to) {
+        Map<Long, Long> counts = new LinkedHashMap<>();
+        jdbcTemplate.query("""
+                        SELECT film_id, SUM(CASE WHEN liked THEN 1 ELSE -1 END) AS delta FROM like_events
+                        WHERE (CAST(? AS TIMESTAMP WITH TIME ZONE) IS NULL OR created_at >= ?)
+                          AND (CAST(? AS TIMESTAMP WITH TIME ZONE) IS NULL OR created_at < ?)
+                        GROUP BY film_id
+                        ORDER BY film_id
+                        """,
+                rs -> {
+                    counts.put(rs.getLong("film_id"), rs.getLong("delta"));
+                },
+                utc(from), utc(from), utc(to), utc(to));
+        return counts;
+    }
+
+    private void append(long filmId, long userId, boolean liked) {
+        long id;
+        synchronized (sequenceLock) {
+            id = ++lastEventId;
+            inFlight.add(id);
+        }
+        try {
+            jdbcTemplate.update(
+                    "INSERT INTO like_events (id, film_id, user_id, liked, created_at) VALUES (?, ?, ?, ?, ?)",
+                    id, filmId, userId, liked, OffsetDateTime.now(ZoneOffset.UTC));
+        } catch (RuntimeException e) {
+            inFlight.remove(id);
+            throw e;
+        }
+        TransactionCallbacks.afterCompletion(() -> inFlight.remove(id));
+    }
+
+    /**
+     * Последний id, до которого все события либо закоммичены, либо откачены.
+     */
+    private long safeHorizon() {
+        synchronized (sequenceLock) {
+            // id снимаются из inFlight без блокировки, поэтому не isEmpty() + first()
+            Long first = inFlight.ceiling(Long.MIN_VALUE);
+            return first == null ? lastEventId : first - 1;
+        }
+    }
+
+    private List<LikeEvent> findEvents(long afterId, long upToId, int limit) {
+        return jdbcTemplate.query("""
+                        SELECT id, film_id, user_id, liked, created_at FROM like_events
+                        WHERE id > ? AND id <= ?
+                        ORDER BY id
+                        LIMIT ?
+                        """,
+                (rs, rowNum) -> mapEvent(rs), afterId, upToId, limit);
+    }
+
+    /**
+     * Сворачивает пакет в итоговое состояние пар: из нескольких событий одной пары важно только последнее.
+     */
+    private void applyBatch(List<LikeEvent> events, long batchEnd) {
+        Map<List<Long>, Boolean> state = new LinkedHashMap<>();
+        events.forEach(event -> state.put(List.of(event.filmId(), event.userId()), event.liked()));
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        state.forEach((pair, liked) -> (liked ? inserts : deletes).add(pair.toArray()));
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(
+                        "MERGE INTO likes (film_id, user_id) KEY (film_id, user_id) VALUES (?, ?)", inserts);
+            }
+            if (!deletes.isEmpty()) {
+                jdbcTemplate.batchUpdate("DELETE FROM likes WHERE film_id = ? AND user_id = ?", deletes);
+            }
+            saveCompactedId(batchEnd);
+        });
+    }
+
+    private void saveCompactedId(long id) {
+        jdbcTemplate.update("MERGE INTO like_log_state (id, compacted_id) KEY (id) VALUES (1, ?)", id);
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.error("Ошибка фонового уплотнения журнала лайков", e);
+        }
+    }
+
+    private Object stripeOf(long filmId, long userId) {
+        return stripes[Math.floorMod(Long.hashCode(filmId * 31 + userId), STRIPES)];
+    }
+
+    private static LikeEvent mapEvent(ResultSet rs) throws SQLException {
+        return new LikeEvent(rs.getLong("id"), rs.getLong("film_id"), rs.getLong("user_id"),
+                rs.getBoolean("liked"), rs.getObject("created_at", OffsetDateTime.class).toInstant());
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant == null ? null : instant.atOffset(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,318 @@
+package ru.yandex.practicum.filmorate.dao.likes;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dao.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.dao.index.TransactionCallbacks;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Отложенная запись лайков (write-behind).
+ * Лайки и их отмены копятся в ограниченном буфере, противоположные операции над одной
+ * парой (фильм, пользователь) взаимно уничтожаются, а фоновый поток пишет остаток в likes
+ * пакетами — по размеру буфера или по таймеру. Ёмкость — это места, которые операция занимает
+ * до того, как попасть в буфер, и освобождает после записи пакета, поэтому параллельные запросы
+ * её не превышают; когда мест нет, вызывающий поток сам выполняет сброс.
+ * При остановке приложения буфер сбрасывается полностью.
+ * Если пакет не записался, его операции возвращаются в буфер (более новые операции над той же парой
+ * остаются в силе), а фоновый сброс повторяется с растущей паузой.
+ * Стоит ли лайк, буфер узнаёт из индекса совместных лайков и сам обновляет его под блокировкой полосы,
+ * как журнал лайков, поэтому база на приёме операции не читается.
+ * Операции буфера не участвуют во внешних транзакциях вызывающего кода.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+@Slf4j
+public class LikeWriteBuffer {
+    private static final int STRIPES = 64;
+    private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CoLikeIndex coLikeIndex;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int capacity;
+    private final Duration flushInterval;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    // места занимают операции в буфере, в пишущемся пакете и ещё не дошедшие до полосы
+    private final Semaphore slots;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private ScheduledExecutorService flusher;
+    // меняются только в потоке фонового сброса
+    private int failedFlushes;
+    private long retryAt;
+
+    public LikeWriteBuffer(JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           CoLikeIndex coLikeIndex,
+                           @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.capacity:10000}") int capacity,
+                           @Value("${filmorate.likes.write-behind.flush-interval:200ms}") Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.coLikeIndex = coLikeIndex;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.slots = new Semaphore(capacity);
+        this.flushInterval = flushInterval;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly,
+                flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Отложенная запись лайков включена: пакет {}, ёмкость {}, интервал {}",
+                batchSize, capacity, flushInterval);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(flushInterval.toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+            log.info("Буфер лайков сброшен при остановке");
+        } catch (RuntimeException e) {
+            log.error("Буфер лайков не сброшен при остановке, не записано операций: {}", pendingSize(), e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ставит лайк в буфер. Возвращает false, если лайк уже стоит (с учётом ещё не записанных операций).
+     */
+    public boolean addLike(long filmId, long userId) {
+        reserveSlot();
+        LikeKey key = new LikeKey(filmId, userId);
+        Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            if (coLikeIndex.hasLike(filmId, userId)) {
+                slots.release();
+                return false;
+            }
+            enqueue(stripe, key, Op.ADD);
+            TransactionCallbacks.detached(() -> {
+                coLikeIndex.addLike(filmId, userId);
+                return null;
+            });
+        }
+        afterEnqueue();
+        return true;
+    }
+
+    /**
+     * Ставит отмену лайка в буфер. Если лайка нет (с учётом буфера), бросает {@link NotFoundException}.
+     */
+    public void removeLike(long filmId, long userId) {
+        reserveSlot();
+        LikeKey key = new LikeKey(filmId, userId);
+        Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            if (!coLikeIndex.hasLike(filmId, userId)) {
+                slots.release();
+                throw new NotFoundException("Лайк не найден");
+            }
+            enqueue(stripe, key, Op.REMOVE);
+            TransactionCallbacks.detached(() -> {
+                coLikeIndex.removeLike(filmId, userId);
+                return null;
+            });
+        }
+        afterEnqueue();
+    }
+
+    /**
+     * Кладёт операцию в полосу на занятое место. Противоположная операция, ещё не записанная в базу,
+     * просто отменяется, и освобождаются оба места.
+     */
+    private void enqueue(Stripe stripe, LikeKey key, Op op) {
+        if (stripe.pending.remove(key) != null) {
+            slots.release(2);
+        } else {
+            stripe.pending.put(key, op);
+        }
+    }
+
+    /**
+     * Отбрасывает незаписанные операции: они относятся к базе, которую заменили (загрузка снимка).
+     * Пакет, который пишется в этот момент, дописывается до конца. Индекс совместных лайков
+     * после этого нужно перестроить: отброшенные операции в нём уже учтены.
+     */
+    public void reset() {
+        synchronized (flushLock) {
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    slots.release(stripe.pending.size());
+                    stripe.pending.clear();
+                }
+            }
+        }
+        log.info("Буфер лайков очищен");
+    }
+
+    /**
+     * Записывает в базу всё, что накопилось в буфере. Сбросы выполняются строго по очереди,
+     * поэтому операции над одной парой попадают в базу в том порядке, в котором были приняты.
+     * Если пакет не записался, его операции возвращаются в буфер, а исключение пробрасывается.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushScheduled.set(false);
+            List<Object[]> inserts = new ArrayList<>();
+            List<Object[]> deletes = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.pending.forEach((key, op) ->
+                            (op == Op.ADD ? inserts : deletes).add(new Object[]{key.filmId(), key.userId()}));
+                    stripe.inFlight.putAll(stripe.pending);
+                    stripe.pending.clear();
+                }
+            }
+            if (inserts.isEmpty() && deletes.isEmpty()) {
+                return;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!inserts.isEmpty()) {
+                        jdbcTemplate.batchUpdate(
+                                "MERGE INTO likes (film_id, user_id) KEY (film_id, user_id) VALUES (?, ?)", inserts);
+                    }
+                    if (!deletes.isEmpty()) {
+                        jdbcTemplate.batchUpdate("DELETE FROM likes WHERE film_id = ? AND user_id = ?", deletes);
+                    }
+                });
+                slots.release(inserts.size() + deletes.size());
+                log.debug("Записано из буфера лайков: добавлено {}, удалено {}", inserts.size(), deletes.size());
+            } catch (RuntimeException e) {
+                for (Stripe stripe : stripes) {
+                    synchronized (stripe) {
+                        requeue(stripe);
+                    }
+                }
+                throw e;
+            } finally {
+                for (Stripe stripe : stripes) {
+                    synchronized (stripe) {
+                        stripe.inFlight.clear();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Возвращает операции незаписанного пакета в буфер вместе с их местами. Более новая операция над той же
+     * парой уже учитывает операцию из пакета и одна даёт нужное состояние, поэтому остаётся вместо неё,
+     * а место операции из пакета освобождается.
+     */
+    private void requeue(Stripe stripe) {
+        stripe.inFlight.forEach((key, op) -> {
+            if (stripe.pending.putIfAbsent(key, op) != null) {
+                slots.release();
+            }
+        });
+    }
+
+    /**
+     * Фоновый сброс; после неудачи следующие попытки откладываются на удваивающуюся паузу.
+     */
+    private void flushQuietly() {
+        if (failedFlushes > 0 && System.nanoTime() - retryAt < 0) {
+            return;
+        }
+        try {
+            flush();
+            failedFlushes = 0;
+        } catch (RuntimeException e) {
+            failedFlushes++;
+            long delay = Math.min(flushInterval.toMillis() << Math.min(failedFlushes, 16),
+                    MAX_RETRY_DELAY.toMillis());
+            retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            log.error("Не удалось записать пакет лайков, в буфере операций: {}; повтор через {} мс",
+                    pendingSize(), delay, e);
+        }
+    }
+
+    /**
+     * Занимает место под операцию. Пока мест нет, вызывающий поток сам пишет буфер в базу,
+     * тем самым притормаживая поток запросов.
+     */
+    private void reserveSlot() {
+        while (!slots.tryAcquire()) {
+            flush();
+            Thread.onSpinWait();
+        }
+    }
+
+    private void afterEnqueue() {
+        if (pendingSize() >= batchSize && flusher != null
+                && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private int pendingSize() {
+        return capacity - slots.availablePermits();
+    }
+
+    private Stripe stripeOf(LikeKey key) {
+        return stripes[Math.floorMod(key.hashCode(), STRIPES)];
+    }
+
+    private enum Op {
+        ADD, REMOVE
+    }
+
+    private record LikeKey(long filmId, long userId) {
+    }
+
+    private static final class Stripe {
+        private final Map<LikeKey, Op> pending = new HashMap<>();
+        private final Map<LikeKey, Op> inFlight = new HashMap<>();
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.dao.mapper;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.dto.GenreDto;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Собирает полные агрегаты {@link Film} из одного запроса: строка фильма
+ * с количеством лайков, размноженная по жанрам через LEFT JOIN.
+ * Строки должны идти отсортированными по id фильма.
+ */
+@Component
+@RequiredArgsConstructor
+public class FilmAggregateExtractor implements ResultSetExtractor<List<Film>> {
+    private final FilmMapper filmMapper;
+
+    @Override
+    public List<Film> extractData(ResultSet rs) throws SQLException {
+        List<Film> films = new ArrayList<>();
+        fold(rs, films::add);
+        return films;
+    }
+
+    /**
+     * Сворачивает строки в фильмы и отдаёт каждый фильм, как только закончились его строки.
+     */
+    public void fold(ResultSet rs, Consumer<Film> sink) throws SQLException {
+        Film current = null;
+        int rowNum = 0;
+        while (rs.next()) {
+            long filmId = rs.getLong("id");
+            if (current == null || current.getId() != filmId) {
+                if (current != null) {
+                    sink.accept(current);
+                }
+                current = filmMapper.mapRow(rs, rowNum);
+                current.setCountLikes(rs.getLong("like_count"));
+            }
+
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                if (current.getGenres() == null) {
+                    current.setGenres(new ArrayList<>());
+                }
+                current.getGenres().add(new GenreDto(genreId, rs.getString("genre_name")));
+            }
+            rowNum++;
+        }
+        if (current != null) {
+            sink.accept(current);
+        }
+    }
+}
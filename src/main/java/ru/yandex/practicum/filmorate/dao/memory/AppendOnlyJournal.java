@@ -0,0 +1,277 @@
+package ru.yandex.practicum.filmorate.dao.memory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений хранилища в памяти: записи только дописываются в конец файла через {@link FileChannel}.
+ * Запись — [длина][CRC32][данные]. Запись ставится в очередь вызывающим потоком, а единственный поток
+ * журнала забирает из очереди всё накопившееся, пишет одним вызовом и делает один fsync на всю группу
+ * (group commit): пока идёт fsync, следующие записи копятся и уйдут следующей группой.
+ * При открытии журнал проигрывается с начала; недописанный или испорченный хвост
+ * (например, после падения посреди записи) отрезается.
+ * После сбоя записи журнал больше не пишется, и хранилище становится доступным только для чтения:
+ * изменения нужно отклонять через {@link #requireWritable()} до того, как они применены в памяти.
+ */
+@Slf4j
+public final class AppendOnlyJournal implements Closeable {
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_GROUP = 4096;
+    private static final Pending STOP = new Pending(ByteBuffer.allocate(0), new CompletableFuture<>());
+
+    private final Path file;
+    private final FileChannel channel;
+    private final boolean fsync;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final Thread writer;
+    private volatile IOException failure;
+
+    private AppendOnlyJournal(Path file, FileChannel channel, boolean fsync) {
+        this.file = file;
+        this.channel = channel;
+        this.fsync = fsync;
+        if (channel == null) {
+            writer = null;
+            return;
+        }
+        writer = new Thread(this::writeLoop, "journal-" + file.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Проигрывает журнал, передавая данные каждой записи в replay, и открывает его на дозапись.
+     */
+    public static AppendOnlyJournal open(Path file, boolean fsync, RecordReader replay) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long valid = replay(file, channel, replay);
+            if (valid < channel.size()) {
+                log.warn("Журнал {}: отрезан недописанный хвост {} байт", file, channel.size() - valid);
+                channel.truncate(valid);
+                channel.force(true);
+            }
+            channel.position(valid);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return new AppendOnlyJournal(file, channel, fsync);
+    }
+
+    /**
+     * Журнал, который ничего не пишет: хранилище живёт только в памяти.
+     */
+    public static AppendOnlyJournal disabled() {
+        return new AppendOnlyJournal(Path.of("disabled"), null, false);
+    }
+
+    /**
+     * Ставит запись в очередь и возвращает признак её сохранения на диск.
+     * Записи попадают в файл в порядке вызовов append, поэтому изменения одного ключа
+     * нужно ставить в очередь под той же блокировкой, под которой они применяются в памяти.
+     */
+    public CompletableFuture<Void> append(RecordWriter record) {
+        if (channel == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeLong(0);
+            record.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] frame = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(frame, HEADER_SIZE, frame.length - HEADER_SIZE);
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        buffer.putInt(0, frame.length - HEADER_SIZE).putInt(4, (int) crc.getValue());
+        Pending pending = new Pending(buffer, new CompletableFuture<>());
+        queue.add(pending);
+        return pending.done();
+    }
+
+    /**
+     * Бросает исключение, если журнал уже не пишется после сбоя записи. Вызывается до изменения в памяти:
+     * иначе изменение, которое не попадёт на диск, было бы видно до перезапуска.
+     * Изменения, поставленные в очередь до сбоя, остаются в памяти, хотя их вызов и завершится ошибкой.
+     */
+    public void requireWritable() {
+        IOException failed = failure;
+        if (failed != null) {
+            throw new UncheckedIOException("Журнал " + file + " недоступен после сбоя записи, "
+                    + "хранилище доступно только для чтения", failed);
+        }
+    }
+
+    /**
+     * Ждёт, пока запись окажется на диске.
+     */
+    public static void await(CompletableFuture<Void> written) {
+        try {
+            written.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw new UncheckedIOException("Не удалось записать журнал", io);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Число записей, сохранённых с момента открытия.
+     */
+    public long records() {
+        return records.get();
+    }
+
+    /**
+     * Число групп (записей в файл с последующим fsync) с момента открытия.
+     */
+    public long commits() {
+        return commits.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        queue.add(STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure == null) {
+            channel.force(true);
+        }
+        channel.close();
+    }
+
+    private static long replay(Path file, FileChannel channel, RecordReader replay) throws IOException {
+        long size = channel.size();
+        long valid = 0;
+        long count = 0;
+        // поток поверх канала не закрываем: канал дальше нужен для дозаписи
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        CRC32 crc = new CRC32();
+        while (valid < size) {
+            byte[] payload;
+            int checksum;
+            try {
+                int length = in.readInt();
+                checksum = in.readInt();
+                if (length < 0 || length > size - valid - HEADER_SIZE) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+            } catch (EOFException e) {
+                break;
+            }
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            replay.read(new DataInputStream(new ByteArrayInputStream(payload)));
+            valid += HEADER_SIZE + payload.length;
+            count++;
+        }
+        log.info("Журнал {} проигран: записей {}, {} байт", file, count, valid);
+        return valid;
+    }
+
+    private void writeLoop() {
+        List<Pending> group = new ArrayList<>();
+        boolean stopping = false;
+        while (!stopping) {
+            group.clear();
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(group, MAX_GROUP - 1);
+            stopping = group.remove(STOP);
+            if (group.isEmpty()) {
+                continue;
+            }
+            if (failure != null) {
+                group.forEach(pending -> pending.done().completeExceptionally(failure));
+                continue;
+            }
+            try {
+                ByteBuffer[] buffers = new ByteBuffer[group.size()];
+                long remaining = 0;
+                for (int i = 0; i < buffers.length; i++) {
+                    buffers[i] = group.get(i).data();
+                    remaining += buffers[i].remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+                records.addAndGet(group.size());
+                commits.incrementAndGet();
+                group.forEach(pending -> pending.done().complete(null));
+            } catch (IOException e) {
+                // после сбоя записи положение хвоста файла неизвестно: дальше журнал не пишется
+                log.error("Не удалось записать журнал {}", file, e);
+                failure = e;
+                group.forEach(pending -> pending.done().completeExceptionally(e));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordWriter {
+        void write(DataOutput out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface RecordReader {
+        void read(DataInput in) throws IOException;
+    }
+
+    private record Pending(ByteBuffer data, CompletableFuture<Void> done) {
+    }
+}
@@ -0,0 +1,480 @@
+package ru.yandex.practicum.filmorate.dao.memory;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.dao.dto.GenreDto;
+import ru.yandex.practicum.filmorate.dao.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dao.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.dao.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.dao.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.dao.index.TransactionCallbacks;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Фильмы и лайки целиком в памяти, без базы (filmorate.storage=memory).
+ * Устроено так же, как {@link UserMemoryStorage}: карты с ключом-примитивом, разбитые на полосы,
+ * изменения фильма и его лайков под блокировкой полосы фильма и журнал с групповым fsync.
+ * После сбоя записи журнала изменения отклоняются, хранилище доступно только для чтения.
+ * Рейтинг, совместные лайки и поиск — собственные экземпляры тех же индексов, что у хранилища в базе,
+ * но заполняются они из журнала. Справочники MPA и жанров по-прежнему берутся из базы через кэш.
+ * Снимки пишутся из таблиц и загружаются в таблицы, поэтому с filmorate.snapshot.import-on-startup
+ * хранилище не запускается.
+ */
+@Repository("filmMemoryStorage")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
+@Slf4j
+public class FilmMemoryStorage implements FilmStorage {
+    static final String JOURNAL_FILE = "films.journal";
+    private static final int STRIPES = 64;
+    private static final byte FILM_PUT = 1;
+    private static final byte LIKE_ADD = 2;
+    private static final byte LIKE_REMOVE = 3;
+    // те же ограничения, что у столбцов films в schema.sql
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_DESCRIPTION_LENGTH = 200;
+    private static final LocalDate MIN_RELEASE_DATE = LocalDate.of(1895, 12, 28);
+
+    private final UserMemoryStorage userStorage;
+    private final ReferenceDataCache referenceDataCache;
+    private final EntityVersions entityVersions;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong lastId = new AtomicLong();
+    // индексы строятся из журнала, а не из базы
+    private final PopularityLeaderboard leaderboard = PopularityLeaderboard.inMemory();
+    private final FilmSearchIndex filmSearchIndex = FilmSearchIndex.inMemory();
+    private final CoLikeIndex coLikeIndex;
+    private final AppendOnlyJournal journal;
+
+    public FilmMemoryStorage(UserMemoryStorage userStorage,
+                             ReferenceDataCache referenceDataCache,
+                             EntityVersions entityVersions,
+                             @Value("${filmorate.memory.journal-dir:}") String journalDir,
+                             @Value("${filmorate.memory.fsync:true}") boolean fsync,
+                             @Value("${filmorate.similar.neighbours:50}") int maxNeighbours,
+                             @Value("${filmorate.similar.max-fanout:1000}") int maxFanout,
+                             @Value("${filmorate.snapshot.import-on-startup:}") String snapshotImport) {
+        if (!snapshotImport.isBlank()) {
+            throw new IllegalStateException("Снимки поддерживаются только хранилищем в базе (filmorate.storage=db): "
+                    + "при filmorate.storage=memory данные лежат в журналах, а не в таблицах");
+        }
+        this.userStorage = userStorage;
+        this.referenceDataCache = referenceDataCache;
+        this.entityVersions = entityVersions;
+        this.coLikeIndex = CoLikeIndex.inMemory(maxNeighbours, maxFanout);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        if (journalDir.isBlank()) {
+            journal = AppendOnlyJournal.disabled();
+            log.warn("Журнал фильмов выключен: данные хранилища в памяти не переживут перезапуск");
+            return;
+        }
+        try {
+            journal = AppendOnlyJournal.open(Path.of(journalDir, JOURNAL_FILE), fsync, this::replay);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал фильмов в " + journalDir, e);
+        }
+        log.info("Фильмы загружены из журнала: последний id {}", lastId.get());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    @Override
+    public Film create(Film film) {
+        MpaDto mpa = referenceDataCache.requireMpa(film.getMpa().getId());
+        List<GenreDto> genres = referenceDataCache.requireGenres(film.getGenres());
+        requireColumns(film);
+        AppendOnlyJournal.await(put(lastId.incrementAndGet(), film, mpa, genres));
+        entityVersions.filmsCreated();
+        return film;
+    }
+
+    /**
+     * Все фильмы проверяются до первой вставки; ждём только последнюю запись —
+     * журнал сохраняет записи по порядку, и предыдущие к этому моменту уже на диске.
+     */
+    @Override
+    public List<Long> createAll(List<Film> films) {
+        List<MpaDto> mpas = new ArrayList<>(films.size());
+        List<List<GenreDto>> genres = new ArrayList<>(films.size());
+        for (Film film : films) {
+            mpas.add(referenceDataCache.requireMpa(film.getMpa().getId()));
+            genres.add(referenceDataCache.requireGenres(film.getGenres()));
+            requireColumns(film);
+        }
+        List<Long> ids = new ArrayList<>(films.size());
+        CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+        for (int i = 0; i < films.size(); i++) {
+            written = put(lastId.incrementAndGet(), films.get(i), mpas.get(i), genres.get(i));
+            ids.add(films.get(i).getId());
+        }
+        AppendOnlyJournal.await(written);
+        entityVersions.filmsCreated();
+        return ids;
+    }
+
+    @Override
+    public Film update(Film film) {
+        if (film.getMpa() == null) {
+            throw new ValidationException("Рейтинг MPA обязателен");
+        }
+        MpaDto mpa = referenceDataCache.requireMpa(film.getMpa().getId());
+        List<GenreDto> genres = referenceDataCache.requireGenres(film.getGenres());
+        requireColumns(film);
+        if (!exists(film.getId())) {
+            throw new NotFoundException("Фильм с ID " + film.getId() + " не найден");
+        }
+        AppendOnlyJournal.await(put(film.getId(), film, mpa, genres));
+        entityVersions.filmChanged(film.getId());
+        return film;
+    }
+
+    /**
+     * Кладёт фильм и обновляет индексы под блокировкой полосы; возвращает запись журнала.
+     */
+    private CompletableFuture<Void> put(long id, Film film, MpaDto mpa, List<GenreDto> genres) {
+        FilmRecord record = new FilmRecord(id, film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), mpa.getId(), genreIds(genres));
+        Stripe stripe = stripeOf(id);
+        long likes;
+        CompletableFuture<Void> written = TransactionCallbacks.detached(() -> {
+            synchronized (stripe) {
+                journal.requireWritable();
+                apply(stripe, record);
+                return journal.append(out -> writeFilm(out, record));
+            }
+        });
+        synchronized (stripe) {
+            likes = likeCount(stripe, id);
+        }
+        film.setId(id);
+        film.setMpa(mpa);
+        film.setGenres(genres);
+        film.setCountLikes(likes);
+        return written;
+    }
+
+    private void apply(Stripe stripe, FilmRecord record) {
+        int year = record.releaseDate().getYear();
+        if (stripe.films.put(record.id(), record) == null) {
+            leaderboard.register(record.id(), year, record.genreIds());
+        } else {
+            leaderboard.reclassify(record.id(), year, record.genreIds());
+        }
+        filmSearchIndex.index(record.id(), record.name(), record.description());
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        return findPage(0L, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Optional<Film> findById(Long id) {
+        return Optional.ofNullable(id == null ? null : load(id));
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        if (id == null) {
+            return false;
+        }
+        Stripe stripe = stripeOf(id);
+        synchronized (stripe) {
+            return stripe.films.get(id) != null;
+        }
+    }
+
+    /**
+     * Id выдаются подряд и не удаляются, поэтому страница — следующие id после afterId.
+     */
+    @Override
+    public List<Film> findPage(Long afterId, int limit) {
+        List<Film> page = new ArrayList<>();
+        long last = lastId.get();
+        for (long id = (afterId == null ? 0 : Math.max(afterId, 0)) + 1; id <= last && page.size() < limit; id++) {
+            Film film = load(id);
+            if (film != null) {
+                page.add(film);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void streamAll(Long afterId, Consumer<Film> consumer) {
+        long last = lastId.get();
+        for (long id = (afterId == null ? 0 : Math.max(afterId, 0)) + 1; id <= last; id++) {
+            Film film = load(id);
+            if (film != null) {
+                consumer.accept(film);
+            }
+        }
+    }
+
+    /**
+     * Повторный лайк ничего не меняет, как и в базе.
+     */
+    @Override
+    public void addLike(Long filmId, Long userId) {
+        requireFilmAndUser(filmId, userId);
+        Stripe stripe = stripeOf(filmId);
+        CompletableFuture<Void> written = TransactionCallbacks.detached(() -> {
+            synchronized (stripe) {
+                journal.requireWritable();
+                if (!stripe.likes.computeIfAbsent(filmId, id -> new LongHashSet(4)).add(userId)) {
+                    return null;
+                }
+                leaderboard.increment(filmId);
+                coLikeIndex.addLike(filmId, userId);
+                return journal.append(out -> writeLike(out, LIKE_ADD, filmId, userId));
+            }
+        });
+        if (written != null) {
+            entityVersions.filmChanged(filmId);
+            AppendOnlyJournal.await(written);
+        }
+    }
+
+    @Override
+    public void removeLike(Long filmId, Long userId) {
+        requireFilmAndUser(filmId, userId);
+        Stripe stripe = stripeOf(filmId);
+        CompletableFuture<Void> written = TransactionCallbacks.detached(() -> {
+            synchronized (stripe) {
+                journal.requireWritable();
+                LongHashSet users = stripe.likes.get(filmId);
+                if (users == null || !users.remove(userId)) {
+                    return null;
+                }
+                leaderboard.decrement(filmId);
+                coLikeIndex.removeLike(filmId, userId);
+                return journal.append(out -> writeLike(out, LIKE_REMOVE, filmId, userId));
+            }
+        });
+        if (written == null) {
+            throw new NotFoundException("Лайк не найден");
+        }
+        entityVersions.filmChanged(filmId);
+        AppendOnlyJournal.await(written);
+    }
+
+    @Override
+    public List<Film> getTopFilms(int count, Integer genreId, Integer year) {
+        return findAllByIds(leaderboard.getTopFilmIds(count, genreId, year));
+    }
+
+    @Override
+    public List<Long> getTopFilmIds(int count) {
+        return leaderboard.getTopFilmIds(count);
+    }
+
+    @Override
+    public Map<Long, Long> getLikeCounts(Collection<Long> filmIds) {
+        Map<Long, Long> counts = new HashMap<>();
+        filmIds.forEach(filmId -> counts.put(filmId, leaderboard.getLikeCount(filmId)));
+        return counts;
+    }
+
+    @Override
+    public List<Film> getSimilarFilms(Long filmId, int count) {
+        return findAllByIds(Arrays.stream(coLikeIndex.similarTo(filmId, count)).boxed().toList());
+    }
+
+    @Override
+    public List<Film> getRecommendations(Long userId, int count) {
+        return findAllByIds(Arrays.stream(coLikeIndex.recommendFor(userId, count)).boxed().toList());
+    }
+
+    @Override
+    public List<Film> searchFilms(String query, int offset, int limit) {
+        return findAllByIds(filmSearchIndex.search(query, offset, limit));
+    }
+
+    private List<Film> findAllByIds(List<Long> ids) {
+        List<Film> films = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Film film = load(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        return films;
+    }
+
+    /**
+     * Собирает фильм с названиями рейтинга и жанров; null, если фильма нет.
+     */
+    private Film load(long id) {
+        Stripe stripe = stripeOf(id);
+        FilmRecord record;
+        long likes;
+        synchronized (stripe) {
+            record = stripe.films.get(id);
+            if (record == null) {
+                return null;
+            }
+            likes = likeCount(stripe, id);
+        }
+        List<GenreDto> genres = null;
+        if (record.genreIds().length > 0) {
+            genres = referenceDataCache.requireGenres(Arrays.stream(record.genreIds())
+                    .mapToObj(genreId -> new GenreDto(genreId, null)).toList());
+        }
+        return Film.builder()
+                .id(record.id())
+                .name(record.name())
+                .description(record.description())
+                .releaseDate(record.releaseDate())
+                .duration(record.duration())
+                .mpa(referenceDataCache.requireMpa(record.mpaId()))
+                .genres(genres)
+                .countLikes(likes)
+                .build();
+    }
+
+    private static long likeCount(Stripe stripe, long filmId) {
+        LongHashSet users = stripe.likes.get(filmId);
+        return users == null ? 0 : users.size();
+    }
+
+    private void requireFilmAndUser(Long filmId, Long userId) {
+        if (!exists(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+        if (!userStorage.exists(userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
+    }
+
+    /**
+     * Те же ограничения NOT NULL, что у таблицы films.
+     */
+    private static void requireColumns(Film film) {
+        if (film.getName() == null || film.getReleaseDate() == null || film.getDuration() == null) {
+            throw new DataIntegrityViolationException("У фильма обязательны название, дата релиза и продолжительность");
+        }
+        if (film.getName().isEmpty() || film.getName().length() > MAX_NAME_LENGTH) {
+            throw new DataIntegrityViolationException("Название фильма должно быть от 1 до " + MAX_NAME_LENGTH
+                    + " символов");
+        }
+        if (film.getDescription() != null && film.getDescription().length() > MAX_DESCRIPTION_LENGTH) {
+            throw new DataIntegrityViolationException("Описание фильма не должно превышать " + MAX_DESCRIPTION_LENGTH
+                    + " символов");
+        }
+        if (film.getReleaseDate().isBefore(MIN_RELEASE_DATE) || film.getDuration() <= 0) {
+            throw new DataIntegrityViolationException("Дата релиза не раньше " + MIN_RELEASE_DATE
+                    + ", продолжительность положительная");
+        }
+    }
+
+    private static int[] genreIds(List<GenreDto> genres) {
+        return genres == null ? new int[0] : genres.stream().mapToInt(GenreDto::getId).toArray();
+    }
+
+    private Stripe stripeOf(long id) {
+        return stripes[LongObjectMap.mix(id) & (STRIPES - 1)];
+    }
+
+    private static void writeFilm(DataOutput out, FilmRecord record) throws IOException {
+        out.writeByte(FILM_PUT);
+        out.writeLong(record.id());
+        out.writeUTF(record.name());
+        out.writeBoolean(record.description() != null);
+        if (record.description() != null) {
+            out.writeUTF(record.description());
+        }
+        out.writeLong(record.releaseDate().toEpochDay());
+        out.writeLong(record.duration());
+        out.writeInt(record.mpaId());
+        out.writeByte(record.genreIds().length);
+        for (int genreId : record.genreIds()) {
+            out.writeInt(genreId);
+        }
+    }
+
+    private static void writeLike(DataOutput out, byte type, long filmId, long userId) throws IOException {
+        out.writeByte(type);
+        out.writeLong(filmId);
+        out.writeLong(userId);
+    }
+
+    /**
+     * Применяет запись журнала при старте, до того как хранилище станет доступно.
+     */
+    private void replay(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case FILM_PUT -> {
+                long id = in.readLong();
+                String name = in.readUTF();
+                String description = in.readBoolean() ? in.readUTF() : null;
+                LocalDate releaseDate = LocalDate.ofEpochDay(in.readLong());
+                long duration = in.readLong();
+                int mpaId = in.readInt();
+                int[] genreIds = new int[in.readUnsignedByte()];
+                for (int i = 0; i < genreIds.length; i++) {
+                    genreIds[i] = in.readInt();
+                }
+                apply(stripeOf(id), new FilmRecord(id, name, description, releaseDate, duration, mpaId, genreIds));
+                lastId.accumulateAndGet(id, Math::max);
+            }
+            case LIKE_ADD -> {
+                long filmId = in.readLong();
+                long userId = in.readLong();
+                if (stripeOf(filmId).likes.computeIfAbsent(filmId, id -> new LongHashSet(4)).add(userId)) {
+                    leaderboard.increment(filmId);
+                    coLikeIndex.addLike(filmId, userId);
+                }
+            }
+            case LIKE_REMOVE -> {
+                long filmId = in.readLong();
+                long userId = in.readLong();
+                LongHashSet users = stripeOf(filmId).likes.get(filmId);
+                if (users != null && users.remove(userId)) {
+                    leaderboard.decrement(filmId);
+                    coLikeIndex.removeLike(filmId, userId);
+                }
+            }
+            default -> throw new IOException("Неизвестный тип записи журнала фильмов: " + type);
+        }
+    }
+
+    private record FilmRecord(long id, String name, String description, LocalDate releaseDate,
+                              long duration, int mpaId, int[] genreIds) {
+    }
+
+    private static final class Stripe {
+        private final LongObjectMap<FilmRecord> films = new LongObjectMap<>(1024);
+        private final LongObjectMap<LongHashSet> likes = new LongObjectMap<>(1024);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.dao.memory;
+
+/**
+ * Множество long с открытой адресацией (как {@link LongObjectMap}, но без значений).
+ * 0 служит пустым ключом. Не потокобезопасно.
+ */
+final class LongHashSet {
+    private long[] keys;
+    private int size;
+
+    LongHashSet(int expected) {
+        keys = new long[Integer.highestOneBit(Math.max(4, expected) * 2 - 1)];
+    }
+
+    boolean contains(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Возвращает false, если значение уже было в множестве.
+     */
+    boolean add(long key) {
+        int mask = keys.length - 1;
+        int slot = LongObjectMap.mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает false, если значения в множестве не было.
+     */
+    boolean remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != 0) {
+            int home = LongObjectMap.mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = 0;
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = LongObjectMap.mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        keys = new long[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (long key : oldKeys) {
+            if (key != 0) {
+                int slot = LongObjectMap.mix(key) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package ru.yandex.practicum.filmorate.dao.memory;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.index.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.dao.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.dao.index.TransactionCallbacks;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пользователи и дружба целиком в памяти, без базы (filmorate.storage=memory).
+ * Пользователи лежат в картах с ключом-примитивом, разбитых на полосы; изменения пользователя и его
+ * списка друзей выполняются под блокировкой его полосы и в том же порядке ставятся в журнал
+ * ({@link AppendOnlyJournal}), который проигрывается при старте. Вызов возвращается, когда запись
+ * уже на диске. Друзья хранятся в собственном {@link FriendshipGraph}, рекомендации считает
+ * {@link FriendSuggestionEngine} — те же, что и у хранилища в базе.
+ * После сбоя записи журнала изменения отклоняются до их применения: хранилище доступно только для чтения.
+ * Хранилище не участвует в транзакциях вызывающего кода: изменения видны и сохраняются сразу.
+ */
+@Repository("userMemoryStorage")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
+@Slf4j
+public class UserMemoryStorage implements UserStorage {
+    static final String JOURNAL_FILE = "users.journal";
+    private static final int STRIPES = 64;
+    private static final byte USER_PUT = 1;
+    private static final byte FRIEND_ADD = 2;
+    private static final byte FRIEND_REMOVE = 3;
+
+    private final EntityVersions entityVersions;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Map<String, Long> logins = new ConcurrentHashMap<>();
+    private final Map<String, Long> emails = new ConcurrentHashMap<>();
+    private final AtomicLong lastId = new AtomicLong();
+    // индексы строятся из журнала, а не из базы
+    private final FriendshipGraph friendshipGraph = FriendshipGraph.inMemory();
+    private final FriendSuggestionEngine friendSuggestionEngine;
+    private final AppendOnlyJournal journal;
+
+    public UserMemoryStorage(EntityVersions entityVersions,
+                             @Value("${filmorate.memory.journal-dir:}") String journalDir,
+                             @Value("${filmorate.memory.fsync:true}") boolean fsync,
+                             @Value("${filmorate.friends.suggestions.max-fanout:1000}") int maxFanout) {
+        this.entityVersions = entityVersions;
+        this.friendSuggestionEngine = new FriendSuggestionEngine(friendshipGraph, maxFanout);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        if (journalDir.isBlank()) {
+            journal = AppendOnlyJournal.disabled();
+            log.warn("Журнал пользователей выключен: данные хранилища в памяти не переживут перезапуск");
+            return;
+        }
+        try {
+            journal = AppendOnlyJournal.open(Path.of(journalDir, JOURNAL_FILE), fsync, this::replay);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал пользователей в " + journalDir, e);
+        }
+        log.info("Пользователи загружены из журнала: последний id {}", lastId.get());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    @Override
+    public User create(User user) {
+        requireColumns(user);
+        journal.requireWritable();
+        long id = lastId.incrementAndGet();
+        UserRecord record = new UserRecord(id, user.getLogin(), user.getName(), user.getEmail(), user.getBirthday());
+        claim(logins, record.login(), id, "Логин");
+        try {
+            claim(emails, record.email(), id, "Email");
+        } catch (DuplicateKeyException e) {
+            logins.remove(record.login(), id);
+            throw e;
+        }
+        Stripe stripe = stripeOf(id);
+        CompletableFuture<Void> written;
+        synchronized (stripe) {
+            stripe.users.put(id, record);
+            written = journal.append(out -> writeUser(out, record));
+        }
+        AppendOnlyJournal.await(written);
+        user.setId(id);
+        return user;
+    }
+
+    @Override
+    public User update(User user) {
+        requireColumns(user);
+        long id = user.getId() == null ? 0 : user.getId();
+        UserRecord record = new UserRecord(id, user.getLogin(), user.getName(), user.getEmail(), user.getBirthday());
+        Stripe stripe = stripeOf(id);
+        CompletableFuture<Void> written;
+        synchronized (stripe) {
+            UserRecord previous = stripe.users.get(id);
+            if (previous == null) {
+                throw new NotFoundException("Пользователь с id=" + user.getId() + " не найден");
+            }
+            journal.requireWritable();
+            if (!previous.login().equals(record.login())) {
+                claim(logins, record.login(), id, "Логин");
+            }
+            if (!previous.email().equals(record.email())) {
+                try {
+                    claim(emails, record.email(), id, "Email");
+                } catch (DuplicateKeyException e) {
+                    // освобождаем только что занятый новый логин, прежний остаётся за пользователем
+                    if (!previous.login().equals(record.login())) {
+                        logins.remove(record.login(), id);
+                    }
+                    throw e;
+                }
+            }
+            stripe.users.put(id, record);
+            release(previous, record);
+            written = journal.append(out -> writeUser(out, record));
+        }
+        entityVersions.userChanged(id);
+        AppendOnlyJournal.await(written);
+        return user;
+    }
+
+    @Override
+    public List<User> findAll() {
+        return findPage(0L, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        UserRecord record = id == null ? null : get(id);
+        return Optional.ofNullable(record).map(this::withFriends);
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        return id != null && get(id) != null;
+    }
+
+    /**
+     * Id выдаются подряд и не удаляются, поэтому страница — следующие id после afterId.
+     */
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        List<User> page = new ArrayList<>();
+        long last = lastId.get();
+        for (long id = (afterId == null ? 0 : Math.max(afterId, 0)) + 1; id <= last && page.size() < limit; id++) {
+            UserRecord record = get(id);
+            if (record != null) {
+                page.add(withFriends(record));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void addFriendRequest(Long userId, Long friendId) {
+        requireUsersExist(userId, friendId);
+        Stripe stripe = stripeOf(userId);
+        CompletableFuture<Void> written = TransactionCallbacks.detached(() -> {
+            synchronized (stripe) {
+                journal.requireWritable();
+                if (friendshipGraph.isFriend(userId, friendId)) {
+                    return null;
+                }
+                friendshipGraph.addFriend(userId, friendId);
+                return journal.append(out -> writePair(out, FRIEND_ADD, userId, friendId));
+            }
+        });
+        if (written != null) {
+            entityVersions.userChanged(userId);
+            AppendOnlyJournal.await(written);
+        }
+    }
+
+    /**
+     * Запросов в друзья хранилище не ведёт: addFriendRequest сразу добавляет друга.
+     */
+    @Override
+    public void confirmFriendship(Long userId, Long friendId) {
+        throw new UnsupportedOperationException(
+                "Хранилище в памяти не ведёт запросов в друзья: addFriendRequest сразу добавляет друга");
+    }
+
+    @Override
+    public void removeFriendship(Long userId, Long friendId) {
+        requireUsersExist(userId, friendId);
+        Stripe stripe = stripeOf(userId);
+        CompletableFuture<Void> written = TransactionCallbacks.detached(() -> {
+            synchronized (stripe) {
+                journal.requireWritable();
+                if (!friendshipGraph.isFriend(userId, friendId)) {
+                    return null;
+                }
+                friendshipGraph.removeFriend(userId, friendId);
+                return journal.append(out -> writePair(out, FRIEND_REMOVE, userId, friendId));
+            }
+        });
+        if (written != null) {
+            entityVersions.userChanged(userId);
+            AppendOnlyJournal.await(written);
+        }
+    }
+
+    @Override
+    public List<User> getFriends(Long userId) {
+        requireUserExists(userId);
+        return findAllByIds(friendshipGraph.friendsOf(userId));
+    }
+
+    @Override
+    public List<User> getCommonFriends(Long userId, Long otherId) {
+        requireUserExists(userId);
+        requireUserExists(otherId);
+        return findAllByIds(friendshipGraph.commonFriends(userId, otherId));
+    }
+
+    @Override
+    public List<User> getFriendSuggestions(Long userId, int count) {
+        requireUserExists(userId);
+        List<User> suggestions = new ArrayList<>();
+        for (long id : friendSuggestionEngine.suggest(userId, count)) {
+            suggestions.add(toUser(get(id)));
+        }
+        return suggestions;
+    }
+
+    @Override
+    public List<User> findAllByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        return findAllByIds(ids.stream().mapToLong(Long::longValue).distinct().sorted().toArray());
+    }
+
+    private List<User> findAllByIds(long[] sortedIds) {
+        List<User> users = new ArrayList<>(sortedIds.length);
+        for (long id : sortedIds) {
+            UserRecord record = get(id);
+            if (record != null) {
+                users.add(toUser(record));
+            }
+        }
+        return users;
+    }
+
+    private UserRecord get(long id) {
+        Stripe stripe = stripeOf(id);
+        synchronized (stripe) {
+            return stripe.users.get(id);
+        }
+    }
+
+    private void requireUserExists(Long id) {
+        if (!exists(id)) {
+            throw new NotFoundException("Пользователь с ID " + id + " не найден");
+        }
+    }
+
+    private void requireUsersExist(Long userId, Long otherId) {
+        requireUserExists(userId);
+        requireUserExists(otherId);
+    }
+
+    private User toUser(UserRecord record) {
+        return User.builder()
+                .id(record.id())
+                .login(record.login())
+                .name(record.name())
+                .email(record.email())
+                .birthday(record.birthday())
+                .build();
+    }
+
+    private User withFriends(UserRecord record) {
+        User user = toUser(record);
+        Arrays.stream(friendshipGraph.friendsOf(record.id())).forEach(user.getFriends()::add);
+        return user;
+    }
+
+    /**
+     * Те же ограничения NOT NULL, что у таблицы users.
+     */
+    private static void requireColumns(User user) {
+        if (user.getLogin() == null || user.getEmail() == null || user.getBirthday() == null) {
+            throw new DataIntegrityViolationException("У пользователя обязательны логин, email и дата рождения");
+        }
+    }
+
+    private static void claim(Map<String, Long> owners, String value, long id, String field) {
+        Long owner = owners.putIfAbsent(value, id);
+        if (owner != null && owner != id) {
+            throw new DuplicateKeyException(field + " " + value + " уже занят");
+        }
+    }
+
+    /**
+     * Освобождает логин и email записи from, которые не использует запись to.
+     */
+    private void release(UserRecord from, UserRecord to) {
+        if (!from.login().equals(to.login())) {
+            logins.remove(from.login(), from.id());
+        }
+        if (!from.email().equals(to.email())) {
+            emails.remove(from.email(), from.id());
+        }
+    }
+
+    private Stripe stripeOf(long id) {
+        return stripes[LongObjectMap.mix(id) & (STRIPES - 1)];
+    }
+
+    private static void writeUser(DataOutput out, UserRecord record) throws IOException {
+        out.writeByte(USER_PUT);
+        out.writeLong(record.id());
+        out.writeUTF(record.login());
+        out.writeBoolean(record.name() != null);
+        if (record.name() != null) {
+            out.writeUTF(record.name());
+        }
+        out.writeUTF(record.email());
+        out.writeLong(record.birthday().toEpochDay());
+    }
+
+    private static void writePair(DataOutput out, byte type, long userId, long friendId) throws IOException {
+        out.writeByte(type);
+        out.writeLong(userId);
+        out.writeLong(friendId);
+    }
+
+    /**
+     * Применяет запись журнала при старте, до того как хранилище станет доступно.
+     */
+    private void replay(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case USER_PUT -> {
+                long id = in.readLong();
+                String login = in.readUTF();
+                String name = in.readBoolean() ? in.readUTF() : null;
+                UserRecord record = new UserRecord(id, login, name, in.readUTF(), LocalDate.ofEpochDay(in.readLong()));
+                UserRecord previous = stripeOf(id).users.put(id, record);
+                if (previous != null) {
+                    release(previous, record);
+                }
+                logins.put(record.login(), id);
+                emails.put(record.email(), id);
+                lastId.accumulateAndGet(id, Math::max);
+            }
+            case FRIEND_ADD -> friendshipGraph.addFriend(in.readLong(), in.readLong());
+            case FRIEND_REMOVE -> friendshipGraph.removeFriend(in.readLong(), in.readLong());
+            default -> throw new IOException("Неизвестный тип записи журнала пользователей: " + type);
+        }
+    }
+
+    private record UserRecord(long id, String login, String name, String email, LocalDate birthday) {
+    }
+
+    private static final class Stripe {
+        private final LongObjectMap<UserRecord> users = new LongObjectMap<>(1024);
+    }
+}
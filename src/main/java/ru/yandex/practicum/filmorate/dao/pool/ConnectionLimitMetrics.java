@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.dao.pool;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Метрики ограничителя соединений: свободные разрешения и потоки в очереди за соединением.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConnectionLimitMetrics implements MeterBinder {
+    private final DataSource dataSource;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        ConnectionLimitingDataSource limiter;
+        try {
+            limiter = dataSource.unwrap(ConnectionLimitingDataSource.class);
+        } catch (SQLException e) {
+            return;
+        }
+        Gauge.builder("filmorate.jdbc.permits.available", limiter, ConnectionLimitingDataSource::getAvailablePermits)
+                .register(registry);
+        Gauge.builder("filmorate.jdbc.permits.waiting", limiter, ConnectionLimitingDataSource::getWaitingThreads)
+                .register(registry);
+    }
+}
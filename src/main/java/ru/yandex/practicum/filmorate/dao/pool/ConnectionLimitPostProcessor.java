@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.dao.pool;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Оборачивает источник данных в {@link ConnectionLimitingDataSource}.
+ * По умолчанию лимит равен размеру пула Hikari, так что ждать в самом пуле не приходится.
+ * Срабатывает сразу после метрик SQL и охватывает уже замеряемый источник.
+ */
+@Component
+@Slf4j
+public class ConnectionLimitPostProcessor implements BeanPostProcessor, Ordered {
+    private final int maxConnections;
+    private final Duration acquireTimeout;
+
+    public ConnectionLimitPostProcessor(
+            @Value("${filmorate.jdbc.max-connections:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConnections,
+            @Value("${filmorate.jdbc.acquire-timeout:5s}") Duration acquireTimeout) {
+        this.maxConnections = maxConnections;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof ConnectionLimitingDataSource)) {
+            log.info("Одновременных соединений с базой не больше {}, ожидание до {}", maxConnections, acquireTimeout);
+            return new ConnectionLimitingDataSource(dataSource, maxConnections, acquireTimeout);
+        }
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.dao.pool;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Если задан filmorate.datasource.read.url, подключает реплику для чтения: основной источник
+ * оборачивается в {@link ReadWriteRoutingDataSource} за LazyConnectionDataSourceProxy.
+ * Срабатывает последним: основной источник к этому моменту уже обёрнут метриками SQL
+ * и ограничением соединений, а реплика проходит через те же постпроцессоры отдельно.
+ * Так у каждой базы свой лимит, а таймеры запросов не включают ожидание соединения.
+ */
+@Component
+@Slf4j
+public class ReadReplicaPostProcessor implements BeanPostProcessor, Ordered, EnvironmentAware, BeanFactoryAware {
+    private static final String PREFIX = "filmorate.datasource.read.";
+    private static final String REPLICA_NAME = "readReplicaDataSource";
+
+    private Environment environment;
+    private AutowireCapableBeanFactory beanFactory;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = (AutowireCapableBeanFactory) beanFactory;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        String url = environment.getProperty(PREFIX + "url");
+        if (url == null || url.isBlank() || !(bean instanceof DataSource primary)
+                || bean instanceof LazyConnectionDataSourceProxy || REPLICA_NAME.equals(beanName)) {
+            return bean;
+        }
+        DataSource replica = DataSourceBuilder.create()
+                .url(url)
+                .username(environment.getProperty(PREFIX + "username"))
+                .password(environment.getProperty(PREFIX + "password"))
+                .build();
+        replica = (DataSource) beanFactory.applyBeanPostProcessorsAfterInitialization(replica, REPLICA_NAME);
+        ReadWriteRoutingDataSource.LagMode lagMode = environment.getProperty(PREFIX + "lag-mode",
+                ReadWriteRoutingDataSource.LagMode.class, ReadWriteRoutingDataSource.LagMode.READ_YOUR_WRITES);
+        Duration maxLag = environment.getProperty(PREFIX + "max-lag", Duration.class, Duration.ofSeconds(1));
+        log.info("Чтение в read-only транзакциях идёт с реплики {}, режим отставания {}, окно {}",
+                url, lagMode, maxLag);
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica, lagMode, maxLag));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.dao.pool;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Направляет соединения read-only транзакций на реплику, всё остальное — на основную базу.
+ * Запись и чтение после записи внутри транзакции остаются на основной базе: вложенный
+ * read-only метод присоединяется к внешней транзакции и флаг read-only не получает.
+ * Решение принимается при выдаче физического соединения, поэтому источник нужно оборачивать
+ * в LazyConnectionDataSourceProxy: к этому моменту флаг транзакции уже выставлен.
+ * <p>
+ * Режим {@link LagMode#READ_YOUR_WRITES} защищает от отставания реплики: после записи через
+ * этот экземпляр чтение ещё maxLag идёт с основной базы, иначе только что созданная строка,
+ * уже попавшая в индексы в памяти, могла бы не найтись на реплике.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    public enum LagMode {
+        /**
+         * Read-only транзакции всегда читают с реплики.
+         */
+        NONE,
+        /**
+         * После записи read-only транзакции ещё maxLag читают с основной базы.
+         */
+        READ_YOUR_WRITES
+    }
+
+    private enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private final DataSource primary;
+    private final LagMode lagMode;
+    private final long maxLagNanos;
+    private volatile long lastWriteNanos;
+    private volatile boolean written;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, LagMode lagMode, Duration maxLag) {
+        this.primary = primary;
+        this.lagMode = lagMode;
+        this.maxLagNanos = maxLag.toNanos();
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Route.PRIMARY;
+        }
+        if (lagMode == LagMode.READ_YOUR_WRITES && written && System.nanoTime() - lastWriteNanos < maxLagNanos) {
+            return Route.PRIMARY;
+        }
+        return Route.REPLICA;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        Connection connection = target.getConnection();
+        return target == primary ? trackingWrites(connection) : connection;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        DataSource target = determineTargetDataSource();
+        Connection connection = target.getConnection(username, password);
+        return target == primary ? trackingWrites(connection) : connection;
+    }
+
+    /**
+     * true, если сейчас read-only транзакция пошла бы на реплику.
+     */
+    public boolean isReadingFromReplica() {
+        return determineCurrentLookupKey() == Route.REPLICA;
+    }
+
+    /**
+     * Соединение основной базы, которое при закрытии запоминает время записи, если через него
+     * выполнялось что-то кроме SELECT. Закрытие происходит после коммита, так что окно отсчитывается
+     * от момента, когда запись уже видна на основной базе.
+     */
+    private Connection trackingWrites(Connection connection) {
+        AtomicBoolean dirty = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(ReadWriteRoutingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement", "prepareCall" -> {
+                            if (!isSelect((String) args[0])) {
+                                dirty.set(true);
+                            }
+                        }
+                        case "createStatement" -> dirty.set(true);
+                        case "close" -> {
+                            if (dirty.getAndSet(false)) {
+                                lastWriteNanos = System.nanoTime();
+                                written = true;
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    private static boolean isSelect(String sql) {
+        String head = sql.stripLeading();
+        return head.regionMatches(true, 0, "SELECT", 0, 6) || head.regionMatches(true, 0, "WITH", 0, 4);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.dao.snapshot;
+
+/**
+ * Двоичный формат снимка базы.
+ * <pre>
+ * заголовок: MAGIC (4 байта), VERSION (2 байта)
+ * секции в порядке USERS, FILMS, FILM_GENRE, LIKES, FRIENDSHIP, FRIEND_REQUESTS:
+ *     тег секции (1 байт), записи, 0 — конец секции
+ * конец: тег END, CRC32 всех предыдущих байтов (4 байта)
+ * </pre>
+ * Числа записываются как varint (7 бит на байт), даты — числом дней от эпохи в zigzag-кодировке,
+ * строки — varint(длина + 1) и байты UTF-8, где длина 0 означает null.
+ * Строки таблиц выгружаются по возрастанию ключа и хранятся приращениями:
+ * <ul>
+ *     <li>users, films — varint(id − предыдущий id), затем поля;</li>
+ *     <li>пары (film_genre, likes, friendship, friend_requests) — varint(первый − предыдущий первый + 1),
+ *     затем второй целиком, если первый сменился, иначе разность со вторым предыдущей пары.</li>
+ * </ul>
+ * Приращение id всегда не меньше единицы, поэтому ноль однозначно закрывает секцию,
+ * а лайк в отсортированной выгрузке обычно занимает два-три байта.
+ */
+final class SnapshotFormat {
+    static final int MAGIC = 0x464C4D53; // "FLMS"
+    static final short VERSION = 1;
+
+    static final byte USERS = 1;
+    static final byte FILMS = 2;
+    static final byte FILM_GENRE = 3;
+    static final byte LIKES = 4;
+    static final byte FRIENDSHIP = 5;
+    static final byte FRIEND_REQUESTS = 6;
+    static final byte END = (byte) 0xFF;
+
+    static final int END_OF_SECTION = 0;
+
+    private SnapshotFormat() {
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.dao.snapshot;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Чтение примитивов формата снимка из буфера (обычно отображённого в память файла).
+ * Выход за границу данных или испорченное число — {@link IllegalStateException}.
+ */
+final class SnapshotInput {
+    private final ByteBuffer buffer;
+    private byte[] scratch = new byte[256];
+
+    SnapshotInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    byte readByte() {
+        try {
+            return buffer.get();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("Снимок обрывается на позиции " + buffer.position(), e);
+        }
+    }
+
+    int readShort() {
+        return ((readByte() & 0xFF) << 8) | (readByte() & 0xFF);
+    }
+
+    int readInt() {
+        return (readShort() << 16) | readShort();
+    }
+
+    long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Слишком длинное число на позиции " + buffer.position());
+    }
+
+    LocalDate readDate() {
+        long zigzag = readVarLong();
+        return LocalDate.ofEpochDay((zigzag >>> 1) ^ -(zigzag & 1));
+    }
+
+    String readString() {
+        long length = readVarLong() - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalStateException("Строка выходит за конец снимка на позиции " + buffer.position());
+        }
+        int size = (int) length;
+        if (scratch.length < size) {
+            scratch = new byte[Math.max(size, scratch.length * 2)];
+        }
+        buffer.get(scratch, 0, size);
+        return new String(scratch, 0, size, StandardCharsets.UTF_8);
+    }
+
+    int position() {
+        return buffer.position();
+    }
+
+    int limit() {
+        return buffer.limit();
+    }
+}
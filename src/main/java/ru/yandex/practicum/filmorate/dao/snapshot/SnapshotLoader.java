@@ -0,0 +1,237 @@
+package ru.yandex.practicum.filmorate.dao.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Загрузка двоичного снимка ({@link SnapshotFormat}) в базу.
+ * Файл отображается в память и сначала целиком проверяется (заголовок, версия, CRC32) — испорченный
+ * снимок отклоняется, не трогая базу. Затем в одной транзакции таблицы (и журнал лайков) очищаются и заполняются
+ * пакетными вставками; при любой ошибке транзакция откатывается и в базе остаются прежние данные.
+ * Схема не пересоздаётся: таблицы и справочники жанров и рейтингов должны уже существовать.
+ */
+@Component
+@Slf4j
+public class SnapshotLoader {
+    static final int BATCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public SnapshotLoader(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public SnapshotStats load(Path path) {
+        long started = System.nanoTime();
+        SnapshotStats stats;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Снимок " + path + " больше 2 ГБ: " + size + " байт");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            SnapshotInput input = verify(buffer, path);
+            stats = transactionTemplate.execute(status -> {
+                clear();
+                return loadSections(input);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать снимок " + path, e);
+        }
+        // DDL в H2 завершает транзакцию, поэтому счётчики id сдвигаются уже после коммита
+        restartIdentity("users");
+        restartIdentity("films");
+        log.info("Снимок {} загружен за {} мс: {}", path, (System.nanoTime() - started) / 1_000_000, stats);
+        return stats;
+    }
+
+    private static SnapshotInput verify(ByteBuffer buffer, Path path) {
+        int size = buffer.remaining();
+        if (size < 11) {
+            throw new IllegalStateException("Файл " + path + " не является снимком: слишком короткий");
+        }
+        SnapshotInput input = new SnapshotInput(buffer);
+        if (input.readInt() != SnapshotFormat.MAGIC) {
+            throw new IllegalStateException("Файл " + path + " не является снимком");
+        }
+        int version = input.readShort();
+        if (version != SnapshotFormat.VERSION) {
+            throw new IllegalStateException("Неподдерживаемая версия снимка " + version + " в " + path);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(size - 4));
+        if ((int) crc.getValue() != buffer.getInt(size - 4)) {
+            throw new IllegalStateException("Снимок " + path + " повреждён: не сходится контрольная сумма");
+        }
+        buffer.limit(size - 4);
+        return input;
+    }
+
+    /**
+     * Журнал лайков прежней базы тоже удаляется: иначе уплотнение дописало бы его в загруженные likes.
+     */
+    private void clear() {
+        jdbcTemplate.update("DELETE FROM like_events");
+        jdbcTemplate.update("DELETE FROM like_log_state");
+        jdbcTemplate.update("DELETE FROM friend_requests");
+        jdbcTemplate.update("DELETE FROM friendship");
+        jdbcTemplate.update("DELETE FROM likes");
+        jdbcTemplate.update("DELETE FROM film_genre");
+        jdbcTemplate.update("DELETE FROM films");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    private SnapshotStats loadSections(SnapshotInput input) {
+        expectSection(input, SnapshotFormat.USERS);
+        long users = loadUsers(input);
+        expectSection(input, SnapshotFormat.FILMS);
+        long films = loadFilms(input);
+        long filmGenres = loadPairs(input, SnapshotFormat.FILM_GENRE,
+                "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)");
+        long likes = loadPairs(input, SnapshotFormat.LIKES,
+                "INSERT INTO likes (film_id, user_id) VALUES (?, ?)");
+        long friendships = loadPairs(input, SnapshotFormat.FRIENDSHIP,
+                "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)");
+        long friendRequests = loadPairs(input, SnapshotFormat.FRIEND_REQUESTS,
+                "INSERT INTO friend_requests (requester_id, target_id) VALUES (?, ?)");
+        expectSection(input, SnapshotFormat.END);
+        if (input.position() != input.limit()) {
+            throw new IllegalStateException("После конца снимка остались данные на позиции " + input.position());
+        }
+        return new SnapshotStats(users, films, filmGenres, likes, friendships, friendRequests);
+    }
+
+    private long loadUsers(SnapshotInput input) {
+        String sql = "INSERT INTO users (id, login, name, email, birthday) VALUES (?, ?, ?, ?, ?)";
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        long count = 0;
+        long id = 0;
+        for (long delta = input.readVarLong(); delta != SnapshotFormat.END_OF_SECTION; delta = input.readVarLong()) {
+            id += delta;
+            batch.add(new Object[]{id, input.readString(), input.readString(), input.readString(),
+                    Date.valueOf(input.readDate())});
+            if (batch.size() == BATCH_SIZE) {
+                count += insert(sql, batch);
+            }
+        }
+        return count + insert(sql, batch);
+    }
+
+    private long loadFilms(SnapshotInput input) {
+        String sql = "INSERT INTO films (id, name, description, release_date, duration, rating_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        long count = 0;
+        long id = 0;
+        for (long delta = input.readVarLong(); delta != SnapshotFormat.END_OF_SECTION; delta = input.readVarLong()) {
+            id += delta;
+            batch.add(new Object[]{id, input.readString(), input.readString(), Date.valueOf(input.readDate()),
+                    input.readVarLong(), (int) input.readVarLong()});
+            if (batch.size() == BATCH_SIZE) {
+                count += insert(sql, batch);
+            }
+        }
+        return count + insert(sql, batch);
+    }
+
+    private long loadPairs(SnapshotInput input, byte section, String sql) {
+        expectSection(input, section);
+        PairBatch batch = new PairBatch();
+        long count = 0;
+        long first = 0;
+        long second = 0;
+        for (long delta = input.readVarLong(); delta != SnapshotFormat.END_OF_SECTION; delta = input.readVarLong()) {
+            if (delta == 1) {
+                second += input.readVarLong();
+            } else {
+                first += delta - 1;
+                second = input.readVarLong();
+            }
+            batch.add(first, second);
+            if (batch.size == BATCH_SIZE) {
+                count += batch.insert(sql);
+            }
+        }
+        return count + batch.insert(sql);
+    }
+
+    private long insert(String sql, List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(sql, batch);
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    private void restartIdentity(String table) {
+        Long next = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table, Long.class);
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + next);
+    }
+
+    private static void expectSection(SnapshotInput input, byte section) {
+        int position = input.position();
+        byte tag = input.readByte();
+        if (tag != section) {
+            throw new IllegalStateException("Ожидалась секция " + section + ", а на позиции " + position
+                    + " записано " + tag);
+        }
+    }
+
+    /**
+     * Пакет пар id без упаковки в объекты: в снимке на 10 млн лайков это заметно.
+     */
+    private final class PairBatch {
+        private final long[] firsts = new long[BATCH_SIZE];
+        private final long[] seconds = new long[BATCH_SIZE];
+        private int size;
+
+        void add(long first, long second) {
+            firsts[size] = first;
+            seconds[size] = second;
+            size++;
+        }
+
+        long insert(String sql) {
+            if (size == 0) {
+                return 0;
+            }
+            int count = size;
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, firsts[i]);
+                    ps.setLong(2, seconds[i]);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return count;
+                }
+            });
+            size = 0;
+            return count;
+        }
+    }
+}
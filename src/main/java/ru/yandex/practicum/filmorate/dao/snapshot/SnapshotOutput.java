@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.dao.snapshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+/**
+ * Буферизованная запись примитивов формата снимка с подсчётом CRC32.
+ * Потоком не владеет и не закрывает его.
+ */
+final class SnapshotOutput {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final CRC32 crc = new CRC32();
+    private int position;
+
+    SnapshotOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    void writeByte(int value) {
+        ensure(1);
+        buffer[position++] = (byte) value;
+    }
+
+    void writeShort(int value) {
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    void writeInt(int value) {
+        writeShort(value >>> 16);
+        writeShort(value);
+    }
+
+    void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    void writeDate(LocalDate date) {
+        long days = date.toEpochDay();
+        writeVarLong((days << 1) ^ (days >> 63));
+    }
+
+    void writeString(String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length + 1L);
+        ensure(bytes.length);
+        if (bytes.length > buffer.length) {
+            crc.update(bytes);
+            write(bytes, bytes.length);
+            return;
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * Дописывает CRC32 всего записанного и сбрасывает буфер в поток.
+     */
+    void finish() {
+        drain();
+        int checksum = (int) crc.getValue();
+        writeInt(checksum);
+        drain();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (position + bytes > buffer.length) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        crc.update(buffer, 0, position);
+        write(buffer, position);
+        position = 0;
+    }
+
+    private void write(byte[] bytes, int length) {
+        try {
+            out.write(bytes, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.dao.snapshot;
+
+/**
+ * Число строк каждой таблицы, выгруженных в снимок или загруженных из него.
+ */
+public record SnapshotStats(long users, long films, long filmGenres, long likes,
+                            long friendships, long friendRequests) {
+}
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.dao.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.OutputStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+
+/**
+ * Выгрузка базы в двоичный снимок ({@link SnapshotFormat}).
+ * Каждая таблица читается одним запросом через курсор и сразу пишется в поток, поэтому
+ * размер снимка не ограничен памятью. Все запросы выполняются в одной read-only транзакции
+ * с уровнем REPEATABLE READ: снимок согласован, даже если в это время ставят лайки.
+ */
+@Component
+@Slf4j
+public class SnapshotWriter {
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public SnapshotWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Пишет снимок в поток; поток не закрывается.
+     */
+    public SnapshotStats write(OutputStream out) {
+        long started = System.nanoTime();
+        SnapshotOutput output = new SnapshotOutput(out);
+        SnapshotStats stats = transactionTemplate.execute(status -> {
+            output.writeInt(SnapshotFormat.MAGIC);
+            output.writeShort(SnapshotFormat.VERSION);
+            long users = writeUsers(output);
+            long films = writeFilms(output);
+            long filmGenres = writePairs(output, SnapshotFormat.FILM_GENRE,
+                    "SELECT film_id, genre_id FROM film_genre ORDER BY film_id, genre_id");
+            long likes = writePairs(output, SnapshotFormat.LIKES,
+                    "SELECT film_id, user_id FROM likes ORDER BY film_id, user_id");
+            long friendships = writePairs(output, SnapshotFormat.FRIENDSHIP,
+                    "SELECT user_id, friend_id FROM friendship ORDER BY user_id, friend_id");
+            long friendRequests = writePairs(output, SnapshotFormat.FRIEND_REQUESTS,
+                    "SELECT requester_id, target_id FROM friend_requests ORDER BY requester_id, target_id");
+            output.writeByte(SnapshotFormat.END);
+            return new SnapshotStats(users, films, filmGenres, likes, friendships, friendRequests);
+        });
+        output.finish();
+        log.info("Снимок выгружен за {} мс: {}", (System.nanoTime() - started) / 1_000_000, stats);
+        return stats;
+    }
+
+    private long writeUsers(SnapshotOutput output) {
+        output.writeByte(SnapshotFormat.USERS);
+        long[] state = new long[2]; // предыдущий id, число строк
+        query("SELECT id, login, name, email, birthday FROM users ORDER BY id", rs -> {
+            long id = rs.getLong("id");
+            output.writeVarLong(id - state[0]);
+            output.writeString(rs.getString("login"));
+            output.writeString(rs.getString("name"));
+            output.writeString(rs.getString("email"));
+            output.writeDate(rs.getObject("birthday", LocalDate.class));
+            state[0] = id;
+            state[1]++;
+        });
+        output.writeVarLong(SnapshotFormat.END_OF_SECTION);
+        return state[1];
+    }
+
+    private long writeFilms(SnapshotOutput output) {
+        output.writeByte(SnapshotFormat.FILMS);
+        long[] state = new long[2];
+        query("SELECT id, name, description, release_date, duration, rating_id FROM films ORDER BY id", rs -> {
+            long id = rs.getLong("id");
+            output.writeVarLong(id - state[0]);
+            output.writeString(rs.getString("name"));
+            output.writeString(rs.getString("description"));
+            output.writeDate(rs.getObject("release_date", LocalDate.class));
+            output.writeVarLong(rs.getLong("duration"));
+            output.writeVarLong(rs.getInt("rating_id"));
+            state[0] = id;
+            state[1]++;
+        });
+        output.writeVarLong(SnapshotFormat.END_OF_SECTION);
+        return state[1];
+    }
+
+    private long writePairs(SnapshotOutput output, byte section, String sql) {
+        output.writeByte(section);
+        long[] state = new long[3]; // предыдущая пара, число строк
+        query(sql, rs -> {
+            long first = rs.getLong(1);
+            long second = rs.getLong(2);
+            output.writeVarLong(first - state[0] + 1);
+            output.writeVarLong(first == state[0] ? second - state[1] : second);
+            state[0] = first;
+            state[1] = second;
+            state[2]++;
+        });
+        output.writeVarLong(SnapshotFormat.END_OF_SECTION);
+        return state[2];
+    }
+
+    private void query(String sql, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement stmt = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(FETCH_SIZE);
+            return stmt;
+        }, handler);
+    }
+}
@@ -1,11 +1,15 @@
 package ru.yandex.practicum.filmorate.exceptions;
 
+import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.resource.NoResourceFoundException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -24,6 +28,16 @@ public class GlobalExceptionHandler {
         return error;
     }
 
+    @ExceptionHandler(ConstraintViolationException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleConstraintViolation(ConstraintViolationException e) {
+        log.warn("Невалидные параметры: {}", e.getMessage());
+        Map<String, String> error = new HashMap<>();
+        e.getConstraintViolations().forEach(violation ->
+                error.put(violation.getPropertyPath().toString(), violation.getMessage()));
+        return error;
+    }
+
     @ExceptionHandler(NotFoundException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public Map<String, String> handleNotFoundException(NotFoundException e) {
@@ -33,6 +47,28 @@ public class GlobalExceptionHandler {
         return error;
     }
 
+    /**
+     * Неизвестный путь, в том числе выключенный свойством эндпоинт (например, /snapshot).
+     */
+    @ExceptionHandler(NoResourceFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public Map<String, String> handleNoResource(NoResourceFoundException e) {
+        log.warn("Путь не найден: {}", e.getResourcePath());
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Путь /" + e.getResourcePath() + " не найден");
+        return error;
+    }
+
+    @ExceptionHandler({CannotGetJdbcConnectionException.class, CannotCreateTransactionException.class,
+            ServiceOverloadedException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, String> handleNoConnection(Exception e) {
+        log.warn("Сервис перегружен: {}", e.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Сервис перегружен, повторите запрос позже");
+        return error;
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Map<String, String> handleAllOtherExceptions(Exception e) {
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Supplier;
+
+/**
+ * Источник данных, который замеряет каждый выполненный запрос и передаёт результат в {@link SqlMetrics}.
+ * Соединения, запросы и наборы результатов оборачиваются динамическими прокси:
+ * время фиксируется на вызове execute*, число строк — по обновлённым строкам
+ * или по прочитанным строкам к моменту закрытия ResultSet.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+    private final Supplier<SqlMetrics> metrics;
+
+    public InstrumentedDataSource(DataSource target, Supplier<SqlMetrics> metrics) {
+        super(target);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return (Connection) proxy(Connection.class, connection, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            String name = method.getName();
+            if (name.startsWith("prepare")) {
+                return wrapStatement((Statement) result, (String) args[0]);
+            }
+            if (name.equals("createStatement")) {
+                return wrapStatement((Statement) result, null);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * @param preparedSql текст подготовленного запроса или null для простого Statement,
+     *                    у которого SQL передаётся в сам вызов execute*
+     */
+    private Statement wrapStatement(Statement statement, String preparedSql) {
+        return (Statement) proxy(statementInterface(statement), statement, (target, method, args) -> {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                return invoke(target, method, args);
+            }
+            String sql = preparedSql != null || args == null || args.length == 0
+                    ? preparedSql : (String) args[0];
+            String fingerprint = sql == null ? "?" : SqlMetrics.fingerprint(sql);
+
+            long start = System.nanoTime();
+            Object result = invoke(target, method, args);
+            SqlMetrics sqlMetrics = metrics.get();
+            sqlMetrics.recordExecution(fingerprint, System.nanoTime() - start);
+
+            if (result instanceof ResultSet resultSet) {
+                return wrapResultSet(resultSet, fingerprint, sqlMetrics);
+            }
+            if (result instanceof Integer rows) {
+                sqlMetrics.recordRows(fingerprint, rows);
+            } else if (result instanceof Long rows) {
+                sqlMetrics.recordRows(fingerprint, rows);
+            } else if (result instanceof int[] batch) {
+                long rows = 0;
+                for (int count : batch) {
+                    rows += Math.max(count, 0);
+                }
+                sqlMetrics.recordRows(fingerprint, rows);
+            }
+            return result;
+        });
+    }
+
+    private ResultSet wrapResultSet(ResultSet resultSet, String fingerprint, SqlMetrics sqlMetrics) {
+        long[] rows = new long[1];
+        boolean[] closed = new boolean[1];
+        return (ResultSet) proxy(ResultSet.class, resultSet, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                rows[0]++;
+            } else if (method.getName().equals("close") && !closed[0]) {
+                closed[0] = true;
+                sqlMetrics.recordRows(fingerprint, rows[0]);
+            }
+            return result;
+        });
+    }
+
+    private static Class<? extends Statement> statementInterface(Statement statement) {
+        if (statement instanceof CallableStatement) {
+            return CallableStatement.class;
+        }
+        if (statement instanceof PreparedStatement) {
+            return PreparedStatement.class;
+        }
+        return Statement.class;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object proxy(Class<?> type, Object target, TargetHandler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> handler.invoke(target, method, args);
+        return Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                new Class<?>[]{type}, invocationHandler);
+    }
+
+    @FunctionalInterface
+    private interface TargetHandler {
+        Object invoke(Object target, Method method, Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Метрики SQL-запросов: время и число строк по каждому отпечатку запроса,
+ * а также количество запросов на один HTTP-запрос с предупреждением о превышении бюджета.
+ */
+@Component
+@Slf4j
+public class SqlMetrics {
+    static final String STATEMENT_TIMER = "filmorate.sql.statement";
+    static final String STATEMENT_ROWS = "filmorate.sql.rows";
+    static final String REQUEST_STATEMENTS = "filmorate.sql.request.statements";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+
+    private final ThreadLocal<Map<String, Integer>> currentRequest = new ThreadLocal<>();
+    private final MeterRegistry registry;
+    private final int statementBudget;
+
+    public SqlMetrics(MeterRegistry registry,
+                      @Value("${filmorate.sql.statement-budget:10}") int statementBudget) {
+        this.registry = registry;
+        this.statementBudget = statementBudget;
+    }
+
+    /**
+     * Приводит SQL к отпечатку: схлопывает пробелы и списки параметров IN (?, ?, ...),
+     * чтобы запросы, отличающиеся только числом параметров, попадали в одну метрику.
+     */
+    public static String fingerprint(String sql) {
+        String normalized = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        return PLACEHOLDER_LIST.matcher(normalized).replaceAll("(?, ...)");
+    }
+
+    public void recordExecution(String fingerprint, long nanos) {
+        Timer.builder(STATEMENT_TIMER)
+                .tag("sql", fingerprint)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        Map<String, Integer> statements = currentRequest.get();
+        if (statements != null) {
+            statements.merge(fingerprint, 1, Integer::sum);
+        }
+    }
+
+    public void recordRows(String fingerprint, long rows) {
+        DistributionSummary.builder(STATEMENT_ROWS)
+                .tag("sql", fingerprint)
+                .register(registry)
+                .record(rows);
+    }
+
+    /**
+     * Начинает подсчёт запросов, выполняемых текущим потоком в рамках HTTP-запроса.
+     */
+    public void beginRequest() {
+        currentRequest.set(new LinkedHashMap<>());
+    }
+
+    /**
+     * Завершает подсчёт без записи метрики, например когда обработка ушла в асинхронный поток.
+     */
+    public void abandonRequest() {
+        currentRequest.remove();
+    }
+
+    /**
+     * Завершает подсчёт и записывает количество запросов для эндпоинта.
+     * Возвращает это количество.
+     */
+    public int endRequest(String method, String uri) {
+        Map<String, Integer> statements = currentRequest.get();
+        if (statements == null) {
+            return 0;
+        }
+        currentRequest.remove();
+        int total = statements.values().stream().mapToInt(Integer::intValue).sum();
+        DistributionSummary.builder(REQUEST_STATEMENTS)
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(registry)
+                .record(total);
+        if (total > statementBudget) {
+            StringBuilder details = new StringBuilder();
+            statements.forEach((sql, count) -> details.append("\n  ").append(count).append(" × ").append(sql));
+            log.warn("{} {} выполнил {} SQL-запросов при бюджете {}:{}",
+                    method, uri, total, statementBudget, details);
+        }
+        return total;
+    }
+}
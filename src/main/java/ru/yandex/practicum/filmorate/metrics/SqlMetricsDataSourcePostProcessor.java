@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Оборачивает все источники данных в {@link InstrumentedDataSource}.
+ * {@link SqlMetrics} берётся лениво, чтобы не тянуть реестр метрик на этапе создания постпроцессоров.
+ * Срабатывает первым из обёрток, поэтому лежит ближе всех к пулу: ожидание соединения
+ * в ConnectionLimitingDataSource и выбор базы в маршрутизации в замеры не попадают.
+ */
+@Component
+public class SqlMetricsDataSourcePostProcessor implements BeanPostProcessor, Ordered {
+    private final ObjectProvider<SqlMetrics> metrics;
+
+    public SqlMetricsDataSourcePostProcessor(ObjectProvider<SqlMetrics> metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof InstrumentedDataSource)) {
+            return new InstrumentedDataSource(dataSource, metrics::getObject);
+        }
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
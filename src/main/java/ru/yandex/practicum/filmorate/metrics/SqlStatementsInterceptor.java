@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Считает SQL-запросы, выполненные потоком обработки HTTP-запроса, и записывает их число
+ * с тегами метода и шаблона пути. Запросы потоковых ответов, которые пишутся уже
+ * в асинхронном потоке, в подсчёт не попадают.
+ */
+@Component
+@RequiredArgsConstructor
+public class SqlStatementsInterceptor implements AsyncHandlerInterceptor {
+    private final SqlMetrics sqlMetrics;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.REQUEST) {
+            sqlMetrics.beginRequest();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        sqlMetrics.abandonRequest();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        sqlMetrics.endRequest(request.getMethod(), pattern != null ? pattern.toString() : "UNKNOWN");
+    }
+}
@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.time.Instant;
+
+/**
+ * Запись журнала лайков: пользователь поставил (liked) или снял лайк фильму в момент createdAt.
+ */
+public record LikeEvent(long id, long filmId, long userId, boolean liked, Instant createdAt) {
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Событие потока популярных фильмов: новый порядок топа (если он изменился)
+ * и текущее число лайков у фильмов, у которых оно изменилось.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PopularityUpdate(List<Long> top, Map<Long, Long> likes) {
+}
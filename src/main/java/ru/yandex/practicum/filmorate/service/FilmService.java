@@ -1,31 +1,64 @@
 package ru.yandex.practicum.filmorate.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ServiceOverloadedException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 @Service
 public class FilmService {
     private static final Logger log = LoggerFactory.getLogger(FilmService.class);
+    private static final int MAX_IMPORT_SIZE = 100_000;
+    private static final int MAX_RECOMMENDATIONS = 100;
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
+    private final EntityVersions entityVersions;
+    private final PopularityFeed popularityFeed;
+    private final SingleFlight<String, Film> filmLoads;
+    private final SingleFlight<TopKey, List<Film>> topLoads;
+    private final Semaphore filmStreams;
+
+    /**
+     * Ключ одновременных загрузок топа. Версия фильмов в ключе не даёт запросу, пришедшему
+     * после записи, присоединиться к загрузке, начатой до неё.
+     */
+    private record TopKey(int count, Integer genreId, Integer year, long filmsVersion) {
+    }
 
     @Autowired
     public FilmService(
-            @Qualifier("filmDbStorage") FilmStorage filmStorage,  // Явное указание
-            @Qualifier("userDbStorage") UserStorage userStorage) {
+            FilmStorage filmStorage,  // реализация выбирается свойством filmorate.storage
+            UserStorage userStorage,
+            EntityVersions entityVersions,
+            PopularityFeed popularityFeed,
+            MeterRegistry registry,
+            @Value("${filmorate.single-flight.enabled:true}") boolean singleFlightEnabled,
+            @Value("${filmorate.single-flight.max-wait:2s}") Duration singleFlightMaxWait,
+            @Value("${filmorate.films.stream.max-concurrent:4}") int maxFilmStreams) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
+        this.entityVersions = entityVersions;
+        this.popularityFeed = popularityFeed;
+        this.filmLoads = new SingleFlight<>("film", singleFlightEnabled, singleFlightMaxWait, registry);
+        this.topLoads = new SingleFlight<>("popular", singleFlightEnabled, singleFlightMaxWait, registry);
+        this.filmStreams = new Semaphore(maxFilmStreams);
     }
 
 
@@ -34,10 +67,41 @@ public class FilmService {
         return (List<Film>) filmStorage.findAll();
     }
 
+    public List<Film> findPage(Long afterId, int limit) {
+        log.debug("Запрос страницы фильмов после id {}, размер: {}", afterId, limit);
+        KeysetPages.checkLimit(limit);
+        return filmStorage.findPage(afterId, limit);
+    }
+
+    /**
+     * Выгрузка держит соединение с базой (курсор в транзакции), пока клиент не дочитает ответ,
+     * поэтому число одновременных выгрузок ограничено: медленные клиенты не должны занять весь пул.
+     * Место занимается сразу, до начала ответа, чтобы отказ дошёл до клиента кодом 503;
+     * возвращённая выгрузка освобождает его, когда закончится. Если выгрузка так и не запустится
+     * (клиент отключился, истёк таймаут запроса), место нужно освободить через {@link FilmStream#release()}.
+     */
+    public FilmStream openFilmStream(Long afterId) {
+        if (!filmStreams.tryAcquire()) {
+            throw new ServiceOverloadedException("Слишком много одновременных выгрузок фильмов");
+        }
+        return new FilmStream(afterId);
+    }
+
+    /**
+     * Одновременные запросы одного фильма разделяют одну загрузку из базы. Ключ — ETag фильма,
+     * поэтому после изменения фильма начинается новая загрузка.
+     */
     public Film findById(Long id) {
         log.debug("Запрос на получение фильма с id: {}", id);
-        return filmStorage.findById(id)
-                .orElseThrow(() -> new NotFoundException("Фильм с ID " + id + " не найден"));
+        return filmLoads.load(entityVersions.filmETag(id), () -> filmStorage.findById(id)
+                .orElseThrow(() -> new NotFoundException("Фильм с ID " + id + " не найден")));
+    }
+
+    /**
+     * ETag фильма. Берётся до загрузки фильма, чтобы при совпадении не ходить в базу.
+     */
+    public String getETag(Long id) {
+        return entityVersions.filmETag(id);
     }
 
     public Film create(Film film) {
@@ -46,46 +110,123 @@ public class FilmService {
         return filmStorage.create(film);
     }
 
+    public List<Long> createAll(List<Film> films) {
+        if (films.size() > MAX_IMPORT_SIZE) {
+            throw new ValidationException("За один запрос можно загрузить не больше " + MAX_IMPORT_SIZE + " фильмов");
+        }
+        films.forEach(this::validateFilm);
+        log.debug("Запрос на массовое создание фильмов: {}", films.size());
+
+        long started = System.nanoTime();
+        List<Long> ids = films.isEmpty() ? List.of() : filmStorage.createAll(films);
+        long elapsedNanos = Math.max(System.nanoTime() - started, 1);
+        log.info("Импортировано фильмов: {} за {} мс ({} фильмов/с)", ids.size(),
+                elapsedNanos / 1_000_000, Math.round(ids.size() * 1e9 / elapsedNanos));
+        return ids;
+    }
+
     public Film update(Film film) {
         validateFilm(film);
         log.debug("Запрос на обновление фильма: {}", film);
-
-        // Проверяем существование фильма
-        Film existing = filmStorage.findById(film.getId())
-                .orElseThrow(() -> new NotFoundException("Фильм с ID " + film.getId() + " не найден"));
-
+        // существование проверяет сам UPDATE по числу изменённых строк
         return filmStorage.update(film);
     }
 
     public void addLike(Long filmId, Long userId) {
         log.debug("Пользователь {} ставит лайк фильму {}", userId, filmId);
-
-        // Проверка существования фильма и пользователя
-        filmStorage.findById(filmId)
-                .orElseThrow(() -> new NotFoundException("Фильм с ID " + filmId + " не найден"));
-        userStorage.findById(userId)
-                .orElseThrow(() -> new NotFoundException("Пользователь с ID " + userId + " не найден"));
-
+        // существование фильма и пользователя проверяет хранилище: внешние ключи likes или один запрос-проба
         filmStorage.addLike(filmId, userId);
+        popularityFeed.likesChanged(filmId);
         log.debug("Пользователь {} поставил лайк фильму {}", userId, filmId);
     }
 
     public void removeLike(Long filmId, Long userId) {
         log.debug("Пользователь {} удаляет лайк с фильма {}", userId, filmId);
-
-        // Проверка существования фильма и пользователя
-        filmStorage.findById(filmId)
-                .orElseThrow(() -> new NotFoundException("Фильм с ID " + filmId + " не найден"));
-        userStorage.findById(userId)
-                .orElseThrow(() -> new NotFoundException("Пользователь с ID " + userId + " не найден"));
-
         filmStorage.removeLike(filmId, userId);
+        popularityFeed.likesChanged(filmId);
         log.debug("Пользователь {} удалил лайк с фильма {}", userId, filmId);
     }
 
-    public List<Film> getTopFilms(int count) {
-        log.debug("Запрос на получение ТОП фильмов. Количество: {}", count);
-        return filmStorage.getTopFilms(count);
+    public List<Film> getTopFilms(int count, Integer genreId, Integer year) {
+        log.debug("Запрос на получение ТОП фильмов. Количество: {}, жанр: {}, год: {}", count, genreId, year);
+        TopKey key = new TopKey(count, genreId, year, entityVersions.filmsVersion());
+        return topLoads.load(key, () -> filmStorage.getTopFilms(count, genreId, year));
+    }
+
+    /**
+     * Подписка на изменения топа и счётчиков лайков (SSE).
+     */
+    public SseEmitter streamPopular() {
+        log.debug("Подписка на поток популярных фильмов");
+        return popularityFeed.subscribe();
+    }
+
+    public List<Film> getSimilarFilms(Long filmId, int count) {
+        log.debug("Запрос похожих фильмов для фильма {}, количество: {}", filmId, count);
+        checkRecommendationCount(count);
+        if (!filmStorage.exists(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+        return filmStorage.getSimilarFilms(filmId, count);
+    }
+
+    public List<Film> getRecommendations(Long userId, int count) {
+        log.debug("Запрос рекомендаций фильмов для пользователя {}, количество: {}", userId, count);
+        checkRecommendationCount(count);
+        if (!userStorage.exists(userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
+        return filmStorage.getRecommendations(userId, count);
+    }
+
+    public List<Film> searchFilms(String query, int offset, int limit) {
+        log.debug("Поиск фильмов по запросу '{}', смещение: {}, размер: {}", query, offset, limit);
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не может быть пустым");
+        }
+        if (offset < 0) {
+            throw new ValidationException("Смещение не может быть отрицательным");
+        }
+        KeysetPages.checkLimit(limit);
+        return filmStorage.searchFilms(query, offset, limit);
+    }
+
+    /**
+     * Выгрузка фильмов с занятым местом. Место освобождается ровно один раз: по окончании выгрузки
+     * или раньше, вызовом {@link #release()}; после освобождения выгрузка уже не запускается.
+     */
+    public final class FilmStream implements Consumer<Consumer<Film>> {
+        private final Long afterId;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private FilmStream(Long afterId) {
+            this.afterId = afterId;
+        }
+
+        @Override
+        public void accept(Consumer<Film> consumer) {
+            if (released.get()) {
+                throw new IllegalStateException("Выгрузка фильмов уже закрыта");
+            }
+            log.debug("Потоковая выгрузка фильмов после id {}", afterId);
+            try {
+                filmStorage.streamAll(afterId, consumer);
+            } finally {
+                release();
+            }
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                filmStreams.release();
+            }
+        }
+    }
+
+    private void checkRecommendationCount(int count) {
+        if (count <= 0 || count > MAX_RECOMMENDATIONS) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_RECOMMENDATIONS);
+        }
     }
 
 
@@ -1,9 +1,9 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dao.dbStorages.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.dao.dto.GenreDto;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 
@@ -12,18 +12,23 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class GenreService {
-    private final GenreDbStorage genreStorage;
+    private final ReferenceDataCache referenceDataCache;
+    private final EntityVersions entityVersions;
 
     public List<GenreDto> getAllGenres() {
-        return genreStorage.findAll();
+        return referenceDataCache.getGenres();
     }
 
-    public GenreDto getGenreById(long id) {
-        try {
-            return genreStorage.findById(id)
-                    .orElseThrow(() -> new NotFoundException("Жанр с ID " + id + " не найден"));
-        } catch (EmptyResultDataAccessException e) {
-            throw new NotFoundException("Жанр с ID " + id + " не найден");
-        }
+    public GenreDto getGenreById(int id) {
+        return referenceDataCache.findGenre(id)
+                .orElseThrow(() -> new NotFoundException("Жанр с ID " + id + " не найден"));
+    }
+
+    public String getETag() {
+        return entityVersions.referenceDataETag("genres");
+    }
+
+    public String getETag(long id) {
+        return entityVersions.referenceDataETag("genre-" + id);
     }
 }
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Постраничное чтение по ключу (keyset): следующая страница начинается после id
+ * последнего элемента предыдущей, без OFFSET и без загрузки всей таблицы.
+ */
+public final class KeysetPages {
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int STREAM_CHUNK_SIZE = 500;
+
+    private KeysetPages() {
+    }
+
+    public static void checkLimit(int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Последовательно отдаёт все элементы после afterId порциями по {@link #STREAM_CHUNK_SIZE}.
+     */
+    public static <T> void forEachChunk(Long afterId,
+                                        BiFunction<Long, Integer, List<T>> pageLoader,
+                                        Function<T, Long> idExtractor,
+                                        Consumer<List<T>> consumer) {
+        Long cursor = afterId;
+        while (true) {
+            List<T> chunk = pageLoader.apply(cursor, STREAM_CHUNK_SIZE);
+            if (chunk.isEmpty()) {
+                return;
+            }
+            consumer.accept(chunk);
+            if (chunk.size() < STREAM_CHUNK_SIZE) {
+                return;
+            }
+            cursor = idExtractor.apply(chunk.get(chunk.size() - 1));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dao.likes.LikeEventLog;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Чтение журнала лайков: события за промежуток времени и пересчёт лайков по ним.
+ * При выключенном журнале новые лайки в него не пишутся и ответ был бы неполным, поэтому чтение отклоняется.
+ */
+@Service
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class LikeEventService {
+    private static final int MAX_EVENTS_PAGE = 10_000;
+
+    private final LikeEventLog likeEventLog;
+
+    public List<LikeEvent> findEvents(Instant from, Instant to, Long afterId, int limit) {
+        log.debug("Запрос событий журнала лайков с {} по {} после id {}, размер: {}", from, to, afterId, limit);
+        requireEnabled();
+        validateRange(from, to);
+        if (limit < 1 || limit > MAX_EVENTS_PAGE) {
+            throw new ValidationException("Размер страницы событий должен быть от 1 до " + MAX_EVENTS_PAGE);
+        }
+        return likeEventLog.findEvents(from, to, afterId == null ? 0 : afterId, limit);
+    }
+
+    public Map<Long, Long> replayCounts(Instant from, Instant to) {
+        log.debug("Пересчёт лайков по журналу с {} по {}", from, to);
+        requireEnabled();
+        validateRange(from, to);
+        return likeEventLog.replayCounts(from, to);
+    }
+
+    private void requireEnabled() {
+        if (!likeEventLog.isEnabled()) {
+            throw new NotFoundException("Журнал лайков выключен (filmorate.likes.event-log.enabled=false)");
+        }
+    }
+
+    private static void validateRange(Instant from, Instant to) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new ValidationException("Начало промежутка должно быть раньше его конца");
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dao.dbStorages.MpaDbStorage;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.dao.dto.MpaDto;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 
@@ -12,18 +12,23 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class MpaService {
-    private final MpaDbStorage mpaStorage;
+    private final ReferenceDataCache referenceDataCache;
+    private final EntityVersions entityVersions;
 
     public List<MpaDto> getAllMpa() {
-        return mpaStorage.findAll();
+        return referenceDataCache.getMpaRatings();
     }
 
-    public MpaDto getMpaById(long id) {
-        try {
-            return mpaStorage.findById(id)
-                    .orElseThrow(() -> new NotFoundException("MPA с ID " + id + " не найден"));
-        } catch (EmptyResultDataAccessException e) {
-            throw new NotFoundException("MPA с ID " + id + " не найден");
-        }
+    public MpaDto getMpaById(int id) {
+        return referenceDataCache.findMpa(id)
+                .orElseThrow(() -> new NotFoundException("MPA с ID " + id + " не найден"));
+    }
+
+    public String getETag() {
+        return entityVersions.referenceDataETag("mpa");
+    }
+
+    public String getETag(long id) {
+        return entityVersions.referenceDataETag("mpa-" + id);
     }
 }
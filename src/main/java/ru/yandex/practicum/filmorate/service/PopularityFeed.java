@@ -0,0 +1,251 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.PopularityUpdate;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Поток изменений популярности по SSE (GET /films/popular/stream).
+ * Лайки только отмечают фильм как изменившийся; раз в окно один поток сравнивает топ и счётчики
+ * с отправленными ранее, сериализует разницу один раз и раздаёт её всем подписчикам.
+ * Подписчик сначала получает событие snapshot (топ и счётчики его фильмов), затем события diff.
+ * У каждого подписчика в очереди не больше одного события: если он не успел забрать предыдущее,
+ * оно заменяется на snapshot с последним состоянием, так что медленный клиент теряет промежуточные
+ * изменения, но не копит их в памяти.
+ */
+@Service
+@Slf4j
+public class PopularityFeed {
+    private static final String SNAPSHOT = "snapshot";
+    private static final String DIFF = "diff";
+
+    private final FilmStorage filmStorage;
+    private final ObjectMapper objectMapper;
+    private final int topSize;
+    private final Duration window;
+    private final Duration subscriberTimeout;
+
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Object tickLock = new Object();
+    private List<Long> lastTop = List.of();
+    private final Map<Long, Long> lastCounts = new HashMap<>();
+    private long sequence;
+    private ScheduledExecutorService ticker;
+
+    public PopularityFeed(FilmStorage filmStorage,
+                          ObjectMapper objectMapper,
+                          @Value("${filmorate.popular-stream.top-size:10}") int topSize,
+                          @Value("${filmorate.popular-stream.window:1s}") Duration window,
+                          @Value("${filmorate.popular-stream.timeout:30m}") Duration subscriberTimeout) {
+        this.filmStorage = filmStorage;
+        this.objectMapper = objectMapper;
+        this.topSize = topSize;
+        this.window = window;
+        this.subscriberTimeout = subscriberTimeout;
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "popular-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tickQuietly, window.toMillis(), window.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    /**
+     * Отмечает, что у фильма изменилось число лайков. Само событие уйдёт в ближайшем окне.
+     */
+    public void likesChanged(long filmId) {
+        changed.add(filmId);
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(subscriberTimeout.toMillis()));
+    }
+
+    public SseEmitter subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        synchronized (tickLock) {
+            boolean first = subscribers.isEmpty();
+            subscribers.add(subscriber);
+            subscriber.offer(snapshot(first));
+        }
+        log.debug("Новый подписчик потока популярных фильмов, всего {}", subscribers.size());
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Одно окно: собирает изменения с прошлого окна и рассылает их разницу всем подписчикам.
+     */
+    public void tick() {
+        synchronized (tickLock) {
+            Set<Long> filmIds = new LinkedHashSet<>();
+            for (Long filmId : changed) {
+                changed.remove(filmId);
+                filmIds.add(filmId);
+            }
+            if (subscribers.isEmpty()) {
+                // без подписчиков сравнивать не с чем: следующий получит snapshot
+                lastTop = List.of();
+                lastCounts.clear();
+                return;
+            }
+            List<Long> top = filmStorage.getTopFilmIds(topSize);
+            Map<Long, Long> likes = new HashMap<>();
+            filmStorage.getLikeCounts(filmIds).forEach((filmId, count) -> {
+                if (!count.equals(lastCounts.put(filmId, count))) {
+                    likes.put(filmId, count);
+                }
+            });
+            boolean topChanged = !top.equals(lastTop);
+            if (!topChanged && likes.isEmpty()) {
+                return;
+            }
+            lastTop = top;
+            Event diff = event(DIFF, new PopularityUpdate(topChanged ? top : null, likes.isEmpty() ? null : likes));
+            Event[] snapshot = new Event[1];
+            subscribers.forEach(subscriber -> subscriber.offer(diff, () -> {
+                if (snapshot[0] == null) {
+                    snapshot[0] = snapshot(false);
+                }
+                return snapshot[0];
+            }));
+        }
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось разослать изменения популярности: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Полное текущее состояние: топ и счётчики его фильмов. Вызывается под tickLock.
+     * Для первого подписчика снимок становится точкой отсчёта разницы. Иначе отправленное
+     * остальным не трогается: лайк мог уже попасть в счётчик, но ещё не отметиться как изменение,
+     * и тогда остальные не получили бы его в ближайшем окне.
+     */
+    private Event snapshot(boolean baseline) {
+        List<Long> top = filmStorage.getTopFilmIds(topSize);
+        Map<Long, Long> likes = filmStorage.getLikeCounts(top);
+        if (baseline) {
+            lastTop = top;
+            lastCounts.putAll(likes);
+        }
+        return event(SNAPSHOT, new PopularityUpdate(top, likes));
+    }
+
+    private Event event(String name, PopularityUpdate update) {
+        try {
+            return new Event(++sequence, name, objectMapper.writeValueAsString(update));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Event(long id, String name, String json) {
+    }
+
+    /**
+     * Подписчик с очередью из одного события и отправкой в отдельном виртуальном потоке,
+     * чтобы медленный клиент не задерживал рассылку остальным.
+     */
+    private class Subscriber {
+        private final SseEmitter emitter;
+        private final AtomicReference<Event> pending = new AtomicReference<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Event event) {
+            pending.set(event);
+            scheduleSend();
+        }
+
+        /**
+         * Ставит diff в очередь; если предыдущее событие ещё не отправлено, вместо них обоих
+         * в очередь встаёт snapshot.
+         */
+        void offer(Event diff, Supplier<Event> snapshot) {
+            if (pending.compareAndSet(null, diff)) {
+                scheduleSend();
+                return;
+            }
+            pending.set(snapshot.get());
+            scheduleSend();
+        }
+
+        private void scheduleSend() {
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                Event event;
+                while ((event = pending.getAndSet(null)) != null) {
+                    try {
+                        emitter.send(SseEmitter.event()
+                                .id(Long.toString(event.id()))
+                                .name(event.name())
+                                .data(event.json()));
+                    } catch (IOException | IllegalStateException e) {
+                        subscribers.remove(this);
+                        emitter.completeWithError(e);
+                        return;
+                    }
+                }
+                sending.set(false);
+            } while (pending.get() != null && sending.compareAndSet(false, true));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.yandex.practicum.filmorate.exceptions.ServiceOverloadedException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одновременных загрузок по одному ключу: первый вызов загружает значение сам,
+ * а вызовы, пришедшие, пока загрузка идёт, ждут её результата, не обращаясь к базе.
+ * Ошибка загрузки достаётся всем ожидающим, но не запоминается: следующий вызов загрузит заново.
+ * Ожидание ограничено maxWait, после чего бросается {@link ServiceOverloadedException}.
+ * Результат общий для всех ожидающих, поэтому изменять его нельзя.
+ * Число присоединившихся вызовов считает счётчик filmorate.single-flight.joined с тегом name.
+ */
+public class SingleFlight<K, V> {
+    public static final String JOINED_COUNTER = "filmorate.single-flight.joined";
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final Duration maxWait;
+    private final Counter joined;
+
+    public SingleFlight(String name, boolean enabled, Duration maxWait, MeterRegistry registry) {
+        this.enabled = enabled;
+        this.maxWait = maxWait;
+        this.joined = Counter.builder(JOINED_COUNTER).tag("name", name).register(registry);
+    }
+
+    public V load(K key, Supplier<V> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            joined.increment();
+            return await(running);
+        }
+        // ключ снимается до завершения: иначе вызовы, пришедшие после загрузки,
+        // получали бы готовый результат, как из кэша
+        V value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(key, own);
+        own.complete(value);
+        return value;
+    }
+
+    private V await(CompletableFuture<V> running) {
+        try {
+            return running.get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ServiceOverloadedException("Загрузка не завершилась за " + maxWait.toMillis() + " мс");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceOverloadedException("Ожидание загрузки прервано");
+        }
+    }
+}
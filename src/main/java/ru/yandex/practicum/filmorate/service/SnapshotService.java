@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.dao.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.dao.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.dao.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.dao.index.KnownIds;
+import ru.yandex.practicum.filmorate.dao.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.dao.likes.LikeEventLog;
+import ru.yandex.practicum.filmorate.dao.likes.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.dao.snapshot.SnapshotLoader;
+import ru.yandex.practicum.filmorate.dao.snapshot.SnapshotStats;
+import ru.yandex.practicum.filmorate.dao.snapshot.SnapshotWriter;
+
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Выгрузка и загрузка двоичных снимков базы.
+ * Если задан filmorate.snapshot.import-on-startup, снимок загружается после создания всех бинов,
+ * но до запуска веб-сервера, так что первый запрос уже видит загруженные данные.
+ * Снимок пишется из таблиц и загружается в таблицы, поэтому сервис есть только при хранилище в базе.
+ */
+@Service
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
+@Slf4j
+public class SnapshotService implements SmartInitializingSingleton {
+    private final SnapshotWriter snapshotWriter;
+    private final SnapshotLoader snapshotLoader;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final LikeEventLog likeEventLog;
+    private final PopularityLeaderboard leaderboard;
+    private final CoLikeIndex coLikeIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final FriendshipGraph friendshipGraph;
+    private final KnownIds knownIds;
+    private final ReferenceDataCache referenceDataCache;
+    private final EntityVersions entityVersions;
+    private final String importOnStartup;
+
+    public SnapshotService(SnapshotWriter snapshotWriter,
+                           SnapshotLoader snapshotLoader,
+                           LikeWriteBuffer likeWriteBuffer,
+                           LikeEventLog likeEventLog,
+                           PopularityLeaderboard leaderboard,
+                           CoLikeIndex coLikeIndex,
+                           FilmSearchIndex filmSearchIndex,
+                           FriendshipGraph friendshipGraph,
+                           KnownIds knownIds,
+                           ReferenceDataCache referenceDataCache,
+                           EntityVersions entityVersions,
+                           @Value("${filmorate.snapshot.import-on-startup:}") String importOnStartup) {
+        this.snapshotWriter = snapshotWriter;
+        this.snapshotLoader = snapshotLoader;
+        this.likeWriteBuffer = likeWriteBuffer;
+        this.likeEventLog = likeEventLog;
+        this.leaderboard = leaderboard;
+        this.coLikeIndex = coLikeIndex;
+        this.filmSearchIndex = filmSearchIndex;
+        this.friendshipGraph = friendshipGraph;
+        this.knownIds = knownIds;
+        this.referenceDataCache = referenceDataCache;
+        this.entityVersions = entityVersions;
+        this.importOnStartup = importOnStartup;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!importOnStartup.isBlank()) {
+            importSnapshot(Path.of(importOnStartup));
+        }
+    }
+
+    /**
+     * Пишет снимок в поток. Лайки из буфера отложенной записи и из журнала лайков сначала переносятся в likes.
+     */
+    public SnapshotStats exportSnapshot(OutputStream out) {
+        likeWriteBuffer.flush();
+        likeEventLog.compact();
+        return snapshotWriter.write(out);
+    }
+
+    /**
+     * Заменяет данные в базе содержимым снимка, начинает журнал лайков заново, отбрасывает буфер лайков,
+     * сбрасывает кэши и ETag и перестраивает индексы в памяти.
+     * Рассчитан на запуск до приёма запросов: лайки, принятые во время загрузки, могут потеряться.
+     */
+    public SnapshotStats importSnapshot(Path path) {
+        SnapshotStats stats = snapshotLoader.load(path);
+        likeWriteBuffer.reset();
+        likeEventLog.reset();
+        referenceDataCache.invalidate();
+        entityVersions.reset();
+        knownIds.rebuild();
+        leaderboard.rebuild();
+        coLikeIndex.rebuild();
+        filmSearchIndex.rebuild();
+        friendshipGraph.rebuild();
+        return stats;
+    }
+}
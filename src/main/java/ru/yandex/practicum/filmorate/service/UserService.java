@@ -3,25 +3,28 @@ package ru.yandex.practicum.filmorate.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Service
 public class UserService {
     private static final Logger log = LoggerFactory.getLogger(UserService.class);
+    private static final int MAX_SUGGESTIONS = 100;
     private final UserStorage userStorage;
+    private final EntityVersions entityVersions;
 
     @Autowired
-    public UserService(@Qualifier("userDbStorage") UserStorage userStorage) {
+    public UserService(UserStorage userStorage, EntityVersions entityVersions) {
         this.userStorage = userStorage;
+        this.entityVersions = entityVersions;
     }
 
     public List<User> findAll() {
@@ -29,12 +32,30 @@ public class UserService {
         return userStorage.findAll();
     }
 
+    public List<User> findPage(Long afterId, int limit) {
+        log.debug("Запрос страницы пользователей после id {}, размер: {}", afterId, limit);
+        KeysetPages.checkLimit(limit);
+        return userStorage.findPage(afterId, limit);
+    }
+
+    public void forEachChunk(Long afterId, Consumer<List<User>> consumer) {
+        log.debug("Потоковая выгрузка пользователей после id {}", afterId);
+        KeysetPages.forEachChunk(afterId, userStorage::findPage, User::getId, consumer);
+    }
+
     public User findById(Long id) {
         log.debug("Запрос на пользователя с id: {}", id);
         return userStorage.findById(id)
                 .orElseThrow(() -> new NotFoundException("Пользователь с id=" + id + " не найден"));
     }
 
+    /**
+     * ETag пользователя. Берётся до загрузки пользователя, чтобы при совпадении не ходить в базу.
+     */
+    public String getETag(Long id) {
+        return entityVersions.userETag(id);
+    }
+
     public User create(User user) {
         log.debug("Запрос на создание пользователя: {}", user);
         if (user.getName() == null || user.getName().isBlank()) {
@@ -45,18 +66,14 @@ public class UserService {
 
     public User update(User user) {
         log.debug("Запрос на обновление пользователя: {}", user);
-        // Проверка существования пользователя
-        findById(user.getId());
+        // существование проверяет сам UPDATE по числу изменённых строк
         return userStorage.update(user);
     }
 
     @Transactional
     public void addFriend(Long userId, Long friendId) {
         log.debug("Пользователь {} отправляет запрос на дружбу пользователю {}", userId, friendId);
-        // Проверка существования пользователей
-        User user = findById(userId);
-        User friend = findById(friendId);
-
+        // существование обоих пользователей хранилище проверяет одним запросом
         userStorage.addFriendRequest(userId, friendId);
         log.debug("Запрос на дружбу от {} к {} отправлен", userId, friendId);
     }
@@ -64,10 +81,6 @@ public class UserService {
     @Transactional
     public void confirmFriend(Long userId, Long friendId) {
         log.debug("Пользователь {} подтверждает заявку в друзья от {}", userId, friendId);
-        // Проверка существования пользователей
-        User user = findById(userId);
-        User friend = findById(friendId);
-
         userStorage.confirmFriendship(userId, friendId);
         log.debug("Пользователи {} и {} теперь друзья", userId, friendId);
     }
@@ -75,34 +88,25 @@ public class UserService {
     @Transactional
     public void removeFriend(Long userId, Long friendId) {
         log.debug("Пользователь {} удаляет друга {}", userId, friendId);
-        // Проверка существования пользователей
-        User user = findById(userId);
-        User friend = findById(friendId);
-
         userStorage.removeFriendship(userId, friendId);
         log.debug("Пользователи {} и {} больше не друзья", userId, friendId);
     }
 
     public List<User> getFriends(Long userId) {
         log.debug("Запрос на получение друзей пользователя с id: {}", userId);
-        User user = findById(userId);
-        Set<Long> friendIds = user.getFriends();
-        // единый пакетный запрос вместо цикла
-        return userStorage.findAllByIds(friendIds);
+        return userStorage.getFriends(userId);
     }
 
     public List<User> getCommonFriends(Long userId, Long otherId) {
         log.debug("Запрос на получение общих друзей между пользователями {} и {}", userId, otherId);
-        User user = findById(userId);
-        User otherUser = findById(otherId);
-
-        // пересечение множеств id-друзей
-        Set<Long> common = user.getFriends().stream()
-                .filter(otherUser.getFriends()::contains)
-                .collect(Collectors.toSet());
-
-        // и снова единый запрос за всеми общими друзьями
-        return userStorage.findAllByIds(common);
+        return userStorage.getCommonFriends(userId, otherId);
     }
 
-}
\ No newline at end of file
+    public List<User> getFriendSuggestions(Long userId, int count) {
+        log.debug("Запрос рекомендаций друзей для пользователя {}, количество: {}", userId, count);
+        if (count <= 0 || count > MAX_SUGGESTIONS) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_SUGGESTIONS);
+        }
+        return userStorage.getFriendSuggestions(userId, count);
+    }
+}
@@ -4,20 +4,46 @@ import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Film create(Film film);
 
     Film update(Film film);
 
+    List<Long> createAll(List<Film> films);
+
     Collection<Film> findAll();
 
     Optional<Film> findById(Long id);
 
+    boolean exists(Long id);
+
+    List<Film> findPage(Long afterId, int limit);
+
+    void streamAll(Long afterId, Consumer<Film> consumer);
+
     void addLike(Long filmId, Long userId);
 
     void removeLike(Long filmId, Long userId);
 
-    List<Film> getTopFilms(int count);
+    List<Film> getTopFilms(int count, Integer genreId, Integer year);
+
+    /**
+     * Id фильмов топа без загрузки самих фильмов.
+     */
+    List<Long> getTopFilmIds(int count);
+
+    /**
+     * Текущее число лайков каждого из фильмов, включая ещё не записанные в базу.
+     */
+    Map<Long, Long> getLikeCounts(Collection<Long> filmIds);
+
+    List<Film> getSimilarFilms(Long filmId, int count);
+
+    List<Film> getRecommendations(Long userId, int count);
+
+    List<Film> searchFilms(String query, int offset, int limit);
 }
\ No newline at end of file
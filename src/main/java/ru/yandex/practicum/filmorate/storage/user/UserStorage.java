@@ -15,11 +15,21 @@ public interface UserStorage {
 
     Optional<User> findById(Long id);
 
+    boolean exists(Long id);
+
+    List<User> findPage(Long afterId, int limit);
+
     void addFriendRequest(Long requesterId, Long targetId);
 
     void confirmFriendship(Long userId, Long friendId);
 
     void removeFriendship(Long userId, Long friendId);
 
+    List<User> getFriends(Long userId);
+
+    List<User> getCommonFriends(Long userId, Long otherId);
+
+    List<User> getFriendSuggestions(Long userId, int count);
+
     List<User> findAllByIds(Collection<Long> ids);
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+-- Удаление таблиц
+drop table IF EXISTS like_log_state CASCADE;
+drop table IF EXISTS like_events CASCADE;
+drop table IF EXISTS friend_requests CASCADE;
+drop table IF EXISTS friendship CASCADE;
+drop table IF EXISTS likes CASCADE;
+drop table IF EXISTS film_genre CASCADE;
+drop table IF EXISTS films CASCADE;
+drop table IF EXISTS genres CASCADE;
+drop table IF EXISTS ratings CASCADE;
+drop table IF EXISTS users CASCADE;
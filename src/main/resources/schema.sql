@@ -1,15 +1,7 @@
--- Удаление таблиц
-drop table IF EXISTS friend_requests CASCADE;
-drop table IF EXISTS friendship CASCADE;
-drop table IF EXISTS likes CASCADE;
-drop table IF EXISTS film_genre CASCADE;
-drop table IF EXISTS films CASCADE;
-drop table IF EXISTS genres CASCADE;
-drop table IF EXISTS ratings CASCADE;
-drop table IF EXISTS users CASCADE;
+-- Таблицы создаются, только если их ещё нет: удаление — в schema-drop.sql
 
 -- Создание таблицы пользователей
-create TABLE users (
+create TABLE IF NOT EXISTS users (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     login VARCHAR(50) NOT NULL UNIQUE CHECK (login <> ''),
     name VARCHAR(100),
@@ -19,13 +11,13 @@ create TABLE users (
 );
 
 -- Создание таблицы рейтингов MPA
-create TABLE ratings (
+create TABLE IF NOT EXISTS ratings (
     id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     name VARCHAR(10) UNIQUE NOT NULL
 );
 
 -- Создание таблицы фильмов
-create TABLE films (
+create TABLE IF NOT EXISTS films (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     name VARCHAR(255) NOT NULL CHECK (name <> ''),
     description VARCHAR(200),
@@ -35,27 +27,27 @@ create TABLE films (
 );
 
 -- Создание таблицы жанров
-create TABLE genres (
+create TABLE IF NOT EXISTS genres (
     id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     name VARCHAR(50) UNIQUE NOT NULL
 );
 
 -- Связь фильмов и жанров
-create TABLE film_genre (
+create TABLE IF NOT EXISTS film_genre (
     film_id BIGINT REFERENCES films(id) ON delete CASCADE,
     genre_id INT REFERENCES genres(id) ON delete CASCADE,
     PRIMARY KEY (film_id, genre_id)
 );
 
 -- Таблица лайков
-create TABLE likes (
+create TABLE IF NOT EXISTS likes (
     film_id BIGINT REFERENCES films(id) ON delete CASCADE,
     user_id BIGINT REFERENCES users(id) ON delete CASCADE,
     PRIMARY KEY (film_id, user_id)
 );
 
 -- Таблица дружбы
-create TABLE friendship (
+create TABLE IF NOT EXISTS friendship (
     user_id BIGINT REFERENCES users(id) ON delete CASCADE,
     friend_id BIGINT REFERENCES users(id) ON delete CASCADE,
     PRIMARY KEY (user_id, friend_id),
@@ -63,13 +55,29 @@ create TABLE friendship (
 );
 
 -- Таблица запросов в друзья
-create TABLE friend_requests (
+create TABLE IF NOT EXISTS friend_requests (
     requester_id BIGINT REFERENCES users(id) ON delete CASCADE,
     target_id BIGINT REFERENCES users(id) ON delete CASCADE,
     PRIMARY KEY (requester_id, target_id),
     CONSTRAINT no_self_request CHECK (requester_id <> target_id)
 );
 
+-- Журнал лайков: каждое добавление и отмена лайка со временем, id выдаются по порядку записи
+create TABLE IF NOT EXISTS like_events (
+    id BIGINT PRIMARY KEY,
+    film_id BIGINT NOT NULL REFERENCES films(id) ON delete CASCADE,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON delete CASCADE,
+    liked BOOLEAN NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+create INDEX IF NOT EXISTS like_events_created_at ON like_events (created_at);
+
+-- До какого события журнал лайков уже перенесён в likes
+create TABLE IF NOT EXISTS like_log_state (
+    id INT PRIMARY KEY,
+    compacted_id BIGINT NOT NULL
+);
+
 -- Вставка жанров
 merge into genres KEY(id) VALUES
 (1, 'Комедия'),
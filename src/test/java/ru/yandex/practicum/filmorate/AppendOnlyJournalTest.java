@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.dao.memory.AppendOnlyJournal;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppendOnlyJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testConcurrentAppendsShareFsync() throws Exception {
+        Path file = dir.resolve("test.journal");
+        int threads = 16;
+        int perThread = 200;
+        try (AppendOnlyJournal journal = AppendOnlyJournal.open(file, true, in -> {
+        })) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> tasks = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    tasks.add(executor.submit(() -> {
+                        for (int i = 0; i < perThread; i++) {
+                            long value = (long) thread * perThread + i;
+                            AppendOnlyJournal.await(journal.append(out -> out.writeLong(value)));
+                        }
+                    }));
+                }
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            assertThat(journal.records()).isEqualTo(threads * perThread);
+            // пока идёт fsync одной группы, записи других потоков копятся в следующую
+            assertThat(journal.commits()).isLessThan(journal.records());
+        }
+
+        List<Long> replayed = replay(file);
+        assertThat(replayed).hasSize(threads * perThread).doesNotHaveDuplicates();
+        // записи одного потока сохраняются в порядке вызовов
+        assertThat(replayed.stream().filter(value -> value < perThread).toList()).isSorted();
+    }
+
+    @Test
+    void testCorruptedRecordTruncatesTail() throws IOException {
+        Path file = dir.resolve("test.journal");
+        try (AppendOnlyJournal journal = AppendOnlyJournal.open(file, false, in -> {
+        })) {
+            CompletableFuture<Void> last = null;
+            for (long i = 1; i <= 3; i++) {
+                long value = i;
+                last = journal.append(out -> out.writeLong(value));
+            }
+            AppendOnlyJournal.await(last);
+        }
+        // портим данные второй записи: контрольная сумма не сходится, вторая и третья отбрасываются
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(16 + 8 + 7);
+            raf.write(0x7F);
+        }
+
+        assertThat(replay(file)).containsExactly(1L);
+        assertThat(Files.size(file)).isEqualTo(16);
+
+        try (AppendOnlyJournal journal = AppendOnlyJournal.open(file, false, in -> {
+        })) {
+            AppendOnlyJournal.await(journal.append(out -> out.writeLong(4)));
+        }
+        assertThat(replay(file)).containsExactly(1L, 4L);
+    }
+
+    private static List<Long> replay(Path file) throws IOException {
+        List<Long> values = new ArrayList<>();
+        AppendOnlyJournal.open(file, false, in -> values.add(in.readLong())).close();
+        return values;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.index.CoLikeIndex;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CoLikeIndexTest {
+    private final CoLikeIndex index = CoLikeIndex.inMemory(2, 1000);
+
+    @Test
+    void testNeighboursAreTrimmedToTopK() {
+        // фильм 1 лайкают вместе с 2 трижды, с 3 дважды, с 4 один раз
+        like(10, 1, 2, 3, 4);
+        like(11, 1, 2, 3);
+        like(12, 1, 2);
+
+        assertThat(index.similarTo(1, 10)).containsExactly(2, 3);
+        assertThat(index.similarTo(4, 10)).containsExactly(1, 2);
+    }
+
+    @Test
+    void testRepeatedAndMissingLikesAreIgnored() {
+        like(10, 1, 2);
+        index.addLike(2, 10);
+        index.removeLike(3, 10);
+
+        assertThat(index.similarTo(1, 10)).containsExactly(2);
+        index.removeLike(2, 10);
+        assertThat(index.similarTo(1, 10)).isEmpty();
+        assertThat(index.recommendFor(10, 10)).isEmpty();
+    }
+
+    @Test
+    void testRecommendationsSkipLikedFilms() {
+        like(10, 1, 2, 3);
+        like(11, 1, 3);
+        like(12, 1);
+
+        assertThat(index.recommendFor(12, 10)).containsExactly(3, 2);
+        assertThat(index.recommendFor(11, 10)).containsExactly(2);
+    }
+
+    @Test
+    void testIndexWithoutDatabaseIsNotRebuilt() {
+        like(10, 1, 2);
+
+        assertThatThrownBy(index::rebuild).isInstanceOf(IllegalStateException.class);
+        assertThat(index.similarTo(1, 10)).containsExactly(2);
+    }
+
+    private void like(long userId, long... filmIds) {
+        for (long filmId : filmIds) {
+            index.addLike(filmId, userId);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.pool.ConnectionLimitingDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionLimitingDataSourceTest {
+    private ConnectionLimitingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:limit-test;DB_CLOSE_DELAY=-1");
+        dataSource = new ConnectionLimitingDataSource(h2, 2, Duration.ofMillis(100));
+    }
+
+    @Test
+    void testRejectsOverLimitAfterTimeout() throws Exception {
+        try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+            assertThat(dataSource.getAvailablePermits()).isZero();
+            assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        }
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void testDoubleCloseReleasesOnce() throws Exception {
+        Connection connection = dataSource.getConnection();
+        connection.close();
+        connection.close();
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void testThousandsOfVirtualThreadsShareTheLimit() throws Exception {
+        dataSource = new ConnectionLimitingDataSource(dataSource.getTargetDataSource(), 2, Duration.ofSeconds(30));
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletableFuture<?>[] tasks = new CompletableFuture<?>[2_000];
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = CompletableFuture.runAsync(() -> {
+                    try (Connection connection = dataSource.getConnection()) {
+                        connection.createStatement().execute("SELECT 1");
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, executor);
+            }
+            CompletableFuture.allOf(tasks).get(30, TimeUnit.SECONDS);
+        }
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(2);
+    }
+}
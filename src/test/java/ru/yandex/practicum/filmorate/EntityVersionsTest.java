@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.transaction.TestTransaction;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.dao.dbStorages.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.dbStorages.MpaDbStorage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({EntityVersions.class, ReferenceDataCache.class, GenreDbStorage.class, MpaDbStorage.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class EntityVersionsTest {
+    private final EntityVersions entityVersions;
+    private final ReferenceDataCache referenceDataCache;
+
+    @Test
+    void testETagChangesOnlyAfterCommit() {
+        String before = entityVersions.filmETag(1L);
+        long filmsBefore = entityVersions.filmsVersion();
+        assertThat(before).startsWith("\"").endsWith("\"").isEqualTo(entityVersions.filmETag(1L));
+        assertThat(before).isNotEqualTo(entityVersions.filmETag(2L)).isNotEqualTo(entityVersions.userETag(1L));
+
+        // до коммита читатели ещё видят старые данные, поэтому и ETag прежний
+        entityVersions.filmChanged(1L);
+        assertThat(entityVersions.filmETag(1L)).isEqualTo(before);
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        assertThat(entityVersions.filmETag(1L)).isNotEqualTo(before);
+        assertThat(entityVersions.filmsVersion()).isGreaterThan(filmsBefore);
+        assertThat(entityVersions.filmETag(2L)).isEqualTo(entityVersions.filmETag(2L));
+    }
+
+    @Test
+    void testETagUnchangedAfterRollback() {
+        String before = entityVersions.userETag(7L);
+        entityVersions.userChanged(7L);
+        TestTransaction.end();
+        assertThat(entityVersions.userETag(7L)).isEqualTo(before);
+    }
+
+    @Test
+    void testReferenceDataReloadChangesETags() {
+        String genres = entityVersions.referenceDataETag("genres");
+        String film = entityVersions.filmETag(3L);
+        referenceDataCache.invalidate();
+        assertThat(entityVersions.referenceDataETag("genres")).isNotEqualTo(genres);
+        assertThat(entityVersions.filmETag(3L)).isNotEqualTo(film);
+    }
+
+    @Test
+    void testResetChangesEveryETag() {
+        String unchanged = entityVersions.userETag(5L);
+        String changed = entityVersions.filmETag(4L);
+        long filmsBefore = entityVersions.filmsVersion();
+        TestTransaction.end();
+
+        // версии после сброса начинаются заново, но с прежними ETag не совпадают
+        entityVersions.reset();
+        assertThat(entityVersions.userETag(5L)).isNotEqualTo(unchanged);
+        assertThat(entityVersions.filmETag(4L)).isNotEqualTo(changed);
+        assertThat(entityVersions.filmsVersion()).isGreaterThan(filmsBefore);
+    }
+}
@@ -1,132 +1,84 @@
 package ru.yandex.practicum.filmorate;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.transaction.TestTransaction;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.dao.dbStorages.FilmDbStorage;
 import ru.yandex.practicum.filmorate.dao.dbStorages.GenreDbStorage;
 import ru.yandex.practicum.filmorate.dao.dbStorages.MpaDbStorage;
-import ru.yandex.practicum.filmorate.dao.dto.GenreDto;
-import ru.yandex.practicum.filmorate.dao.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dao.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.dao.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.dao.index.KnownIds;
+import ru.yandex.practicum.filmorate.dao.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.dao.likes.LikeEventLog;
+import ru.yandex.practicum.filmorate.dao.likes.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.dao.mapper.FilmAggregateExtractor;
 import ru.yandex.practicum.filmorate.dao.mapper.FilmMapper;
-import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
-import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 
 import java.sql.Date;
 import java.time.LocalDate;
-import java.util.List;
-import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @JdbcTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
-@Import({FilmDbStorage.class, FilmMapper.class, MpaDbStorage.class, GenreDbStorage.class})
+@Import({FilmDbStorage.class, FilmMapper.class, FilmAggregateExtractor.class, MpaDbStorage.class,
+        GenreDbStorage.class, PopularityLeaderboard.class, ReferenceDataCache.class, LikeWriteBuffer.class,
+        LikeEventLog.class, CoLikeIndex.class, FilmSearchIndex.class, EntityVersions.class, KnownIds.class,
+        SimpleMeterRegistry.class})
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-class FilmDbStorageTest {
+class FilmDbStorageTest extends FilmStorageContractTest {
     private final FilmDbStorage filmStorage;
+    private final CoLikeIndex coLikeIndex;
     private final JdbcTemplate jdbcTemplate;
-    private Film film;
+    private final KnownIds knownIds;
 
-    @BeforeEach
-    void setUp() {
-        // Вставляем пользователей для лайков
-        jdbcTemplate.update(
-                "INSERT INTO users(id, login, name, email, birthday) VALUES (?,?,?,?,?)",
-                1L, "user1", "User One", "u1@example.com", Date.valueOf(LocalDate.of(1990, 1, 1))
-        );
-        jdbcTemplate.update(
-                "INSERT INTO users(id, login, name, email, birthday) VALUES (?,?,?,?,?)",
-                2L, "user2", "User Two", "u2@example.com", Date.valueOf(LocalDate.of(1991, 2, 2))
-        );
-
-        film = Film.builder()
-                .name("Test Film")
-                .description("Desc")
-                .releaseDate(LocalDate.of(2000, 1, 1))
-                .duration(100L)
-                .mpa(new MpaDto(1, ""))
-                .build();
-    }
-
-    @Test
-    void testCreateAndFindById() {
-        Film created = filmStorage.create(film);
-        assertThat(created.getId()).isPositive();
-        Optional<Film> maybe = filmStorage.findById(created.getId());
-        assertThat(maybe).isPresent();
-        Film found = maybe.get();
-        assertThat(found.getName()).isEqualTo("Test Film");
-    }
-
-    @Test
-    void testUpdate() {
-        Film created = filmStorage.create(film);
-        created.setName("Updated");
-        Film updated = filmStorage.update(created);
-        assertThat(updated.getName()).isEqualTo("Updated");
-    }
-
-    @Test
-    void testUpdateNotFound() {
-        film.setId(999L);
-        assertThatThrownBy(() -> filmStorage.update(film))
-                .isInstanceOf(NotFoundException.class);
+    @Override
+    protected FilmStorage filmStorage() {
+        return filmStorage;
     }
 
-    @Test
-    void testAddAndRemoveLike() {
-        Film created = filmStorage.create(film);
-        long fid = created.getId();
-
-        // добавляем лайк — ожидаем countLikes == 1
-        filmStorage.addLike(fid, 1L);
-        Film withLike = filmStorage.findById(fid).get();
-        assertThat(withLike.getCountLikes())
-                .as("После добавления одного лайка countLikes должен стать 1")
-                .isEqualTo(1L);
-
-        // удаляем лайк — ожидаем countLikes == 0
-        filmStorage.removeLike(fid, 1L);
-        Film noLike = filmStorage.findById(fid).get();
-        assertThat(noLike.getCountLikes())
-                .as("После удаления лайка countLikes должен стать 0")
-                .isEqualTo(0L);
+    @Override
+    protected long createUser(String login) {
+        jdbcTemplate.update("INSERT INTO users(login, name, email, birthday) VALUES (?,?,?,?)",
+                login, login, login + "@example.com", Date.valueOf(LocalDate.of(1990, 1, 1)));
+        knownIds.rebuild();
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE login = ?", Long.class, login);
     }
 
-
-    @Test
-    void testGetTopFilms() {
-        Film a = filmStorage.create(Film.builder()
-                .name("A").description("Desc").releaseDate(LocalDate.of(2000, 1, 1))
-                .duration(100L).mpa(new MpaDto(1, "")).build());
-        Film b = filmStorage.create(Film.builder()
-                .name("B").description("Desc").releaseDate(LocalDate.of(2000, 1, 1))
-                .duration(100L).mpa(new MpaDto(1, "")).build());
-        filmStorage.addLike(a.getId(), 1L);
-        filmStorage.addLike(a.getId(), 2L);
-        filmStorage.addLike(b.getId(), 1L);
-        List<Film> top = filmStorage.getTopFilms(2);
-        assertThat(top).extracting(Film::getId).containsExactly(a.getId(), b.getId());
-    }
-
-    @Test
-    void testCreateWithInvalidMpa() {
-        film.setMpa(new MpaDto(999, ""));
-        assertThatThrownBy(() -> filmStorage.create(film))
-                .isInstanceOf(NotFoundException.class);
+    @Override
+    protected void reload() {
+        coLikeIndex.rebuild();
     }
 
     @Test
-    void testCreateWithDuplicateGenres() {
-        film.setGenres(List.of(new GenreDto(1, ""), new GenreDto(1, ""), new GenreDto(2, "")));
-        Film created = filmStorage.create(film);
-        assertThat(created.getGenres()).extracting(GenreDto::getId).containsExactly(1, 2);
+    void testRebuildCountsCoLikesExactly() {
+        long first = filmStorage.create(film.toBuilder().build()).getId();
+        long second = filmStorage.create(film.toBuilder().build()).getId();
+        long third = filmStorage.create(film.toBuilder().build()).getId();
+        jdbcTemplate.update("INSERT INTO users (id, login, email, birthday) " +
+                "SELECT x, 'fan' || x, 'fan' || x || '@example.com', DATE '1990-01-01' FROM SYSTEM_RANGE(10001, 11500)");
+        // первый фильм лайкают все 1500, третий — 750 с чётными id, второй — 600 с нечётными
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) SELECT ?, x FROM SYSTEM_RANGE(10001, 11500)", first);
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) " +
+                "SELECT ?, x FROM SYSTEM_RANGE(10001, 11500) WHERE MOD(x, 2) = 0", third);
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) " +
+                "SELECT ?, x FROM SYSTEM_RANGE(10001, 11199) WHERE MOD(x, 2) = 1", second);
+
+        // выборка каждого второго лайкнувшего не увидела бы третий фильм вовсе
+        coLikeIndex.rebuild();
+        assertThat(coLikeIndex.similarTo(first, 10)).containsExactly(third, second);
+
+        TestTransaction.end();
+        coLikeIndex.rebuild();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,183 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.dao.dbStorages.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.dbStorages.MpaDbStorage;
+import ru.yandex.practicum.filmorate.dao.dto.GenreDto;
+import ru.yandex.practicum.filmorate.dao.memory.FilmMemoryStorage;
+import ru.yandex.practicum.filmorate.dao.memory.UserMemoryStorage;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Хранилище фильмов в памяти: общий контракт хранилищ и восстановление из журнала.
+ * В reload хранилища закрываются и поднимаются заново из журнала, как при перезапуске.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({EntityVersions.class, ReferenceDataCache.class, GenreDbStorage.class, MpaDbStorage.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmMemoryStorageTest extends FilmStorageContractTest {
+    private final ReferenceDataCache referenceDataCache;
+    private final EntityVersions entityVersions;
+
+    @TempDir
+    Path journalDir;
+
+    private UserMemoryStorage userStorage;
+    private FilmMemoryStorage filmStorage;
+
+    @Override
+    protected void prepare() {
+        open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        close();
+    }
+
+    @Override
+    protected FilmStorage filmStorage() {
+        return filmStorage;
+    }
+
+    @Override
+    protected long createUser(String login) {
+        return userStorage.create(User.builder()
+                .login(login)
+                .name(login)
+                .email(login + "@example.com")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build()).getId();
+    }
+
+    @Override
+    protected void reload() {
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        open();
+    }
+
+    @Test
+    void testJournalRestoresFilmsLikesAndIndexes() {
+        List<Long> ids = filmStorage.createAll(List.of(
+                film.toBuilder().name("Солярис").genres(List.of(new GenreDto(2, ""), new GenreDto(1, ""))).build(),
+                film.toBuilder().name("Сталкер").description(null).build(),
+                film.toBuilder().name("Зеркало").build()));
+        filmStorage.addLike(ids.get(0), user1);
+        filmStorage.addLike(ids.get(1), user1);
+        filmStorage.addLike(ids.get(1), user2);
+        filmStorage.addLike(ids.get(2), user2);
+        filmStorage.removeLike(ids.get(2), user2);
+        filmStorage.update(film.toBuilder().id(ids.get(2)).name("Зеркало (1975)")
+                .releaseDate(LocalDate.of(1975, 3, 7)).build());
+        List<Film> before = new ArrayList<>(filmStorage.findAll());
+
+        reload();
+
+        assertThat(filmStorage.findAll()).isEqualTo(before);
+        assertThat(filmStorage.getTopFilms(10, null, null)).extracting(Film::getId)
+                .containsExactly(ids.get(1), ids.get(0), ids.get(2));
+        assertThat(filmStorage.getTopFilms(10, null, 1975)).extracting(Film::getId).containsExactly(ids.get(2));
+        assertThat(filmStorage.searchFilms("зеркало", 0, 10)).extracting(Film::getId).containsExactly(ids.get(2));
+        assertThat(filmStorage.getSimilarFilms(ids.get(0), 10)).extracting(Film::getId).containsExactly(ids.get(1));
+        assertThatThrownBy(() -> filmStorage.removeLike(ids.get(2), user2))
+                .isInstanceOf(NotFoundException.class).hasMessage("Лайк не найден");
+
+        // новые id выдаются после восстановленных
+        assertThat(filmStorage.create(film.toBuilder().name("Жертвоприношение").build()).getId())
+                .isEqualTo(ids.get(2) + 1);
+    }
+
+    @Test
+    void testConcurrentLikesAreAllJournaled() throws Exception {
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            users.add(createUser("fan" + i));
+        }
+        List<Long> films = filmStorage.createAll(List.of(
+                film.toBuilder().name("A").build(),
+                film.toBuilder().name("B").build(),
+                film.toBuilder().name("C").build()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (long userId : users) {
+                for (long filmId : films) {
+                    tasks.add(executor.submit(() -> filmStorage.addLike(filmId, userId)));
+                }
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        reload();
+
+        for (long filmId : films) {
+            assertThat(filmStorage.findById(filmId).orElseThrow().getCountLikes()).isEqualTo(users.size());
+        }
+    }
+
+    @Test
+    void testLikeRequiresExistingFilmAndUser() {
+        long filmId = filmStorage.create(film).getId();
+        assertThatThrownBy(() -> filmStorage.addLike(999L, user1))
+                .isInstanceOf(NotFoundException.class).hasMessage("Фильм с ID 999 не найден");
+        assertThatThrownBy(() -> filmStorage.addLike(filmId, 999L))
+                .isInstanceOf(NotFoundException.class).hasMessage("Пользователь с ID 999 не найден");
+
+        // повторный лайк ничего не меняет
+        filmStorage.addLike(filmId, user1);
+        filmStorage.addLike(filmId, user1);
+        assertThat(filmStorage.getLikeCounts(List.of(filmId))).containsEntry(filmId, 1L);
+    }
+
+    @Test
+    void testSnapshotImportIsRejected() {
+        assertThatThrownBy(() -> new FilmMemoryStorage(userStorage, referenceDataCache, entityVersions,
+                "", true, 50, 1000, "filmorate.snapshot"))
+                .isInstanceOf(IllegalStateException.class).hasMessageContaining("filmorate.storage=db");
+    }
+
+    private void open() {
+        userStorage = new UserMemoryStorage(entityVersions, journalDir.toString(), true, 1000);
+        filmStorage = new FilmMemoryStorage(userStorage, referenceDataCache, entityVersions,
+                journalDir.toString(), true, 50, 1000, "");
+    }
+
+    private void close() throws IOException {
+        filmStorage.close();
+        userStorage.close();
+    }
+}
@@ -0,0 +1,231 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.dao.dbStorages.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.dbStorages.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.dbStorages.MpaDbStorage;
+import ru.yandex.practicum.filmorate.dao.dto.GenreDto;
+import ru.yandex.practicum.filmorate.dao.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dao.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.dao.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.dao.index.KnownIds;
+import ru.yandex.practicum.filmorate.dao.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.dao.likes.LikeEventLog;
+import ru.yandex.practicum.filmorate.dao.likes.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.dao.mapper.FilmAggregateExtractor;
+import ru.yandex.practicum.filmorate.dao.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({FilmDbStorage.class, FilmMapper.class, FilmAggregateExtractor.class, MpaDbStorage.class,
+        GenreDbStorage.class, PopularityLeaderboard.class, ReferenceDataCache.class, LikeWriteBuffer.class,
+        LikeEventLog.class, CoLikeIndex.class, FilmSearchIndex.class, EntityVersions.class, KnownIds.class,
+        SimpleMeterRegistry.class, FilmQueryCountTest.StatementCounter.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmQueryCountTest {
+    private final FilmDbStorage filmStorage;
+    private final StatementCounter statements;
+    private final JdbcTemplate jdbcTemplate;
+    private final KnownIds knownIds;
+    private final MeterRegistry registry;
+    private Film film;
+
+    @BeforeEach
+    void setUp() {
+        film = Film.builder()
+                .name("Test Film")
+                .description("Desc")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(new MpaDto(1, ""))
+                .genres(List.of(new GenreDto(2, ""), new GenreDto(1, "")))
+                .build();
+    }
+
+    @Test
+    void testCreateIsInsertPlusGenreBatch() {
+        statements.reset();
+        Film created = filmStorage.create(film);
+        assertThat(statements.count()).isEqualTo(2);
+        assertThat(created.getMpa().getName()).isEqualTo("G");
+        assertThat(created.getGenres()).extracting(GenreDto::getId).containsExactly(1, 2);
+        assertThat(created.getCountLikes()).isZero();
+    }
+
+    @Test
+    void testUpdateDoesNotReRead() {
+        Film created = filmStorage.create(film);
+        statements.reset();
+        filmStorage.update(created.toBuilder().name("Updated").build());
+        // UPDATE films, DELETE жанров и пакетная вставка жанров
+        assertThat(statements.count()).isEqualTo(3);
+    }
+
+    @Test
+    void testReadsAreSingleStatement() {
+        Film created = filmStorage.create(film);
+        filmStorage.create(film.toBuilder().id(null).genres(null).build());
+
+        statements.reset();
+        Film found = filmStorage.findById(created.getId()).orElseThrow();
+        assertThat(statements.count()).isEqualTo(1);
+        assertThat(found.getGenres()).extracting(GenreDto::getName).containsExactly("Комедия", "Драма");
+
+        statements.reset();
+        assertThat(filmStorage.findAll()).hasSize(2);
+        assertThat(statements.count()).isEqualTo(1);
+
+        statements.reset();
+        assertThat(filmStorage.findPage(0L, 10)).hasSize(2);
+        assertThat(statements.count()).isEqualTo(1);
+
+        statements.reset();
+        assertThat(filmStorage.getTopFilms(10, null, null)).hasSize(2);
+        assertThat(statements.count()).isEqualTo(1);
+    }
+
+    @Test
+    void testStreamAllIsSingleStatementInIdOrder() {
+        Film first = filmStorage.create(film);
+        Film second = filmStorage.create(film.toBuilder().id(null).genres(null).build());
+        Film third = filmStorage.create(film.toBuilder().id(null).build());
+
+        statements.reset();
+        List<Film> streamed = new ArrayList<>();
+        filmStorage.streamAll(0L, streamed::add);
+        assertThat(statements.count()).isEqualTo(1);
+        assertThat(streamed).extracting(Film::getId).containsExactly(first.getId(), second.getId(), third.getId());
+        assertThat(streamed.get(0).getGenres()).extracting(GenreDto::getId).containsExactly(1, 2);
+        assertThat(streamed.get(1).getGenres()).isNull();
+
+        streamed.clear();
+        filmStorage.streamAll(first.getId(), streamed::add);
+        assertThat(streamed).extracting(Film::getId).containsExactly(second.getId(), third.getId());
+    }
+
+    @Test
+    void testLikeWritesAreSingleStatement() {
+        Film created = filmStorage.create(film);
+        jdbcTemplate.update("INSERT INTO users (id, login, name, email, birthday) " +
+                "VALUES (1, 'user1', 'User One', 'u1@example.com', DATE '1990-01-01')");
+        knownIds.rebuild();
+
+        statements.reset();
+        filmStorage.addLike(created.getId(), 1L);
+        assertThat(statements.count()).isEqualTo(1);
+
+        // повторный лайк ничего не меняет и не падает
+        filmStorage.addLike(created.getId(), 1L);
+        assertThat(filmStorage.findById(created.getId()).orElseThrow().getCountLikes()).isEqualTo(1L);
+
+        statements.reset();
+        filmStorage.removeLike(created.getId(), 1L);
+        assertThat(statements.count()).isEqualTo(1);
+    }
+
+    @Test
+    void testLikeOnMissingFilmOrUserIsNotFound() {
+        Film created = filmStorage.create(film);
+        jdbcTemplate.update("INSERT INTO users (id, login, name, email, birthday) " +
+                "VALUES (1, 'user1', 'User One', 'u1@example.com', DATE '1990-01-01')");
+        knownIds.rebuild();
+
+        assertThatThrownBy(() -> filmStorage.addLike(9999L, 1L))
+                .isInstanceOf(NotFoundException.class).hasMessageContaining("Фильм с ID 9999");
+        assertThatThrownBy(() -> filmStorage.addLike(created.getId(), 9999L))
+                .isInstanceOf(NotFoundException.class).hasMessageContaining("Пользователь с ID 9999");
+        assertThatThrownBy(() -> filmStorage.removeLike(created.getId(), 9999L))
+                .isInstanceOf(NotFoundException.class).hasMessageContaining("Пользователь с ID 9999");
+        assertThatThrownBy(() -> filmStorage.removeLike(created.getId(), 1L))
+                .isInstanceOf(NotFoundException.class).hasMessage("Лайк не найден");
+        assertThat(filmStorage.exists(created.getId())).isTrue();
+        assertThat(filmStorage.exists(9999L)).isFalse();
+    }
+
+    @Test
+    void testUnknownIdsAreRejectedWithoutQueries() {
+        Film created = filmStorage.create(film);
+        double rejectedBefore = registry.get(KnownIds.REJECTED_COUNTER).tag("entity", "film").counter().count();
+
+        statements.reset();
+        assertThat(filmStorage.findById(created.getId() + 1)).isEmpty();
+        assertThat(filmStorage.exists(created.getId() + 1)).isFalse();
+        assertThat(statements.count()).isZero();
+        assertThat(registry.get(KnownIds.REJECTED_COUNTER).tag("entity", "film").counter().count())
+                .isEqualTo(rejectedBefore + 2);
+
+        // созданный фильм по-прежнему читается из базы
+        assertThat(filmStorage.findById(created.getId())).isPresent();
+    }
+
+    /**
+     * Оборачивает DataSource и считает подготовленные JDBC-выражения.
+     */
+    static class StatementCounter implements BeanPostProcessor {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        void reset() {
+            counter.set(0);
+        }
+
+        int count() {
+            return counter.get();
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource dataSource)) {
+                return bean;
+            }
+            return new DelegatingDataSource(dataSource) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    return counting(super.getConnection());
+                }
+            };
+        }
+
+        private Connection counting(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.startsWith("prepare") || name.equals("createStatement")) {
+                            counter.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+}
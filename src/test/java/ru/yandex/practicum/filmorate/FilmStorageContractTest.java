@@ -0,0 +1,305 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dao.dto.GenreDto;
+import ru.yandex.practicum.filmorate.dao.dto.MpaDto;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Поведение, общее для всех реализаций {@link FilmStorage}.
+ * Транзакция теста ищется по классу, где объявлен метод, поэтому @Transactional нужен и здесь.
+ */
+@Transactional
+abstract class FilmStorageContractTest {
+    protected Film film;
+    protected long user1;
+    protected long user2;
+
+    protected abstract FilmStorage filmStorage();
+
+    /**
+     * Создаёт пользователя, которым можно ставить лайки, и возвращает его id.
+     */
+    protected abstract long createUser(String login);
+
+    /**
+     * Заново строит индексы хранилища из сохранённых данных.
+     */
+    protected abstract void reload();
+
+    /**
+     * Вызывается перед созданием пользователей.
+     */
+    protected void prepare() {
+    }
+
+    @BeforeEach
+    void setUp() {
+        prepare();
+        // пользователи для лайков
+        user1 = createUser("user1");
+        user2 = createUser("user2");
+
+        film = Film.builder()
+                .name("Test Film")
+                .description("Desc")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(new MpaDto(1, ""))
+                .build();
+    }
+
+    @Test
+    void testCreateAndFindById() {
+        Film created = filmStorage().create(film);
+        assertThat(created.getId()).isPositive();
+        Optional<Film> maybe = filmStorage().findById(created.getId());
+        assertThat(maybe).isPresent();
+        Film found = maybe.get();
+        assertThat(found.getName()).isEqualTo("Test Film");
+    }
+
+    @Test
+    void testUpdate() {
+        Film created = filmStorage().create(film);
+        created.setName("Updated");
+        Film updated = filmStorage().update(created);
+        assertThat(updated.getName()).isEqualTo("Updated");
+    }
+
+    @Test
+    void testUpdateNotFound() {
+        film.setId(999L);
+        assertThatThrownBy(() -> filmStorage().update(film))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void testNullIdIsNotFound() {
+        assertThat(filmStorage().findById(null)).isEmpty();
+        assertThat(filmStorage().exists(null)).isFalse();
+        assertThatThrownBy(() -> filmStorage().addLike(null, user1))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void testAddAndRemoveLike() {
+        Film created = filmStorage().create(film);
+        long fid = created.getId();
+
+        // добавляем лайк — ожидаем countLikes == 1
+        filmStorage().addLike(fid, user1);
+        Film withLike = filmStorage().findById(fid).get();
+        assertThat(withLike.getCountLikes())
+                .as("После добавления одного лайка countLikes должен стать 1")
+                .isEqualTo(1L);
+
+        // удаляем лайк — ожидаем countLikes == 0
+        filmStorage().removeLike(fid, user1);
+        Film noLike = filmStorage().findById(fid).get();
+        assertThat(noLike.getCountLikes())
+                .as("После удаления лайка countLikes должен стать 0")
+                .isEqualTo(0L);
+    }
+
+
+    @Test
+    void testGetTopFilms() {
+        Film a = filmStorage().create(Film.builder()
+                .name("A").description("Desc").releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L).mpa(new MpaDto(1, "")).build());
+        Film b = filmStorage().create(Film.builder()
+                .name("B").description("Desc").releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L).mpa(new MpaDto(1, "")).build());
+        filmStorage().addLike(a.getId(), user1);
+        filmStorage().addLike(a.getId(), user2);
+        filmStorage().addLike(b.getId(), user1);
+        List<Film> top = filmStorage().getTopFilms(2, null, null);
+        assertThat(top).extracting(Film::getId).containsExactly(a.getId(), b.getId());
+    }
+
+    @Test
+    void testGetTopFilmsByGenreAndYear() {
+        Film comedy2000 = filmStorage().create(film.toBuilder()
+                .genres(List.of(new GenreDto(1, ""))).build());
+        Film drama2000 = filmStorage().create(film.toBuilder()
+                .genres(List.of(new GenreDto(2, ""))).build());
+        Film comedy2010 = filmStorage().create(film.toBuilder().releaseDate(LocalDate.of(2010, 5, 5))
+                .genres(List.of(new GenreDto(1, ""), new GenreDto(2, ""))).build());
+        filmStorage().addLike(comedy2010.getId(), user1);
+        filmStorage().addLike(comedy2010.getId(), user2);
+        filmStorage().addLike(drama2000.getId(), user1);
+
+        assertThat(filmStorage().getTopFilms(10, 1, null)).extracting(Film::getId)
+                .containsExactly(comedy2010.getId(), comedy2000.getId());
+        assertThat(filmStorage().getTopFilms(10, null, 2000)).extracting(Film::getId)
+                .containsExactly(drama2000.getId(), comedy2000.getId());
+        assertThat(filmStorage().getTopFilms(10, 2, 2010)).extracting(Film::getId)
+                .containsExactly(comedy2010.getId());
+        assertThat(filmStorage().getTopFilms(10, 1, 1999)).isEmpty();
+
+        // после изменения фильм переходит в рейтинги нового года и жанров
+        filmStorage().update(comedy2000.toBuilder().releaseDate(LocalDate.of(2010, 1, 1))
+                .genres(List.of(new GenreDto(2, ""))).build());
+        assertThat(filmStorage().getTopFilms(10, 1, null)).extracting(Film::getId)
+                .containsExactly(comedy2010.getId());
+        assertThat(filmStorage().getTopFilms(10, 2, 2010)).extracting(Film::getId)
+                .containsExactly(comedy2010.getId(), comedy2000.getId());
+    }
+
+    @Test
+    void testSimilarFilmsAndRecommendations() {
+        List<Long> ids = filmStorage().createAll(List.of(
+                film.toBuilder().name("A").build(),
+                film.toBuilder().name("B").build(),
+                film.toBuilder().name("C").build()));
+        long a = ids.get(0);
+        long b = ids.get(1);
+        long c = ids.get(2);
+        filmStorage().addLike(a, user1);
+        filmStorage().addLike(b, user1);
+        filmStorage().addLike(c, user1);
+        filmStorage().addLike(a, user2);
+        filmStorage().addLike(b, user2);
+
+        for (int pass = 0; pass < 2; pass++) {
+            assertThat(filmStorage().getSimilarFilms(a, 10)).extracting(Film::getId).containsExactly(b, c);
+            assertThat(filmStorage().getSimilarFilms(c, 1)).extracting(Film::getId).containsExactly(a);
+            assertThat(filmStorage().getRecommendations(user2, 10)).extracting(Film::getId).containsExactly(c);
+            assertThat(filmStorage().getRecommendations(user1, 10)).isEmpty();
+            // после полного построения из сохранённых лайков результат тот же, что и после инкрементальных обновлений
+            reload();
+        }
+
+        filmStorage().removeLike(c, user1);
+        assertThat(filmStorage().getSimilarFilms(a, 10)).extracting(Film::getId).containsExactly(b);
+        assertThat(filmStorage().getRecommendations(user2, 10)).isEmpty();
+    }
+
+    @Test
+    void testSearchFilms() {
+        List<Long> ids = filmStorage().createAll(List.of(
+                film.toBuilder().name("Ёлка и Звёзды").description("Новогодняя комедия").build(),
+                film.toBuilder().name("Star Wars").description("Space opera").build(),
+                film.toBuilder().name("Солярис").description("Звездолёт у океана, star cast").build()));
+        long yolka = ids.get(0);
+        long starWars = ids.get(1);
+        long solaris = ids.get(2);
+
+        // регистр и «ё» не важны, слово в названии весит больше слова в описании
+        assertThat(filmStorage().searchFilms("ЗВЕЗДЫ", 0, 10)).extracting(Film::getId).containsExactly(yolka);
+        assertThat(filmStorage().searchFilms("star", 0, 10)).extracting(Film::getId).containsExactly(starWars, solaris);
+        // поиск по префиксу, все слова запроса обязательны
+        assertThat(filmStorage().searchFilms("звезд", 0, 10)).extracting(Film::getId).containsExactly(yolka, solaris);
+        assertThat(filmStorage().searchFilms("star оке", 0, 10)).extracting(Film::getId).containsExactly(solaris);
+        assertThat(filmStorage().searchFilms("star wars", 1, 10)).isEmpty();
+        assertThat(filmStorage().searchFilms("звезд", 1, 1)).extracting(Film::getId).containsExactly(solaris);
+
+        filmStorage().update(film.toBuilder().id(starWars).name("Звёздные войны").build());
+        assertThat(filmStorage().searchFilms("wars", 0, 10)).isEmpty();
+        assertThat(filmStorage().searchFilms("звездные", 0, 10)).extracting(Film::getId).containsExactly(starWars);
+    }
+
+    @Test
+    void testGetTopFilmsAfterRemoveLike() {
+        Film a = filmStorage().create(Film.builder()
+                .name("A").description("Desc").releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L).mpa(new MpaDto(1, "")).build());
+        Film b = filmStorage().create(Film.builder()
+                .name("B").description("Desc").releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L).mpa(new MpaDto(1, "")).build());
+        filmStorage().addLike(a.getId(), user1);
+        filmStorage().addLike(b.getId(), user1);
+        filmStorage().addLike(b.getId(), user2);
+        filmStorage().removeLike(b.getId(), user1);
+        filmStorage().removeLike(b.getId(), user2);
+
+        List<Film> top = filmStorage().getTopFilms(2, null, null);
+        assertThat(top).extracting(Film::getId).containsExactly(a.getId(), b.getId());
+        assertThat(top).extracting(Film::getCountLikes).containsExactly(1L, 0L);
+    }
+
+    @Test
+    void testFindPage() {
+        Film a = filmStorage().create(film.toBuilder().name("A").build());
+        Film b = filmStorage().create(film.toBuilder().name("B").build());
+        Film c = filmStorage().create(film.toBuilder().name("C").build());
+
+        List<Film> first = filmStorage().findPage(a.getId() - 1, 2);
+        assertThat(first).extracting(Film::getId).containsExactly(a.getId(), b.getId());
+
+        List<Film> second = filmStorage().findPage(b.getId(), 2);
+        assertThat(second).extracting(Film::getId).containsExactly(c.getId());
+    }
+
+    @Test
+    void testCreateAll() {
+        List<Long> ids = filmStorage().createAll(List.of(
+                film.toBuilder().name("A").genres(List.of(new GenreDto(2, ""), new GenreDto(1, ""))).build(),
+                film.toBuilder().name("B").build(),
+                film.toBuilder().name("C").genres(List.of(new GenreDto(3, ""))).build()));
+
+        assertThat(ids).hasSize(3).isSorted();
+        assertThat(filmStorage().findById(ids.get(0)).orElseThrow().getGenres())
+                .extracting(GenreDto::getId).containsExactly(1, 2);
+        assertThat(filmStorage().findById(ids.get(1)).orElseThrow().getName()).isEqualTo("B");
+        assertThat(filmStorage().findById(ids.get(2)).orElseThrow().getGenres())
+                .extracting(GenreDto::getId).containsExactly(3);
+    }
+
+    @Test
+    void testCreateAllRejectsWholeBatchOnUnknownGenre() {
+        assertThatThrownBy(() -> filmStorage().createAll(List.of(
+                film.toBuilder().name("A").build(),
+                film.toBuilder().name("B").genres(List.of(new GenreDto(999, ""))).build())))
+                .isInstanceOf(NotFoundException.class);
+        assertThat(filmStorage().findAll()).isEmpty();
+    }
+
+    @Test
+    void testCreateWithInvalidMpa() {
+        film.setMpa(new MpaDto(999, ""));
+        assertThatThrownBy(() -> filmStorage().create(film))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void testCreateWithUnknownGenre() {
+        film.setGenres(List.of(new GenreDto(1, ""), new GenreDto(999, "")));
+        assertThatThrownBy(() -> filmStorage().create(film))
+                .isInstanceOf(NotFoundException.class);
+        assertThat(filmStorage().findAll()).isEmpty();
+    }
+
+    @Test
+    void testCreateRejectsValuesOutsideColumns() {
+        assertThatThrownBy(() -> filmStorage().create(film.toBuilder().description("a".repeat(201)).build()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThatThrownBy(() -> filmStorage().create(film.toBuilder().duration(0L).build()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(filmStorage().findAll()).isEmpty();
+
+        Film created = filmStorage().create(film.toBuilder().description("a".repeat(200)).build());
+        created.setDescription("a".repeat(201));
+        assertThatThrownBy(() -> filmStorage().update(created)).isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void testCreateWithDuplicateGenres() {
+        film.setGenres(List.of(new GenreDto(1, ""), new GenreDto(1, ""), new GenreDto(2, "")));
+        Film created = filmStorage().create(film);
+        assertThat(created.getGenres()).extracting(GenreDto::getId).containsExactly(1, 2);
+    }
+}
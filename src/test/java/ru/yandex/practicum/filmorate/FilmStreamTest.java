@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.yandex.practicum.filmorate.controller.FilmController;
+import ru.yandex.practicum.filmorate.exceptions.GlobalExceptionHandler;
+import ru.yandex.practicum.filmorate.exceptions.ServiceOverloadedException;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Место выгрузки фильмов освобождается, даже если тело ответа так и не запустилось.
+ */
+class FilmStreamTest {
+    private final CountDownLatch finish = new CountDownLatch(1);
+    private FilmService filmService;
+
+    @BeforeEach
+    void setUp() {
+        FilmStorage filmStorage = mock(FilmStorage.class);
+        // выгрузка не заканчивается, пока тест её не отпустит
+        doAnswer(invocation -> {
+            finish.await();
+            return null;
+        }).when(filmStorage).streamAll(any(), any());
+        filmService = new FilmService(filmStorage, null, null, null, new SimpleMeterRegistry(),
+                false, Duration.ofSeconds(1), 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        finish.countDown();
+    }
+
+    @Test
+    void testDroppedStreamReleasesPlace() {
+        FilmService.FilmStream dropped = filmService.openFilmStream(null);
+        assertThatThrownBy(() -> filmService.openFilmStream(null)).isInstanceOf(ServiceOverloadedException.class);
+
+        // тело ответа не запускалось: место освобождает завершение запроса
+        dropped.release();
+        dropped.release();
+        FilmService.FilmStream next = filmService.openFilmStream(null);
+        assertThatThrownBy(() -> filmService.openFilmStream(null)).isInstanceOf(ServiceOverloadedException.class);
+        next.release();
+
+        assertThatThrownBy(() -> dropped.accept(film -> {
+        })).isInstanceOf(IllegalStateException.class);
+        filmService.openFilmStream(null).release();
+    }
+
+    @Test
+    void testCompletedRequestReleasesPlace() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(new FilmController(filmService, new ObjectMapper()))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        MvcResult first = mockMvc.perform(get("/films")).andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(get("/films")).andExpect(status().isServiceUnavailable());
+
+        // клиент отключился, пока выгрузка ещё идёт: контейнер завершает асинхронный запрос
+        ((MockAsyncContext) first.getRequest().getAsyncContext()).complete();
+
+        mockMvc.perform(get("/films")).andExpect(request().asyncStarted());
+        assertThat(finish.getCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.index.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.dao.index.FriendshipGraph;
+
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendSuggestionEngineTest {
+    private final FriendshipGraph graph = FriendshipGraph.inMemory();
+
+    @Test
+    void testRanksByMutualFriendsThenId() {
+        // 1 дружит с 2, 3, 4; у 5 трое общих с ним друзей, у 6 и 7 — по одному, 3 уже в друзьях
+        link(1, 2, 3, 4);
+        link(2, 5, 6, 1);
+        link(3, 5, 7);
+        link(4, 5, 3);
+        FriendSuggestionEngine engine = new FriendSuggestionEngine(graph, 1000);
+
+        assertThat(engine.suggest(1, 10)).containsExactly(5, 6, 7);
+        assertThat(engine.suggest(1, 2)).containsExactly(5, 6);
+        assertThat(engine.suggest(5, 10)).isEmpty();
+    }
+
+    @Test
+    void testHighDegreeUserIsSampled() {
+        int friends = 5_000;
+        int friendsOfFriend = 200;
+        for (long friend = 2; friend < 2 + friends; friend++) {
+            graph.addFriend(1, friend);
+            for (long j = 0; j < friendsOfFriend; j++) {
+                graph.addFriend(friend, 100_000 + (friend * 31 + j) % 20_000);
+            }
+        }
+        FriendSuggestionEngine engine = new FriendSuggestionEngine(graph, 1000);
+
+        long start = System.nanoTime();
+        long[] suggestions = engine.suggest(1, 20);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(suggestions).hasSize(20);
+        assertThat(LongStream.of(suggestions).min().orElseThrow()).isGreaterThanOrEqualTo(100_000);
+        assertThat(elapsedMillis).isLessThan(500);
+    }
+
+    private void link(long userId, long... friendIds) {
+        for (long friendId : friendIds) {
+            graph.addFriend(userId, friendId);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.dao.dbStorages.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.dbStorages.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.dbStorages.MpaDbStorage;
+import ru.yandex.practicum.filmorate.dao.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dao.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.dao.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.dao.index.KnownIds;
+import ru.yandex.practicum.filmorate.dao.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.dao.likes.LikeEventLog;
+import ru.yandex.practicum.filmorate.dao.likes.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.dao.mapper.FilmAggregateExtractor;
+import ru.yandex.practicum.filmorate.dao.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.service.LikeEventService;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Уплотнение не заходит за события незавершённых транзакций, а транзакция теста завершается
+ * только после него, поэтому тесты работают без транзакции и чистят таблицы сами.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({FilmDbStorage.class, FilmMapper.class, FilmAggregateExtractor.class, MpaDbStorage.class,
+        GenreDbStorage.class, PopularityLeaderboard.class, ReferenceDataCache.class, LikeWriteBuffer.class,
+        LikeEventLog.class, CoLikeIndex.class, FilmSearchIndex.class, EntityVersions.class, KnownIds.class,
+        SimpleMeterRegistry.class})
+@TestPropertySource(properties = {
+        "filmorate.likes.event-log.enabled=true",
+        "filmorate.likes.event-log.batch-size=3",
+        "filmorate.likes.event-log.compact-interval=1h"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LikeEventLogTest {
+    private static final int USERS = 20;
+
+    private final FilmDbStorage filmStorage;
+    private final LikeEventLog likeEventLog;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final PopularityLeaderboard leaderboard;
+    private final CoLikeIndex coLikeIndex;
+    private final KnownIds knownIds;
+    private long filmId;
+    private long otherFilmId;
+
+    @BeforeEach
+    void setUp() {
+        for (long id = 1; id <= USERS; id++) {
+            jdbcTemplate.update("INSERT INTO users(id, login, name, email, birthday) VALUES (?,?,?,?,?)",
+                    id, "user" + id, "User " + id, "u" + id + "@example.com", Date.valueOf(LocalDate.of(1990, 1, 1)));
+        }
+        knownIds.rebuild();
+        filmId = createFilm("Первый");
+        otherFilmId = createFilm("Второй");
+    }
+
+    @AfterEach
+    void tearDown() {
+        likeEventLog.compact();
+        jdbcTemplate.update("DELETE FROM like_events");
+        jdbcTemplate.update("DELETE FROM likes");
+        jdbcTemplate.update("DELETE FROM film_genre");
+        jdbcTemplate.update("DELETE FROM films");
+        jdbcTemplate.update("DELETE FROM users");
+        leaderboard.rebuild();
+        coLikeIndex.rebuild();
+        knownIds.rebuild();
+    }
+
+    @Test
+    void testLikesAreLoggedAndCompactedLater() {
+        filmStorage.addLike(filmId, 1L);
+        filmStorage.addLike(filmId, 1L);
+        filmStorage.addLike(filmId, 2L);
+
+        assertThat(events()).extracting(LikeEvent::userId, LikeEvent::liked)
+                .containsExactly(tuple(1L, true), tuple(2L, true));
+        assertThat(likesInTable()).isZero();
+        assertThat(filmStorage.findById(filmId).orElseThrow().getCountLikes()).isEqualTo(2L);
+        assertThat(filmStorage.getTopFilms(1, null, null)).extracting(Film::getId).containsExactly(filmId);
+
+        assertThat(likeEventLog.compact()).isEqualTo(2);
+        assertThat(likesInTable()).isEqualTo(2);
+        assertThat(likeEventLog.compact()).isZero();
+        // журнал после уплотнения сохраняется
+        assertThat(events()).hasSize(2);
+    }
+
+    @Test
+    void testCompactionKeepsLastStateOfPair() {
+        filmStorage.addLike(filmId, 1L);
+        filmStorage.removeLike(filmId, 1L);
+        filmStorage.addLike(filmId, 1L);
+        filmStorage.addLike(filmId, 2L);
+        filmStorage.removeLike(filmId, 2L);
+        filmStorage.addLike(otherFilmId, 3L);
+        filmStorage.addLike(otherFilmId, 4L);
+
+        // семь событий — три пакета
+        assertThat(likeEventLog.compact()).isEqualTo(7);
+        assertThat(jdbcTemplate.queryForList("SELECT user_id FROM likes ORDER BY user_id", Long.class))
+                .containsExactly(1L, 3L, 4L);
+        assertThat(jdbcTemplate.queryForObject("SELECT compacted_id FROM like_log_state", Long.class))
+                .isEqualTo(events().get(6).id());
+    }
+
+    @Test
+    void testRemoveLikeRequiresExistingLike() {
+        assertThatThrownBy(() -> filmStorage.removeLike(filmId, 1L))
+                .isInstanceOf(NotFoundException.class).hasMessage("Лайк не найден");
+        assertThatThrownBy(() -> filmStorage.removeLike(filmId, 999L))
+                .isInstanceOf(NotFoundException.class).hasMessage("Пользователь с ID 999 не найден");
+        assertThatThrownBy(() -> filmStorage.addLike(999L, 1L))
+                .isInstanceOf(NotFoundException.class).hasMessage("Фильм с ID 999 не найден");
+        assertThat(events()).isEmpty();
+
+        filmStorage.addLike(filmId, 1L);
+        likeEventLog.compact();
+        filmStorage.removeLike(filmId, 1L);
+        assertThat(filmStorage.findById(filmId).orElseThrow().getCountLikes()).isZero();
+        assertThat(likesInTable()).isEqualTo(1);
+        likeEventLog.compact();
+        assertThat(likesInTable()).isZero();
+    }
+
+    @Test
+    void testReplayCountsForTimeRange() throws InterruptedException {
+        filmStorage.addLike(filmId, 1L);
+        filmStorage.addLike(filmId, 2L);
+        Thread.sleep(5);
+        Instant middle = Instant.now();
+        Thread.sleep(5);
+        filmStorage.removeLike(filmId, 1L);
+        filmStorage.addLike(otherFilmId, 1L);
+
+        assertThat(likeEventLog.replayCounts(null, null))
+                .containsExactly(entry(filmId, 1L), entry(otherFilmId, 1L));
+        assertThat(likeEventLog.replayCounts(null, middle)).containsExactly(entry(filmId, 2L));
+        assertThat(likeEventLog.replayCounts(middle, null))
+                .containsExactly(entry(filmId, -1L), entry(otherFilmId, 1L));
+
+        List<LikeEvent> afterMiddle = likeEventLog.findEvents(middle, null, 0, 10);
+        assertThat(afterMiddle).extracting(LikeEvent::liked).containsExactly(false, true);
+        assertThat(afterMiddle).allSatisfy(event -> assertThat(event.createdAt()).isAfter(middle));
+        List<LikeEvent> all = events();
+        assertThat(likeEventLog.findEvents(null, null, all.get(1).id(), 1)).containsExactly(all.get(2));
+    }
+
+    @Test
+    void testConcurrentLikesSurviveConcurrentCompaction() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> compactor = executor.submit(() -> {
+                while (running.get()) {
+                    likeEventLog.compact();
+                }
+            });
+            List<Future<?>> tasks = new ArrayList<>();
+            for (long userId = 1; userId <= USERS; userId++) {
+                long user = userId;
+                tasks.add(executor.submit(() -> {
+                    filmStorage.addLike(filmId, user);
+                    filmStorage.addLike(otherFilmId, user);
+                    filmStorage.removeLike(otherFilmId, user);
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            running.set(false);
+            compactor.get();
+        } finally {
+            executor.shutdown();
+        }
+        likeEventLog.compact();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?", Integer.class, filmId))
+                .isEqualTo(USERS);
+        assertThat(likesInTable()).isEqualTo(USERS);
+        assertThat(filmStorage.getLikeCounts(List.of(filmId, otherFilmId)))
+                .containsEntry(filmId, (long) USERS).containsEntry(otherFilmId, 0L);
+    }
+
+    @Test
+    void testStartupCompactsEventsLeftFromPreviousRun() {
+        filmStorage.addLike(filmId, 1L);
+        filmStorage.addLike(filmId, 2L);
+        filmStorage.addLike(otherFilmId, 2L);
+        filmStorage.removeLike(filmId, 1L);
+        assertThat(likesInTable()).isZero();
+
+        // новый экземпляр, как при перезапуске; журнал выключен, но принятые лайки всё равно переносятся
+        LikeEventLog restarted = new LikeEventLog(jdbcTemplate, transactionManager, leaderboard, coLikeIndex,
+                false, 2, Duration.ofHours(1), false);
+        restarted.afterSingletonsInstantiated();
+
+        assertThat(jdbcTemplate.queryForList("SELECT film_id FROM likes ORDER BY film_id", Long.class))
+                .containsExactly(filmId, otherFilmId);
+        assertThat(leaderboard.getLikeCount(filmId)).isEqualTo(1L);
+        assertThat(restarted.compact()).isZero();
+    }
+
+    @Test
+    void testDisabledLogIsNotRead() {
+        // журнал выключен: новые лайки в него не попадают, и ответ был бы неполным
+        LikeEventService disabled = new LikeEventService(mock(LikeEventLog.class));
+
+        assertThatThrownBy(() -> disabled.findEvents(null, null, null, 100))
+                .isInstanceOf(NotFoundException.class).hasMessageContaining("filmorate.likes.event-log.enabled");
+        assertThatThrownBy(() -> disabled.replayCounts(null, null)).isInstanceOf(NotFoundException.class);
+    }
+
+    private long createFilm(String name) {
+        return filmStorage.create(Film.builder()
+                .name(name)
+                .description("Desc")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(new MpaDto(1, ""))
+                .build()).getId();
+    }
+
+    private List<LikeEvent> events() {
+        return likeEventLog.findEvents(null, null, 0, 100);
+    }
+
+    private int likesInTable() {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class);
+        return count == null ? 0 : count;
+    }
+}
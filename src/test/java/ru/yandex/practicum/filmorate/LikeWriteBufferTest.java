@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.dao.dbStorages.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.dbStorages.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.dbStorages.MpaDbStorage;
+import ru.yandex.practicum.filmorate.dao.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dao.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.dao.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.dao.index.KnownIds;
+import ru.yandex.practicum.filmorate.dao.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.dao.likes.LikeEventLog;
+import ru.yandex.practicum.filmorate.dao.likes.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.dao.mapper.FilmAggregateExtractor;
+import ru.yandex.practicum.filmorate.dao.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({FilmDbStorage.class, FilmMapper.class, FilmAggregateExtractor.class, MpaDbStorage.class,
+        GenreDbStorage.class, PopularityLeaderboard.class, ReferenceDataCache.class, LikeWriteBuffer.class,
+        LikeEventLog.class, CoLikeIndex.class, FilmSearchIndex.class, EntityVersions.class, KnownIds.class,
+        SimpleMeterRegistry.class})
+@TestPropertySource(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.batch-size=1000",
+        "filmorate.likes.write-behind.flush-interval=1h"
+})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LikeWriteBufferTest {
+    private final FilmDbStorage filmStorage;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final JdbcTemplate jdbcTemplate;
+    private final KnownIds knownIds;
+    private final CoLikeIndex coLikeIndex;
+    private final PlatformTransactionManager transactionManager;
+    private long filmId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update(
+                "INSERT INTO users(id, login, name, email, birthday) VALUES (?,?,?,?,?)",
+                1L, "user1", "User One", "u1@example.com", Date.valueOf(LocalDate.of(1990, 1, 1))
+        );
+        knownIds.rebuild();
+        filmId = filmStorage.create(Film.builder()
+                .name("Test Film")
+                .description("Desc")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(new MpaDto(1, ""))
+                .build()).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // транзакция теста откатывается: незаписанные операции не должны достаться следующему тесту
+        likeWriteBuffer.reset();
+        coLikeIndex.rebuild();
+    }
+
+    @Test
+    void testLikeIsVisibleBeforeFlush() {
+        filmStorage.addLike(filmId, 1L);
+        filmStorage.addLike(filmId, 1L);
+
+        assertThat(likesInTable()).isZero();
+        assertThat(filmStorage.findById(filmId).orElseThrow().getCountLikes()).isEqualTo(1L);
+
+        likeWriteBuffer.flush();
+        assertThat(likesInTable()).isEqualTo(1);
+        assertThat(filmStorage.findById(filmId).orElseThrow().getCountLikes()).isEqualTo(1L);
+    }
+
+    @Test
+    void testOpposingOperationsCancelOut() {
+        filmStorage.addLike(filmId, 1L);
+        filmStorage.removeLike(filmId, 1L);
+        likeWriteBuffer.flush();
+
+        assertThat(likesInTable()).isZero();
+        assertThat(filmStorage.findById(filmId).orElseThrow().getCountLikes()).isZero();
+    }
+
+    @Test
+    void testRemoveFlushedLike() {
+        filmStorage.addLike(filmId, 1L);
+        likeWriteBuffer.flush();
+        filmStorage.removeLike(filmId, 1L);
+
+        assertThat(likesInTable()).isEqualTo(1);
+        likeWriteBuffer.flush();
+        assertThat(likesInTable()).isZero();
+    }
+
+    @Test
+    void testRemoveMissingLikeThrows() {
+        assertThatThrownBy(() -> filmStorage.removeLike(filmId, 1L))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void testFailedBatchReturnsToBuffer() {
+        // пользователя 999 нет: пакет с его лайком нарушит внешний ключ
+        likeWriteBuffer.addLike(filmId, 999L);
+        assertThatThrownBy(likeWriteBuffer::flush).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(likesInTable()).isZero();
+
+        // лайк вернулся в буфер: повторный не ставится, а отмена снимает его без обращения к базе
+        assertThat(likeWriteBuffer.addLike(filmId, 999L)).isFalse();
+        likeWriteBuffer.removeLike(filmId, 999L);
+        filmStorage.addLike(filmId, 1L);
+        likeWriteBuffer.flush();
+        assertThat(likesInTable()).isEqualTo(1);
+    }
+
+    @Test
+    void testResetDropsPendingOperations() {
+        likeWriteBuffer.addLike(filmId, 1L);
+        likeWriteBuffer.reset();
+        coLikeIndex.rebuild();
+        likeWriteBuffer.flush();
+
+        assertThat(likesInTable()).isZero();
+        assertThat(likeWriteBuffer.addLike(filmId, 1L)).isTrue();
+    }
+
+    @Test
+    void testFullBufferIsFlushedByWriter() {
+        for (long id = 2; id <= 10; id++) {
+            jdbcTemplate.update("INSERT INTO users(id, login, name, email, birthday) VALUES (?,?,?,?,?)",
+                    id, "user" + id, "User " + id, "u" + id + "@example.com", Date.valueOf(LocalDate.of(1990, 1, 1)));
+        }
+        LikeWriteBuffer small = new LikeWriteBuffer(jdbcTemplate, transactionManager,
+                new CoLikeIndex(jdbcTemplate, 50, 1000), true, 1000, 3, Duration.ofHours(1));
+
+        for (long id = 1; id <= 10; id++) {
+            small.addLike(filmId, id);
+        }
+        // в буфере не больше трёх операций: остальное записали сами пишущие потоки
+        assertThat(likesInTable()).isGreaterThanOrEqualTo(7);
+        small.flush();
+        assertThat(likesInTable()).isEqualTo(10);
+    }
+
+    private int likesInTable() {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class);
+        return count == null ? 0 : count;
+    }
+}
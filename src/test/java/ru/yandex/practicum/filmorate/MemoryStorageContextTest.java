@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import ru.yandex.practicum.filmorate.dao.dbStorages.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.dbStorages.UserDbStorage;
+import ru.yandex.practicum.filmorate.dao.index.KnownIds;
+import ru.yandex.practicum.filmorate.dao.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.dao.likes.LikeEventLog;
+import ru.yandex.practicum.filmorate.dao.memory.FilmMemoryStorage;
+import ru.yandex.practicum.filmorate.dao.memory.UserMemoryStorage;
+import ru.yandex.practicum.filmorate.service.SnapshotService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "filmorate.storage=memory")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class MemoryStorageContextTest {
+    private final ApplicationContext context;
+
+    @Test
+    void testDatabaseStoragesAndIndexesAreNotCreated() {
+        assertThat(context.getBean(FilmStorage.class)).isInstanceOf(FilmMemoryStorage.class);
+        assertThat(context.getBean(UserStorage.class)).isInstanceOf(UserMemoryStorage.class);
+        for (Class<?> type : new Class<?>[]{FilmDbStorage.class, UserDbStorage.class, KnownIds.class,
+                PopularityLeaderboard.class, LikeEventLog.class, SnapshotService.class}) {
+            assertThat(context.getBeanNamesForType(type)).as(type.getSimpleName()).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.service.PopularityFeed;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PopularityFeedTest {
+    private final Map<Long, Long> likes = new HashMap<>();
+    private List<Long> top = List.of();
+    private PopularityFeed feed;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        FilmStorage filmStorage = mock(FilmStorage.class);
+        when(filmStorage.getTopFilmIds(anyInt())).thenAnswer(invocation -> top);
+        when(filmStorage.getLikeCounts(any())).thenAnswer(invocation -> {
+            Map<Long, Long> counts = new HashMap<>();
+            ((Collection<Long>) invocation.getArgument(0)).forEach(id -> counts.put(id, likes.getOrDefault(id, 0L)));
+            return counts;
+        });
+        // окна переключаются вручную через tick()
+        feed = new PopularityFeed(filmStorage, new ObjectMapper(), 2, Duration.ofHours(1), Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        feed.stop();
+    }
+
+    @Test
+    void testSnapshotThenCoalescedDiffs() throws InterruptedException {
+        setLikes(1L, 5L);
+        setLikes(2L, 3L);
+        top = List.of(1L, 2L);
+        RecordingEmitter emitter = new RecordingEmitter(null);
+        feed.subscribe(emitter);
+        assertThat(emitter.next()).contains("event:snapshot").contains("{\"top\":[1,2],\"likes\":{\"1\":5,\"2\":3}}");
+
+        // три лайка в одном окне — одно событие с итоговыми значениями
+        setLikes(2L, 4L);
+        feed.likesChanged(2L);
+        setLikes(2L, 5L);
+        feed.likesChanged(2L);
+        setLikes(3L, 1L);
+        feed.likesChanged(3L);
+        feed.tick();
+        String diff = emitter.next();
+        assertThat(diff).contains("event:diff").doesNotContain("top").contains("\"2\":5").contains("\"3\":1");
+
+        setLikes(2L, 6L);
+        top = List.of(2L, 1L);
+        feed.likesChanged(2L);
+        feed.tick();
+        assertThat(emitter.next()).contains("{\"top\":[2,1],\"likes\":{\"2\":6}}");
+
+        // лайк и его отмена в одном окне ничего не меняют
+        feed.likesChanged(1L);
+        feed.tick();
+        assertThat(emitter.events.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void testSlowSubscriberGetsLatestSnapshotInsteadOfBacklog() throws InterruptedException {
+        top = List.of(1L);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(release);
+        RecordingEmitter fast = new RecordingEmitter(null);
+        feed.subscribe(slow);
+        feed.subscribe(fast);
+        fast.next();
+
+        for (long count = 1; count <= 50; count++) {
+            setLikes(1L, count);
+            feed.likesChanged(1L);
+            feed.tick();
+            assertThat(fast.next()).contains("\"1\":" + count);
+        }
+        release.countDown();
+
+        // первое событие уже отправлялось, дальше — одно событие с последним состоянием
+        assertThat(slow.next()).contains("event:snapshot");
+        assertThat(slow.next()).contains("event:snapshot").contains("\"1\":50");
+        assertThat(slow.events.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(feed.getSubscriberCount()).isEqualTo(2);
+    }
+
+    private void setLikes(long filmId, long count) {
+        likes.put(filmId, count);
+    }
+
+    /**
+     * Запоминает отправленные события; с защёлкой отправка первого события ждёт её открытия.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        private final CountDownLatch release;
+
+        RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder text = new StringBuilder();
+            builder.build().forEach(part -> text.append(part.getData()));
+            if (release != null) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            events.add(text.toString());
+        }
+
+        String next() throws InterruptedException {
+            String event = events.poll(10, TimeUnit.SECONDS);
+            assertThat(event).isNotNull();
+            return event;
+        }
+    }
+}
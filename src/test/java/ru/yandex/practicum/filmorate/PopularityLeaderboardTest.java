@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.index.PopularityLeaderboard;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopularityLeaderboardTest {
+    private static final int FILMS = 200;
+
+    private final PopularityLeaderboard leaderboard = PopularityLeaderboard.inMemory();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testTopByGenreAndYear() {
+        leaderboard.register(1, 2000, new int[]{1, 2});
+        leaderboard.register(2, 2000, new int[]{2});
+        leaderboard.register(3, 2001, new int[]{1});
+        leaderboard.register(4, 2000, new int[]{1});
+        leaderboard.increment(4);
+        leaderboard.increment(4);
+        leaderboard.increment(1);
+
+        assertThat(leaderboard.getTopFilmIds(10, 1, 2000)).containsExactly(4L, 1L);
+        assertThat(leaderboard.getTopFilmIds(10, 2, 2000)).containsExactly(1L, 2L);
+        assertThat(leaderboard.getTopFilmIds(10, 2, 2001)).isEmpty();
+
+        // фильм переезжает в рейтинги нового года и жанров
+        leaderboard.reclassify(4, 2001, new int[]{2});
+        assertThat(leaderboard.getTopFilmIds(10, 1, 2000)).containsExactly(1L);
+        assertThat(leaderboard.getTopFilmIds(10, 2, 2001)).containsExactly(4L);
+    }
+
+    @Test
+    void testTopHasNoDuplicatesWhileLikesChange() throws Exception {
+        for (long filmId = 1; filmId <= FILMS; filmId++) {
+            leaderboard.register(filmId, 2000, new int[]{1});
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        for (int i = 0; i < 3; i++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    long filmId = random.nextLong(1, FILMS + 1);
+                    if (random.nextBoolean()) {
+                        leaderboard.increment(filmId);
+                    } else {
+                        leaderboard.decrement(filmId);
+                    }
+                }
+            });
+        }
+
+        // пока счёт меняется, фильм в обходе может встретиться дважды — в топ он попадает один раз
+        Future<?> reader = executor.submit(() -> {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+            while (System.nanoTime() < deadline) {
+                for (List<Long> top : List.of(leaderboard.getTopFilmIds(FILMS * 2),
+                        leaderboard.getTopFilmIds(FILMS * 2, 1, null),
+                        leaderboard.getTopFilmIds(FILMS * 2, 1, 2000))) {
+                    assertThat(top).doesNotHaveDuplicates().hasSizeLessThanOrEqualTo(FILMS);
+                }
+            }
+        });
+        try {
+            reader.get(10, TimeUnit.SECONDS);
+        } finally {
+            running.set(false);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dao.pool.ReadWriteRoutingDataSource;
+import ru.yandex.practicum.filmorate.dao.pool.ReadWriteRoutingDataSource.LagMode;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadWriteRoutingDataSourceTest {
+    private DataSource primary;
+    private DataSource replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = h2("routing-primary");
+        replica = h2("routing-replica");
+        new JdbcTemplate(primary).execute("CREATE TABLE IF NOT EXISTS source (name VARCHAR) ; DELETE FROM source; " +
+                "INSERT INTO source VALUES ('primary')");
+        new JdbcTemplate(replica).execute("CREATE TABLE IF NOT EXISTS source (name VARCHAR) ; DELETE FROM source; " +
+                "INSERT INTO source VALUES ('replica')");
+    }
+
+    @Test
+    void testReadOnlyTransactionsReadFromReplica() {
+        Routing routing = new Routing(LagMode.NONE, Duration.ofHours(1));
+
+        assertThat(routing.read(true)).isEqualTo("replica");
+        // без транзакции и в обычной транзакции — основная база
+        assertThat(routing.jdbcTemplate.queryForObject("SELECT name FROM source", String.class)).isEqualTo("primary");
+        assertThat(routing.read(false)).isEqualTo("primary");
+
+        // чтение после записи в одной транзакции видит свою запись, даже если метод помечен read-only
+        String readAfterWrite = routing.transaction(false).execute(status -> {
+            routing.jdbcTemplate.update("UPDATE source SET name = 'written'");
+            return routing.read(true);
+        });
+        assertThat(readAfterWrite).isEqualTo("written");
+        assertThat(routing.read(true)).isEqualTo("replica");
+    }
+
+    @Test
+    void testReadYourWritesKeepsReadsOnPrimaryForMaxLag() throws InterruptedException {
+        Routing routing = new Routing(LagMode.READ_YOUR_WRITES, Duration.ofMillis(200));
+        assertThat(routing.read(true)).isEqualTo("replica");
+
+        routing.jdbcTemplate.update("UPDATE source SET name = 'written'");
+        assertThat(routing.target.isReadingFromReplica()).isFalse();
+        assertThat(routing.read(true)).isEqualTo("written");
+
+        Thread.sleep(300);
+        assertThat(routing.read(true)).isEqualTo("replica");
+    }
+
+    private static DataSource h2(String name) {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        return h2;
+    }
+
+    private class Routing {
+        private final ReadWriteRoutingDataSource target;
+        private final JdbcTemplate jdbcTemplate;
+        private final DataSourceTransactionManager transactionManager;
+
+        Routing(LagMode lagMode, Duration maxLag) {
+            target = new ReadWriteRoutingDataSource(primary, replica, lagMode, maxLag);
+            DataSource dataSource = new LazyConnectionDataSourceProxy(target);
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            transactionManager = new DataSourceTransactionManager(dataSource);
+        }
+
+        TransactionTemplate transaction(boolean readOnly) {
+            TransactionTemplate template = new TransactionTemplate(transactionManager);
+            template.setReadOnly(readOnly);
+            return template;
+        }
+
+        String read(boolean readOnly) {
+            return transaction(readOnly).execute(status ->
+                    jdbcTemplate.queryForObject("SELECT name FROM source", String.class));
+        }
+    }
+}
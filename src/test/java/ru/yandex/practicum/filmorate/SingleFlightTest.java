@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ServiceOverloadedException;
+import ru.yandex.practicum.filmorate.service.SingleFlight;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+    private static final int CALLERS = 50;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>("test", true, Duration.ofSeconds(10), registry);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = startCallers(() -> flight.load(1L, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "film";
+        }));
+        waitForJoined(CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("film");
+        }
+        assertThat(loads).hasValue(1);
+
+        // завершённая загрузка не запоминается
+        assertThat(flight.load(1L, () -> "reloaded")).isEqualTo("reloaded");
+    }
+
+    @Test
+    void testErrorReachesEveryCallerAndIsNotCached() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>("test", true, Duration.ofSeconds(10), registry);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = startCallers(() -> flight.load(1L, () -> {
+            await(release);
+            throw new NotFoundException("Фильм с ID 1 не найден");
+        }));
+        waitForJoined(CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause().isInstanceOf(NotFoundException.class).hasMessage("Фильм с ID 1 не найден");
+        }
+        assertThat(flight.load(1L, () -> "film")).isEqualTo("film");
+    }
+
+    @Test
+    void testWaitingIsBounded() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>("test", true, Duration.ofMillis(50), registry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> flight.load(1L, () -> {
+            started.countDown();
+            await(release);
+            return "film";
+        }));
+        started.await(10, TimeUnit.SECONDS);
+
+        assertThatThrownBy(() -> flight.load(1L, () -> "own"))
+                .isInstanceOf(ServiceOverloadedException.class);
+        release.countDown();
+        assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo("film");
+    }
+
+    @Test
+    void testDisabledLoadsEveryTime() {
+        SingleFlight<Long, String> flight = new SingleFlight<>("test", false, Duration.ofSeconds(1), registry);
+        AtomicInteger loads = new AtomicInteger();
+        flight.load(1L, () -> "film" + loads.incrementAndGet());
+        flight.load(1L, () -> "film" + loads.incrementAndGet());
+        assertThat(loads).hasValue(2);
+    }
+
+    private List<Future<String>> startCallers(Callable<String> call) {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(call));
+        }
+        return results;
+    }
+
+    private void waitForJoined(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (registry.get(SingleFlight.JOINED_COUNTER).counter().count() < expected
+                && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.controller.SnapshotController;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.dao.dbStorages.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.dbStorages.MpaDbStorage;
+import ru.yandex.practicum.filmorate.dao.index.CoLikeIndex;
+import ru.yandex.practicum.filmorate.dao.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.dao.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.dao.index.KnownIds;
+import ru.yandex.practicum.filmorate.dao.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.dao.likes.LikeEventLog;
+import ru.yandex.practicum.filmorate.dao.likes.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.dao.snapshot.SnapshotLoader;
+import ru.yandex.practicum.filmorate.dao.snapshot.SnapshotStats;
+import ru.yandex.practicum.filmorate.dao.snapshot.SnapshotWriter;
+import ru.yandex.practicum.filmorate.exceptions.GlobalExceptionHandler;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.service.SnapshotService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Загрузка снимка меняет счётчики id через DDL, а DDL в H2 фиксирует транзакцию,
+ * поэтому тесты работают без транзакции и чистят таблицы сами.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({SnapshotService.class, SnapshotWriter.class, SnapshotLoader.class, LikeWriteBuffer.class,
+        LikeEventLog.class, PopularityLeaderboard.class, CoLikeIndex.class, FilmSearchIndex.class, FriendshipGraph.class,
+        KnownIds.class, ReferenceDataCache.class, EntityVersions.class, GenreDbStorage.class, MpaDbStorage.class,
+        SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class SnapshotServiceTest {
+    private static final List<String> TABLES = List.of(
+            "SELECT * FROM users ORDER BY id",
+            "SELECT * FROM films ORDER BY id",
+            "SELECT * FROM film_genre ORDER BY film_id, genre_id",
+            "SELECT * FROM likes ORDER BY film_id, user_id",
+            "SELECT * FROM friendship ORDER BY user_id, friend_id",
+            "SELECT * FROM friend_requests ORDER BY requester_id, target_id");
+
+    private final SnapshotService snapshotService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PopularityLeaderboard leaderboard;
+    private final FriendshipGraph friendshipGraph;
+    private final KnownIds knownIds;
+    private final LikeEventLog likeEventLog;
+    private final CoLikeIndex coLikeIndex;
+    private final EntityVersions entityVersions;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO users (id, login, name, email, birthday) " +
+                "SELECT x, 'login' || x, CASEWHEN(MOD(x, 7) = 0, NULL, 'Имя ' || x), 'u' || x || '@example.com', " +
+                "DATEADD(DAY, -x * 97, DATE '2000-01-01') FROM SYSTEM_RANGE(1, 150)");
+        jdbcTemplate.update("INSERT INTO films (id, name, description, release_date, duration, rating_id) " +
+                "SELECT x * 3, 'Фильм ' || x, CASEWHEN(MOD(x, 5) = 0, NULL, 'Описание ' || x), " +
+                "DATEADD(DAY, x, DATE '1960-01-01'), 60 + x, MOD(x, 5) + 1 FROM SYSTEM_RANGE(1, 200)");
+        jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) " +
+                "SELECT f.id, g.id FROM films f JOIN genres g ON MOD(f.id + g.id, 3) = 0");
+        // больше одного пакета вставки
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) " +
+                "SELECT f.id, u.id FROM films f JOIN users u ON MOD(f.id * u.id, 11) <> 0");
+        jdbcTemplate.update("INSERT INTO friendship (user_id, friend_id) " +
+                "SELECT x, x + 1 FROM SYSTEM_RANGE(1, 149)");
+        jdbcTemplate.update("INSERT INTO friend_requests (requester_id, target_id) VALUES (5, 9), (5, 12), (40, 2)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM like_events");
+        jdbcTemplate.update("DELETE FROM like_log_state");
+        jdbcTemplate.update("DELETE FROM friend_requests");
+        jdbcTemplate.update("DELETE FROM friendship");
+        jdbcTemplate.update("DELETE FROM likes");
+        jdbcTemplate.update("DELETE FROM film_genre");
+        jdbcTemplate.update("DELETE FROM films");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void testExportAndImportRestoreAllTables() throws IOException {
+        List<List<Map<String, Object>>> before = dump();
+        Path file = export();
+
+        // данные, расходящиеся со снимком, при загрузке заменяются
+        jdbcTemplate.update("DELETE FROM likes WHERE film_id = 3");
+        jdbcTemplate.update("DELETE FROM friendship WHERE user_id = 1");
+        jdbcTemplate.update("INSERT INTO users (id, login, email, birthday) VALUES (1000, 'extra', 'x@x.ru', DATE '1990-01-01')");
+
+        SnapshotStats stats = snapshotService.importSnapshot(file);
+        assertThat(stats.users()).isEqualTo(150);
+        assertThat(stats.films()).isEqualTo(200);
+        assertThat(stats.likes()).isGreaterThan(10_000);
+        assertThat(stats.friendRequests()).isEqualTo(3);
+        assertThat(dump()).isEqualTo(before);
+
+        // индексы в памяти перестроены по загруженным данным
+        Long likesOfFirst = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = 3", Long.class);
+        assertThat(leaderboard.getLikeCount(3)).isEqualTo(likesOfFirst);
+        assertThat(friendshipGraph.friendsOf(1)).containsExactly(2L);
+        assertThat(knownIds.userMayExist(1000L)).isFalse();
+
+        // новые id выдаются после загруженных
+        jdbcTemplate.update("INSERT INTO users (login, email, birthday) VALUES ('next', 'n@n.ru', DATE '1990-01-01')");
+        assertThat(jdbcTemplate.queryForObject("SELECT id FROM users WHERE login = 'next'", Long.class))
+                .isEqualTo(151L);
+    }
+
+    @Test
+    void testCorruptedSnapshotLeavesDatabaseUntouched() throws IOException {
+        Path file = export();
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x10;
+        Path corrupted = Files.write(tempDir.resolve("corrupted.snapshot"), bytes);
+        jdbcTemplate.update("DELETE FROM likes WHERE film_id = 3");
+        List<List<Map<String, Object>>> before = dump();
+
+        assertThatThrownBy(() -> snapshotService.importSnapshot(corrupted))
+                .isInstanceOf(IllegalStateException.class).hasMessageContaining("контрольная сумма");
+        assertThatThrownBy(() -> snapshotService.importSnapshot(Files.write(tempDir.resolve("empty"), new byte[0])))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(dump()).isEqualTo(before);
+    }
+
+    @Test
+    void testImportStartsLikeLogOver() throws IOException {
+        Path file = export();
+        List<Map<String, Object>> likes = jdbcTemplate.queryForList("SELECT * FROM likes ORDER BY film_id, user_id");
+        // события прежней базы: одно уже перенесено в likes, другое ещё нет
+        coLikeIndex.rebuild();
+        likeEventLog.addLike(3L, 11L);
+        likeEventLog.compact();
+        likeEventLog.addLike(6L, 11L);
+        String eTag = entityVersions.filmETag(3L);
+
+        snapshotService.importSnapshot(file);
+
+        assertThat(likeEventLog.findEvents(null, null, 0, 10)).isEmpty();
+        assertThat(likeEventLog.replayCounts(null, null)).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM like_log_state", Integer.class)).isZero();
+        assertThat(likeEventLog.compact()).isZero();
+        assertThat(jdbcTemplate.queryForList("SELECT * FROM likes ORDER BY film_id, user_id")).isEqualTo(likes);
+        assertThat(entityVersions.filmETag(3L)).isNotEqualTo(eTag);
+
+        // журнал начат заново: новые события нумеруются и уплотняются с первого id
+        likeEventLog.addLike(3L, 11L);
+        assertThat(likeEventLog.findEvents(null, null, 0, 10)).extracting(LikeEvent::id).containsExactly(1L);
+        assertThat(likeEventLog.compact()).isEqualTo(1);
+    }
+
+    @Test
+    void testMemoryStorageRejectsSnapshots() throws Exception {
+        // при хранилище в памяти сервиса снимков нет: выгрузка отклоняется до начала ответа
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(new SnapshotController(
+                        new StaticListableBeanFactory().getBeanProvider(SnapshotService.class)))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        mockMvc.perform(get("/snapshot"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", containsString("filmorate.storage=db")));
+    }
+
+    private Path export() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotStats stats = snapshotService.exportSnapshot(out);
+        assertThat(stats.users()).isEqualTo(150);
+        // отсортированные пары хранятся приращениями: в среднем меньше трёх байт на лайк
+        assertThat((double) out.size() / stats.likes()).isLessThan(4.0);
+        return Files.write(tempDir.resolve("filmorate.snapshot"), out.toByteArray());
+    }
+
+    private List<List<Map<String, Object>>> dump() {
+        return TABLES.stream().map(jdbcTemplate::queryForList).toList();
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.pool.ConnectionLimitPostProcessor;
+import ru.yandex.practicum.filmorate.dao.pool.ConnectionLimitingDataSource;
+import ru.yandex.practicum.filmorate.metrics.InstrumentedDataSource;
+import ru.yandex.practicum.filmorate.metrics.SqlMetrics;
+import ru.yandex.practicum.filmorate.metrics.SqlMetricsDataSourcePostProcessor;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({SqlMetrics.class, ConnectionLimitPostProcessor.class, SqlMetricsDataSourcePostProcessor.class,
+        SimpleMeterRegistry.class, PropertyPlaceholderAutoConfiguration.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class SqlMetricsTest {
+    private static final String GENRES_BY_IDS = "SELECT * FROM genres WHERE id IN (?, ...)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlMetrics sqlMetrics;
+    private final MeterRegistry registry;
+    private final DataSource dataSource;
+
+    @Test
+    void testMetricsWrapperIsInsideConnectionLimit() {
+        // ожидание свободного соединения не должно попадать в таймеры запросов
+        assertThat(dataSource).isInstanceOf(ConnectionLimitingDataSource.class);
+        assertThat(((ConnectionLimitingDataSource) dataSource).getTargetDataSource())
+                .isInstanceOf(InstrumentedDataSource.class);
+    }
+
+    @Test
+    void testStatementTimerAndRows() {
+        jdbcTemplate.queryForList("SELECT * FROM genres WHERE id IN (?, ?)", 1, 2);
+        jdbcTemplate.queryForList("SELECT * FROM genres\n WHERE id IN (?,?,?)", 1, 2, 3);
+
+        assertThat(registry.get("filmorate.sql.statement").tag("sql", GENRES_BY_IDS).timer().count())
+                .isEqualTo(2);
+        assertThat(registry.get("filmorate.sql.rows").tag("sql", GENRES_BY_IDS).summary().totalAmount())
+                .isEqualTo(5);
+    }
+
+    @Test
+    void testUpdateRows() {
+        jdbcTemplate.update("UPDATE genres SET name = name");
+
+        assertThat(registry.get("filmorate.sql.rows").tag("sql", "UPDATE genres SET name = name")
+                .summary().totalAmount()).isEqualTo(6);
+    }
+
+    @Test
+    void testStatementsPerRequest() {
+        sqlMetrics.beginRequest();
+        for (long id = 1; id <= 3; id++) {
+            jdbcTemplate.queryForList("SELECT * FROM genres WHERE id = ?", id);
+        }
+        jdbcTemplate.queryForList("SELECT * FROM ratings");
+        int total = sqlMetrics.endRequest("GET", "/genres/{id}");
+
+        assertThat(total).isEqualTo(4);
+        assertThat(registry.get("filmorate.sql.request.statements")
+                .tags("method", "GET", "uri", "/genres/{id}").summary().totalAmount()).isEqualTo(4);
+    }
+
+    @Test
+    void testAbandonedRequestIsNotRecorded() {
+        sqlMetrics.beginRequest();
+        jdbcTemplate.queryForList("SELECT * FROM genres");
+        sqlMetrics.abandonRequest();
+
+        assertThat(sqlMetrics.endRequest("GET", "/films")).isZero();
+        assertThat(registry.find("filmorate.sql.request.statements").summaries()).isEmpty();
+    }
+
+    @Test
+    void testFingerprint() {
+        assertThat(SqlMetrics.fingerprint("SELECT *\n  FROM likes WHERE film_id IN ( ?, ? ,?) AND user_id = ?"))
+                .isEqualTo("SELECT * FROM likes WHERE film_id IN (?, ...) AND user_id = ?");
+        assertThat(List.of(SqlMetrics.fingerprint("INSERT INTO likes (film_id, user_id) VALUES (?, ?)")))
+                .containsExactly("INSERT INTO likes (film_id, user_id) VALUES (?, ...)");
+    }
+}
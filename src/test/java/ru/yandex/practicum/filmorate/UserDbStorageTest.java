@@ -1,108 +1,83 @@
 package ru.yandex.practicum.filmorate;
 
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.transaction.TestTransaction;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.dao.dbStorages.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.dbStorages.MpaDbStorage;
 import ru.yandex.practicum.filmorate.dao.dbStorages.UserDbStorage;
+import ru.yandex.practicum.filmorate.dao.index.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.dao.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.dao.index.KnownIds;
 import ru.yandex.practicum.filmorate.dao.mapper.UserMapper;
-import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
 import java.util.List;
-import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @JdbcTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
-@Import({UserDbStorage.class, UserMapper.class})
+@Import({UserDbStorage.class, UserMapper.class, FriendshipGraph.class, FriendSuggestionEngine.class,
+        EntityVersions.class, ReferenceDataCache.class, GenreDbStorage.class, MpaDbStorage.class,
+        KnownIds.class, SimpleMeterRegistry.class})
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-class UserDbStorageTest {
+class UserDbStorageTest extends UserStorageContractTest {
     private final UserDbStorage userStorage;
-    private User userTemplate;
+    private final FriendshipGraph friendshipGraph;
+    private final KnownIds knownIds;
+    private final JdbcTemplate jdbcTemplate;
 
-    @BeforeEach
-    void setUp() {
-        userTemplate = User.builder()
-                .login("user1")
-                .name("User One")
-                .email("u1@example.com")
-                .birthday(LocalDate.of(1990, 1, 1))
-                .build();
+    @Override
+    protected UserStorage userStorage() {
+        return userStorage;
     }
 
     @Test
-    void testCreateAndFindById() {
-        User created = userStorage.create(userTemplate);
-        assertThat(created.getId()).isPositive();
-        Optional<User> maybe = userStorage.findById(created.getId());
-        assertThat(maybe).isPresent();
-        assertThat(maybe.get().getLogin()).isEqualTo("user1");
-    }
+    void testCommonFriendsWithHundredThousandFriends() {
+        int size = 100_002;
+        jdbcTemplate.update("INSERT INTO users (id, login, email, birthday) " +
+                "SELECT x, 'login' || x, 'u' || x || '@example.com', DATE '1990-01-01' FROM SYSTEM_RANGE(1, ?)", size);
+        // первый дружит со всеми, второй — с каждым десятым
+        jdbcTemplate.update("INSERT INTO friendship (user_id, friend_id) SELECT 1, x FROM SYSTEM_RANGE(3, ?)", size);
+        jdbcTemplate.update("INSERT INTO friendship (user_id, friend_id) " +
+                "SELECT 2, x FROM SYSTEM_RANGE(3, ?) WHERE MOD(x, 10) = 0", size);
+        friendshipGraph.rebuild();
+        knownIds.rebuild();
 
-    @Test
-    void testUpdate() {
-        User created = userStorage.create(userTemplate);
-        created.setName("Updated Name");
-        User updated = userStorage.update(created);
-        assertThat(updated.getName()).isEqualTo("Updated Name");
-    }
+        assertThat(friendshipGraph.friendsOf(1)).hasSize(size - 2);
+        assertThat(userStorage.getFriends(1L)).hasSize(size - 2);
+        List<User> common = userStorage.getCommonFriends(1L, 2L);
+        assertThat(common).hasSize(size / 10);
+        assertThat(common).extracting(User::getId).isSorted().allMatch(id -> id % 10 == 0);
 
-    @Test
-    void testUpdateNotFoundThrows() {
-        User notExists = User.builder()
-                .id(999L)
-                .login("nouser")
-                .name("No User")
-                .email("nouser@example.com")
-                .birthday(LocalDate.of(1990, 1, 1))
-                .build();
-        assertThatThrownBy(() -> userStorage.update(notExists))
-                .isInstanceOf(NotFoundException.class);
+        // граф заполнялся в обход транзакции: после отката строим его заново для следующих тестов
+        TestTransaction.end();
+        friendshipGraph.rebuild();
+        knownIds.rebuild();
     }
 
     @Test
-    void testFindAll() {
-        userStorage.create(userTemplate);
-        List<User> all = userStorage.findAll();
-        assertThat(all).isNotEmpty();
-    }
-
-    @Test
-    void testFindByIdNotFound() {
-        Optional<User> maybe = userStorage.findById(999L);
-        assertThat(maybe).isEmpty();
-    }
-
-    @Test
-    void testAddAndRemoveFriendRequest() {
+    void testSuggestionsSkipUsersMissingInTable() {
         User u1 = userStorage.create(userTemplate);
-        User u2 = userStorage.create(
-                User.builder()
-                        .login("user2")
-                        .name("User Two")
-                        .email("u2@example.com")
-                        .birthday(LocalDate.of(1991, 2, 2))
-                        .build());
-        // add friend request (actually inserts into friendship)
+        User u2 = userStorage.create(User.builder()
+                .login("user2").name("User Two").email("u2@example.com").birthday(LocalDate.of(1991, 2, 2))
+                .build());
         userStorage.addFriendRequest(u1.getId(), u2.getId());
-        User loaded1 = userStorage.findById(u1.getId()).get();
-        assertThat(loaded1.getFriends()).contains(u2.getId());
-
-        // confirmFriendship should throw NotFoundException (no friend_requests table entry)
-        assertThatThrownBy(() -> userStorage.confirmFriendship(u1.getId(), u2.getId()))
-                .isInstanceOf(NotFoundException.class);
+        // друг друга есть в графе, но не в таблице users
+        friendshipGraph.addFriend(u2.getId(), 999L);
 
-        // remove friendship
-        userStorage.removeFriendship(u1.getId(), u2.getId());
-        User loadedAfterRemove = userStorage.findById(u1.getId()).get();
-        assertThat(loadedAfterRemove.getFriends()).doesNotContain(u2.getId());
+        assertThat(userStorage.getFriendSuggestions(u1.getId(), 10)).isEmpty();
     }
 }
@@ -0,0 +1,156 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.dao.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.dao.dbStorages.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.dbStorages.MpaDbStorage;
+import ru.yandex.practicum.filmorate.dao.memory.UserMemoryStorage;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import({EntityVersions.class, ReferenceDataCache.class, GenreDbStorage.class, MpaDbStorage.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class UserMemoryStorageTest extends UserStorageContractTest {
+    private final EntityVersions entityVersions;
+
+    @TempDir
+    Path journalDir;
+
+    private UserMemoryStorage userStorage;
+
+    @BeforeEach
+    void open() {
+        userStorage = new UserMemoryStorage(entityVersions, journalDir.toString(), true, 1000);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        userStorage.close();
+    }
+
+    @Override
+    protected UserStorage userStorage() {
+        return userStorage;
+    }
+
+    @Override
+    protected boolean supportsFriendRequests() {
+        return false;
+    }
+
+    @Test
+    void testJournalRestoresUsersAndFriends() throws IOException {
+        User u1 = userStorage.create(user("user1"));
+        User u2 = userStorage.create(user("user2"));
+        User u3 = userStorage.create(user("user3"));
+        userStorage.addFriendRequest(u1.getId(), u2.getId());
+        userStorage.addFriendRequest(u1.getId(), u3.getId());
+        userStorage.addFriendRequest(u3.getId(), u1.getId());
+        userStorage.removeFriendship(u1.getId(), u2.getId());
+        User renamed = user("renamed");
+        renamed.setId(u2.getId());
+        renamed.setName(null);
+        userStorage.update(renamed);
+        List<User> before = userStorage.findAll();
+
+        close();
+        open();
+
+        assertThat(userStorage.findAll()).isEqualTo(before);
+        assertThat(userStorage.findById(u2.getId()).orElseThrow().getName()).isNull();
+        assertThat(userStorage.getFriends(u1.getId())).extracting(User::getId).containsExactly(u3.getId());
+        // прежний логин освобождён, новый занят
+        assertThat(userStorage.create(user("user2")).getId()).isEqualTo(u3.getId() + 1);
+        assertThatThrownBy(() -> userStorage.create(user("renamed", "other@example.com")))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void testDuplicateEmailReleasesClaimedLogin() {
+        userStorage.create(user("user1"));
+        assertThatThrownBy(() -> userStorage.create(user("user2", "user1@example.com")))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(userStorage.create(user("user2")).getLogin()).isEqualTo("user2");
+    }
+
+    @Test
+    void testTornJournalTailIsDiscarded() throws IOException {
+        User u1 = userStorage.create(user("user1"));
+        close();
+        // запись, оборванная посреди данных: длина есть, данных нет
+        Files.write(journalDir.resolve("users.journal"), new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 5},
+                StandardOpenOption.APPEND);
+        open();
+
+        assertThat(userStorage.findAll()).extracting(User::getId).containsExactly(u1.getId());
+        User u2 = userStorage.create(user("user2"));
+        close();
+        open();
+        assertThat(userStorage.findAll()).extracting(User::getId).containsExactly(u1.getId(), u2.getId());
+    }
+
+    @Test
+    void testJournalFailureMakesStorageReadOnly() throws IOException {
+        User u1 = userStorage.create(user("user1"));
+        User u2 = userStorage.create(user("user2"));
+        // закрываем файл журнала под хранилищем: следующая запись в него не удастся
+        Object journal = ReflectionTestUtils.getField(userStorage, "journal");
+        ((FileChannel) ReflectionTestUtils.getField(journal, "channel")).close();
+        assertThatThrownBy(() -> userStorage.addFriendRequest(u1.getId(), u2.getId()))
+                .isInstanceOf(UncheckedIOException.class);
+
+        // после сбоя изменения отклоняются до того, как попадут в память
+        assertThatThrownBy(() -> userStorage.create(user("user3")))
+                .isInstanceOf(UncheckedIOException.class).hasMessageContaining("только для чтения");
+        User renamed = user("renamed");
+        renamed.setId(u2.getId());
+        assertThatThrownBy(() -> userStorage.update(renamed)).isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> userStorage.removeFriendship(u1.getId(), u2.getId()))
+                .isInstanceOf(UncheckedIOException.class);
+        assertThat(userStorage.findAll()).extracting(User::getLogin).containsExactly("user1", "user2");
+
+        close();
+        open();
+        assertThat(userStorage.findAll()).extracting(User::getLogin).containsExactly("user1", "user2");
+        assertThat(userStorage.getFriends(u1.getId())).isEmpty();
+        assertThat(userStorage.create(user("user3")).getId()).isEqualTo(u2.getId() + 1);
+    }
+
+    private static User user(String login) {
+        return user(login, login + "@example.com");
+    }
+
+    private static User user(String login, String email) {
+        return User.builder()
+                .login(login)
+                .name("Name " + login)
+                .email(email)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,239 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Поведение, общее для всех реализаций {@link UserStorage}.
+ * Транзакция теста ищется по классу, где объявлен метод, поэтому @Transactional нужен и здесь.
+ */
+@Transactional
+abstract class UserStorageContractTest {
+    protected User userTemplate;
+
+    protected abstract UserStorage userStorage();
+
+    /**
+     * Ведёт ли хранилище запросы в друзья. Хранилище без них отклоняет confirmFriendship целиком.
+     */
+    protected boolean supportsFriendRequests() {
+        return true;
+    }
+
+    @BeforeEach
+    void setUp() {
+        userTemplate = User.builder()
+                .login("user1")
+                .name("User One")
+                .email("u1@example.com")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    @Test
+    void testCreateAndFindById() {
+        User created = userStorage().create(userTemplate);
+        assertThat(created.getId()).isPositive();
+        Optional<User> maybe = userStorage().findById(created.getId());
+        assertThat(maybe).isPresent();
+        assertThat(maybe.get().getLogin()).isEqualTo("user1");
+    }
+
+    @Test
+    void testUpdate() {
+        User created = userStorage().create(userTemplate);
+        created.setName("Updated Name");
+        User updated = userStorage().update(created);
+        assertThat(updated.getName()).isEqualTo("Updated Name");
+    }
+
+    @Test
+    void testLoginAndEmailStayUniqueAfterUpdate() {
+        User alice = userStorage().create(userWith("alice", "alice@example.com"));
+        User bob = userStorage().create(userWith("bob", "bob@example.com"));
+
+        // новые логин и email заняты, прежние освобождены
+        userStorage().update(userWith(alice.getId(), "alice2", "alice2@example.com"));
+        assertThatThrownBy(() -> userStorage().create(userWith("alice2", "other@example.com")))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThatThrownBy(() -> userStorage().create(userWith("other", "alice2@example.com")))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(userStorage().create(userWith("alice", "alice@example.com")).getLogin()).isEqualTo("alice");
+
+        // обновление с занятым email не меняет ни логин, ни email
+        assertThatThrownBy(() -> userStorage().update(userWith(bob.getId(), "bob2", "alice2@example.com")))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(userStorage().findById(bob.getId()).orElseThrow().getLogin()).isEqualTo("bob");
+        assertThatThrownBy(() -> userStorage().create(userWith("bob", "b@example.com")))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(userStorage().create(userWith("bob2", "bob2@example.com")).getLogin()).isEqualTo("bob2");
+    }
+
+    @Test
+    void testUpdateNotFoundThrows() {
+        User notExists = User.builder()
+                .id(999L)
+                .login("nouser")
+                .name("No User")
+                .email("nouser@example.com")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+        assertThatThrownBy(() -> userStorage().update(notExists))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void testFindAll() {
+        userStorage().create(userTemplate);
+        List<User> all = userStorage().findAll();
+        assertThat(all).isNotEmpty();
+    }
+
+    @Test
+    void testFindPage() {
+        User u1 = userStorage().create(userTemplate);
+        User u2 = userStorage().create(
+                User.builder()
+                        .login("user2")
+                        .name("User Two")
+                        .email("u2@example.com")
+                        .birthday(LocalDate.of(1991, 2, 2))
+                        .build());
+
+        List<User> first = userStorage().findPage(u1.getId() - 1, 1);
+        assertThat(first).extracting(User::getId).containsExactly(u1.getId());
+
+        List<User> second = userStorage().findPage(u1.getId(), 10);
+        assertThat(second).extracting(User::getId).containsExactly(u2.getId());
+    }
+
+    @Test
+    void testFindByIdNotFound() {
+        Optional<User> maybe = userStorage().findById(999L);
+        assertThat(maybe).isEmpty();
+    }
+
+    @Test
+    void testNullIdIsNotFound() {
+        User u1 = userStorage().create(userTemplate);
+        assertThat(userStorage().findById(null)).isEmpty();
+        assertThat(userStorage().exists(null)).isFalse();
+        assertThatThrownBy(() -> userStorage().addFriendRequest(u1.getId(), null))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void testAddAndRemoveFriendRequest() {
+        User u1 = userStorage().create(userTemplate);
+        User u2 = userStorage().create(
+                User.builder()
+                        .login("user2")
+                        .name("User Two")
+                        .email("u2@example.com")
+                        .birthday(LocalDate.of(1991, 2, 2))
+                        .build());
+        // add friend request (actually inserts into friendship)
+        userStorage().addFriendRequest(u1.getId(), u2.getId());
+        User loaded1 = userStorage().findById(u1.getId()).get();
+        assertThat(loaded1.getFriends()).contains(u2.getId());
+
+        // confirmFriendship finds no friend request, or the storage does not keep requests at all
+        assertThatThrownBy(() -> userStorage().confirmFriendship(u1.getId(), u2.getId()))
+                .isInstanceOf(supportsFriendRequests() ? NotFoundException.class : UnsupportedOperationException.class);
+
+        // remove friendship
+        userStorage().removeFriendship(u1.getId(), u2.getId());
+        User loadedAfterRemove = userStorage().findById(u1.getId()).get();
+        assertThat(loadedAfterRemove.getFriends()).doesNotContain(u2.getId());
+    }
+
+    @Test
+    void testFriendOperationsOnMissingUsers() {
+        User u1 = userStorage().create(userTemplate);
+        assertThat(userStorage().exists(u1.getId())).isTrue();
+        assertThat(userStorage().exists(999L)).isFalse();
+
+        assertThatThrownBy(() -> userStorage().addFriendRequest(u1.getId(), 999L))
+                .isInstanceOf(NotFoundException.class).hasMessageContaining("999");
+        assertThatThrownBy(() -> userStorage().removeFriendship(998L, u1.getId()))
+                .isInstanceOf(NotFoundException.class).hasMessageContaining("998");
+        if (supportsFriendRequests()) {
+            assertThatThrownBy(() -> userStorage().confirmFriendship(u1.getId(), 997L))
+                    .isInstanceOf(NotFoundException.class).hasMessageContaining("997");
+        }
+    }
+
+    @Test
+    void testRepeatedFriendRequestIsIgnored() {
+        User u1 = userStorage().create(userTemplate);
+        User u2 = userStorage().create(User.builder()
+                .login("user2").name("User Two").email("u2@example.com").birthday(LocalDate.of(1991, 2, 2))
+                .build());
+        userStorage().addFriendRequest(u1.getId(), u2.getId());
+        userStorage().addFriendRequest(u1.getId(), u2.getId());
+        assertThat(userStorage().getFriends(u1.getId())).extracting(User::getId).containsExactly(u2.getId());
+    }
+
+    @Test
+    void testGetFriendsAndCommonFriends() {
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            users.add(userStorage().create(User.builder()
+                    .login("user" + i)
+                    .name("User " + i)
+                    .email("u" + i + "@example.com")
+                    .birthday(LocalDate.of(1990, 1, i))
+                    .build()));
+        }
+        long u1 = users.get(0).getId();
+        long u2 = users.get(1).getId();
+        long u3 = users.get(2).getId();
+        long u4 = users.get(3).getId();
+        userStorage().addFriendRequest(u1, u4);
+        userStorage().addFriendRequest(u1, u3);
+        userStorage().addFriendRequest(u2, u3);
+        userStorage().addFriendRequest(u2, u4);
+        userStorage().addFriendRequest(u2, u1);
+
+        assertThat(userStorage().getFriends(u1)).extracting(User::getId).containsExactly(u3, u4);
+        assertThat(userStorage().getCommonFriends(u1, u2)).extracting(User::getId).containsExactly(u3, u4);
+
+        // друзья друзей второго — уже его друзья, у третьего друзей нет
+        assertThat(userStorage().getFriendSuggestions(u2, 10)).isEmpty();
+        assertThat(userStorage().getFriendSuggestions(u3, 10)).isEmpty();
+        userStorage().addFriendRequest(u3, u2);
+        assertThat(userStorage().getFriendSuggestions(u3, 10)).extracting(User::getId).containsExactly(u1, u4);
+
+        userStorage().removeFriendship(u1, u3);
+        assertThat(userStorage().getCommonFriends(u1, u2)).extracting(User::getId).containsExactly(u4);
+        assertThat(userStorage().getFriends(u3)).extracting(User::getId).containsExactly(u2);
+        assertThatThrownBy(() -> userStorage().getFriends(999L)).isInstanceOf(NotFoundException.class);
+    }
+
+    private static User userWith(String login, String email) {
+        return userWith(null, login, email);
+    }
+
+    private static User userWith(Long id, String login, String email) {
+        return User.builder()
+                .id(id)
+                .login(login)
+                .name("Name " + login)
+                .email(email)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}